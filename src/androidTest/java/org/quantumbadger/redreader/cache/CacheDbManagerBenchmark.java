@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.cache;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.quantumbadger.redreader.account.RedditAccountManager;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+// Measures the latency of cache hits on a database with 50k entries, with and
+// without the lookup index.
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class CacheDbManagerBenchmark {
+
+	private static final String TAG = "CacheDbManagerBenchmark";
+
+	private static final String DB_FILENAME = "cache_benchmark.db";
+
+	private static final int ROW_COUNT = 50_000;
+	private static final int LOOKUP_COUNT = 2000;
+
+	private Context mContext;
+	private CacheDbManager mDbManager;
+
+	private static URI getUrl(final int index) {
+		return URI.create(String.format(
+				Locale.US,
+				"https://oauth.reddit.com/r/subreddit%d/comments/%d.json",
+				index % 500,
+				index));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+		mContext.deleteDatabase(DB_FILENAME);
+
+		mDbManager = new CacheDbManager(mContext, DB_FILENAME);
+
+		final UUID session = UUID.randomUUID();
+		final SQLiteDatabase db = mDbManager.getWritableDatabase();
+
+		// Each entry would otherwise be committed separately
+		db.beginTransaction();
+
+		try {
+			for(int i = 0; i < ROW_COUNT; i++) {
+				mDbManager.newEntry(
+						getUrl(i),
+						RedditAccountManager.getAnon(),
+						i % 10,
+						session,
+						"application/json",
+						CacheCompressionType.NONE,
+						1000,
+						1000,
+						mContext.getCacheDir(),
+						id -> {});
+			}
+
+			db.setTransactionSuccessful();
+
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		mDbManager.close();
+		mContext.deleteDatabase(DB_FILENAME);
+	}
+
+	// Returns the mean time per lookup in nanoseconds
+	private long measureLookups() {
+
+		final Random random = new Random(1234);
+
+		// Warm up
+		for(int i = 0; i < LOOKUP_COUNT / 10; i++) {
+			mDbManager.select(getUrl(random.nextInt(ROW_COUNT)), "", null);
+		}
+
+		final long startTime = System.nanoTime();
+
+		for(int i = 0; i < LOOKUP_COUNT; i++) {
+			Assert.assertEquals(
+					1,
+					mDbManager.select(getUrl(random.nextInt(ROW_COUNT)), "", null).size());
+		}
+
+		return (System.nanoTime() - startTime) / LOOKUP_COUNT;
+	}
+
+	@Test
+	public void benchmarkCacheHits() {
+
+		final long indexedNs = measureLookups();
+
+		mDbManager.getWritableDatabase().execSQL(
+				"DROP INDEX " + CacheDbManager.INDEX_LOOKUP);
+
+		final long unindexedNs = measureLookups();
+
+		Log.i(TAG, String.format(
+				Locale.US,
+				"Cache hit with %d entries: %d ns with lookup index, %d ns without",
+				ROW_COUNT,
+				indexedNs,
+				unindexedNs));
+	}
+}
@@ -26,7 +26,6 @@ import org.quantumbadger.redreader.common.PrefsUtility;
 import org.quantumbadger.redreader.io.RedditChangeDataIO;
 import org.quantumbadger.redreader.receivers.NewMessageChecker;
 import org.quantumbadger.redreader.receivers.announcements.AnnouncementDownloader;
-import org.quantumbadger.redreader.reddit.prepared.RedditChangeDataManager;
 
 public class RedReader extends Application {
 
@@ -54,14 +53,7 @@ public class RedReader extends Application {
 			}
 		}.start();
 
-		new Thread() {
-			@Override
-			public void run() {
-				RedditChangeDataIO.getInstance(RedReader.this)
-						.runInitialReadInThisThread();
-				RedditChangeDataManager.pruneAllUsersDefaultMaxAge();
-			}
-		}.start();
+		RedditChangeDataIO.getInstance(this).startInitialRead();
 
 		Alarms.onBoot(this);
 
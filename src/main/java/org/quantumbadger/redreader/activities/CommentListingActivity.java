@@ -159,12 +159,25 @@ public class CommentListingActivity extends RefreshableActivity
 		requestRefresh(RefreshableFragment.ALL, false);
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+
+		if(mFragment != null) {
+			mFragment.cancel();
+		}
+	}
+
 	@Override
 	protected void doRefresh(
 			final RefreshableFragment which,
 			final boolean force,
 			final Bundle savedInstanceState) {
 
+		if(mFragment != null) {
+			mFragment.cancel();
+		}
+
 		mFragment = controller.get(this, force, savedInstanceState);
 		mFragment.setBaseActivityContent(this);
 
@@ -83,6 +83,7 @@ import org.quantumbadger.redreader.views.bezelmenu.SideToolbarOverlay;
 import org.quantumbadger.redreader.views.glview.RRGLSurfaceView;
 import org.quantumbadger.redreader.views.imageview.BasicGestureHandler;
 import org.quantumbadger.redreader.views.imageview.ImageTileSource;
+import org.quantumbadger.redreader.views.imageview.ImageTileSourceRegionDecoder;
 import org.quantumbadger.redreader.views.imageview.ImageTileSourceWholeBitmap;
 import org.quantumbadger.redreader.views.imageview.ImageViewDisplayListManager;
 import org.quantumbadger.redreader.views.liststatus.ErrorView;
@@ -1360,10 +1361,23 @@ public class ImageViewActivity extends BaseActivity
 
 		final ImageTileSource imageTileSource;
 		try {
-			try(InputStream is = streamFactory.create()) {
+			try {
+				// Large images are decoded a tile at a time, where the format allows it
+				final ImageTileSource regionDecoderSource;
 
-				imageTileSource = new ImageTileSourceWholeBitmap(
-						BitmapFactory.decodeStream(is));
+				try(InputStream is = streamFactory.create()) {
+					regionDecoderSource = ImageTileSourceRegionDecoder.create(is);
+				}
+
+				if(regionDecoderSource != null) {
+					imageTileSource = regionDecoderSource;
+
+				} else {
+					try(InputStream is = streamFactory.create()) {
+						imageTileSource = new ImageTileSourceWholeBitmap(
+								BitmapFactory.decodeStream(is));
+					}
+				}
 
 			} catch(final Throwable t) {
 				Log.e(TAG, "Exception when creating ImageTileSource", t);
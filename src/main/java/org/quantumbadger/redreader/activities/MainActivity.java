@@ -231,6 +231,10 @@ public class MainActivity extends RefreshableActivity
 	protected void onDestroy() {
 		super.onDestroy();
 
+		if(commentListingFragment != null) {
+			commentListingFragment.cancel();
+		}
+
 		final RedditSubredditSubscriptionManager.ListenerContext listenerContext
 				= mSubredditSubscriptionListenerContext.get();
 
@@ -554,6 +558,10 @@ public class MainActivity extends RefreshableActivity
 
 		if(which == RefreshableFragment.MAIN_RELAYOUT) {
 
+			if(commentListingFragment != null) {
+				commentListingFragment.cancel();
+			}
+
 			mainMenuFragment = null;
 			postListingFragment = null;
 			commentListingFragment = null;
@@ -614,6 +622,10 @@ public class MainActivity extends RefreshableActivity
 			if(commentListingController != null && (which == RefreshableFragment.ALL
 					|| which
 					== RefreshableFragment.COMMENTS)) {
+				if(commentListingFragment != null) {
+					commentListingFragment.cancel();
+				}
+
 				commentListingFragment = commentListingController.get(this, force, null);
 				commentListingView = commentListingFragment.createCombinedListingAndOverlayView();
 				mRightPane.removeAllViews();
@@ -651,6 +663,10 @@ public class MainActivity extends RefreshableActivity
 				false); // TODO preserve position
 		mainMenuView = mainMenuFragment.createCombinedListingAndOverlayView();
 
+		if(commentListingFragment != null) {
+			commentListingFragment.cancel();
+		}
+
 		commentListingFragment = null;
 		commentListingView = null;
 
@@ -677,6 +693,10 @@ public class MainActivity extends RefreshableActivity
 
 			if(isMenuShown) {
 
+				if(commentListingFragment != null) {
+					commentListingFragment.cancel();
+				}
+
 				commentListingFragment = commentListingController.get(this, false, null);
 				commentListingView = commentListingFragment.createCombinedListingAndOverlayView();
 
@@ -131,12 +131,25 @@ public class MoreCommentsListingActivity extends RefreshableActivity
 		requestRefresh(RefreshableFragment.ALL, false);
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+
+		if(mFragment != null) {
+			mFragment.cancel();
+		}
+	}
+
 	@Override
 	protected void doRefresh(
 			final RefreshableFragment which,
 			final boolean force,
 			final Bundle savedInstanceState) {
 
+		if(mFragment != null) {
+			mFragment.cancel();
+		}
+
 		mFragment = new CommentListingFragment(
 				this,
 				savedInstanceState,
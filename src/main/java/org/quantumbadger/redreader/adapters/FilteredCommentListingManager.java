@@ -46,6 +46,22 @@ public class FilteredCommentListingManager extends RedditListingManager {
 				comments);
 		addItems(filteredComments);
 		mCommentCount += filteredComments.size();
+
+		for(final GroupedRecyclerViewAdapter.Item item : filteredComments) {
+			((RedditCommentListItem)item).onAddedToListing();
+		}
+
+		// Items are appended as visible, so hide the children of collapsed comments
+		// before the batch is drawn
+		if(!filteredComments.isEmpty()) {
+			updateHiddenStatus(
+					filteredComments.iterator().next(),
+					filteredComments.size());
+		}
+	}
+
+	public void updateHiddenStatusOfSubtree(final RedditCommentListItem item) {
+		updateHiddenStatus(item, item.getDescendantsInListing() + 1);
 	}
 
 	private Collection<GroupedRecyclerViewAdapter.Item> filter(
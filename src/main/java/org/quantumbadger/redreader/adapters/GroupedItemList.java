@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.adapters;
+
+import androidx.annotation.NonNull;
+import org.quantumbadger.redreader.adapters.GroupedRecyclerViewAdapter.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+// The items shown by GroupedRecyclerViewAdapter, and the mapping between them and
+// adapter positions. This doesn't depend on the Android framework, so the position
+// logic can be tested on the JVM.
+@SuppressWarnings("ForLoopReplaceableByForEach")
+public final class GroupedItemList {
+
+	// Receives the changes to the visible items, once the list is consistent again
+	public interface Listener {
+
+		void onItemRangeInserted(int positionStart, int itemCount);
+
+		void onItemRangeRemoved(int positionStart, int itemCount);
+	}
+
+	// The items in one group, along with a Fenwick tree of which ones are visible, so
+	// that positions can be mapped to items and back in logarithmic time.
+	private static final class Group {
+
+		private final ArrayList<Item> mItems = new ArrayList<>();
+
+		// One-based: element i holds the number of visible items in the index
+		// range (i - lowestOneBit(i), i]
+		private int[] mTree = new int[16];
+
+		private int mVisibleCount = 0;
+
+		public int size() {
+			return mItems.size();
+		}
+
+		public Item get(final int index) {
+			return mItems.get(index);
+		}
+
+		public int getVisibleCount() {
+			return mVisibleCount;
+		}
+
+		public int indexOf(final Item item) {
+
+			final int index = item.mIndexInGroup;
+
+			if(index < 0 || index >= mItems.size() || mItems.get(index) != item) {
+				throw new RuntimeException("Item not found");
+			}
+
+			return index;
+		}
+
+		public void add(final Item item) {
+
+			item.mIndexInGroup = mItems.size();
+			mItems.add(item);
+
+			final int n = mItems.size();
+
+			if(n >= mTree.length) {
+				mTree = Arrays.copyOf(mTree, mTree.length * 2);
+			}
+
+			int value = item.mCurrentlyHidden ? 0 : 1;
+
+			// Add the nodes covering (n - lowestOneBit(n), n - 1]
+			for(int i = n - 1; i > n - (n & -n); i -= i & -i) {
+				value += mTree[i];
+			}
+
+			mTree[n] = value;
+
+			if(!item.mCurrentlyHidden) {
+				mVisibleCount++;
+			}
+		}
+
+		public void remove(final int index) {
+
+			mItems.remove(index).mIndexInGroup = -1;
+
+			for(int i = index; i < mItems.size(); i++) {
+				mItems.get(i).mIndexInGroup = i;
+			}
+
+			rebuild();
+		}
+
+		public void clear() {
+
+			for(int i = 0; i < mItems.size(); i++) {
+				mItems.get(i).mIndexInGroup = -1;
+			}
+
+			mItems.clear();
+			rebuild();
+		}
+
+		public void setHidden(final int index, final boolean hidden) {
+
+			final Item item = mItems.get(index);
+
+			if(item.mCurrentlyHidden == hidden) {
+				return;
+			}
+
+			item.mCurrentlyHidden = hidden;
+
+			final int delta = hidden ? -1 : 1;
+
+			for(int i = index + 1; i <= mItems.size(); i += i & -i) {
+				mTree[i] += delta;
+			}
+
+			mVisibleCount += delta;
+		}
+
+		// Recomputes the tree from the items' hidden flags in linear time
+		public void rebuild() {
+
+			final int n = mItems.size();
+
+			if(n >= mTree.length) {
+				mTree = new int[Integer.highestOneBit(n) * 2];
+			} else {
+				Arrays.fill(mTree, 0);
+			}
+
+			mVisibleCount = 0;
+
+			for(int i = 1; i <= n; i++) {
+
+				if(!mItems.get(i - 1).mCurrentlyHidden) {
+					mTree[i]++;
+					mVisibleCount++;
+				}
+
+				final int parent = i + (i & -i);
+
+				if(parent <= n) {
+					mTree[parent] += mTree[i];
+				}
+			}
+		}
+
+		// Returns the number of visible items before the given index
+		public int countVisibleBefore(final int index) {
+
+			int result = 0;
+
+			for(int i = index; i > 0; i -= i & -i) {
+				result += mTree[i];
+			}
+
+			return result;
+		}
+
+		// Returns the index of the visible item which has the given number of
+		// visible items before it
+		public int findVisible(final int visibleBefore) {
+
+			final int n = mItems.size();
+
+			int index = 0;
+			int remaining = visibleBefore;
+
+			for(int step = Integer.highestOneBit(Math.max(n, 1)); step > 0; step >>= 1) {
+
+				final int next = index + step;
+
+				if(next <= n && mTree[next] <= remaining) {
+					index = next;
+					remaining -= mTree[next];
+				}
+			}
+
+			return index;
+		}
+	}
+
+	// Merges consecutive insertions or removals into ranges. The notifications are
+	// held back until dispatch(), so that the adapter is consistent when they're sent.
+	private final class HiddenStatusNotifier {
+
+		private static final int NONE = 0;
+		private static final int INSERTED = 1;
+		private static final int REMOVED = 2;
+
+		// Type, start, and count of each completed range
+		private final ArrayList<int[]> mRanges = new ArrayList<>();
+
+		private int mType = NONE;
+		private int mStart;
+		private int mCount;
+
+		public void onItemInserted(final int position) {
+
+			if(mType != INSERTED || mStart + mCount != position) {
+				endRange();
+				mType = INSERTED;
+				mStart = position;
+			}
+
+			mCount++;
+		}
+
+		public void onItemRemoved(final int position) {
+
+			if(mType != REMOVED || mStart != position) {
+				endRange();
+				mType = REMOVED;
+				mStart = position;
+			}
+
+			mCount++;
+		}
+
+		public void endRange() {
+
+			if(mType != NONE) {
+				mRanges.add(new int[] {mType, mStart, mCount});
+			}
+
+			mType = NONE;
+			mCount = 0;
+		}
+
+		public void dispatch() {
+
+			endRange();
+
+			for(int i = 0; i < mRanges.size(); i++) {
+
+				final int[] range = mRanges.get(i);
+
+				if(range[0] == INSERTED) {
+					mListener.onItemRangeInserted(range[1], range[2]);
+				} else {
+					mListener.onItemRangeRemoved(range[1], range[2]);
+				}
+			}
+
+			mRanges.clear();
+		}
+	}
+
+	private final Group[] mGroups;
+	@NonNull private final Listener mListener;
+
+	public GroupedItemList(final int groups, @NonNull final Listener listener) {
+
+		mGroups = new Group[groups];
+		mListener = listener;
+
+		for(int i = 0; i < groups; i++) {
+			mGroups[i] = new Group();
+		}
+	}
+
+	// The number of groups is small and fixed, so this is effectively constant time
+	private int getGroupStartPosition(final int groupId) {
+
+		int result = 0;
+
+		for(int i = 0; i < groupId; i++) {
+			result += mGroups[i].getVisibleCount();
+		}
+
+		return result;
+	}
+
+	public int getItemPosition(final int groupId, final Item item) {
+
+		final Group group = mGroups[groupId];
+
+		return getGroupStartPosition(groupId)
+				+ group.countVisibleBefore(group.indexOf(item));
+	}
+
+	public Item getItem(final int desiredPosition) {
+
+		if(desiredPosition < 0) {
+			throw new RuntimeException("Item desiredPosition "
+					+ desiredPosition
+					+ " is too low");
+		}
+
+		int positionInGroup = desiredPosition;
+
+		for(int groupId = 0; groupId < mGroups.length; groupId++) {
+
+			final Group group = mGroups[groupId];
+
+			if(positionInGroup < group.getVisibleCount()) {
+				return group.get(group.findVisible(positionInGroup));
+			}
+
+			positionInGroup -= group.getVisibleCount();
+		}
+
+		throw new RuntimeException("Item desiredPosition "
+				+ desiredPosition
+				+ " is too high");
+	}
+
+	public int getItemCount() {
+		return getGroupStartPosition(mGroups.length);
+	}
+
+	public void appendToGroup(final int group, final Item item) {
+
+		final int position = getGroupStartPosition(group + 1);
+
+		mGroups[group].add(item);
+
+		if(!item.mCurrentlyHidden) {
+			mListener.onItemRangeInserted(position, 1);
+		}
+	}
+
+	public void appendToGroup(final int group, final Collection<Item> items) {
+
+		final int position = getGroupStartPosition(group + 1);
+
+		for(final Item item : items) {
+			item.mCurrentlyHidden = false;
+			mGroups[group].add(item);
+		}
+
+		mListener.onItemRangeInserted(position, items.size());
+	}
+
+	public void removeAllFromGroup(final int groupId) {
+
+		final Group group = mGroups[groupId];
+
+		final int position = getGroupStartPosition(groupId);
+		final int visibleCount = group.getVisibleCount();
+
+		group.clear();
+
+		if(visibleCount > 0) {
+			mListener.onItemRangeRemoved(position, visibleCount);
+		}
+	}
+
+	public void removeFromGroup(final int groupId, final Item item) {
+
+		final Group group = mGroups[groupId];
+		final int index = group.indexOf(item);
+
+		final int position = getGroupStartPosition(groupId) + group.countVisibleBefore(index);
+
+		group.remove(index);
+
+		if(!item.mCurrentlyHidden) {
+			mListener.onItemRangeRemoved(position, 1);
+		}
+	}
+
+	public void updateHiddenStatus() {
+
+		final HiddenStatusNotifier notifier = new HiddenStatusNotifier();
+
+		int position = 0;
+
+		for(int groupId = 0; groupId < mGroups.length; groupId++) {
+			position = updateHiddenStatus(
+					mGroups[groupId],
+					0,
+					mGroups[groupId].size(),
+					position,
+					notifier);
+		}
+
+		notifier.dispatch();
+	}
+
+	public void updateHiddenStatus(final int groupId, final Item first, final int count) {
+
+		final Group group = mGroups[groupId];
+		final int firstIndex = group.indexOf(first);
+
+		final HiddenStatusNotifier notifier = new HiddenStatusNotifier();
+
+		updateHiddenStatus(
+				group,
+				firstIndex,
+				Math.min(firstIndex + count, group.size()),
+				getGroupStartPosition(groupId) + group.countVisibleBefore(firstIndex),
+				notifier);
+
+		notifier.dispatch();
+	}
+
+	// Returns the adapter position following the range
+	private static int updateHiddenStatus(
+			final Group group,
+			final int startIndex,
+			final int endIndex,
+			final int startPosition,
+			final HiddenStatusNotifier notifier) {
+
+		int position = startPosition;
+
+		for(int index = startIndex; index < endIndex; index++) {
+
+			final Item item = group.get(index);
+
+			final boolean wasHidden = item.mCurrentlyHidden;
+			final boolean isHidden = item.isHidden();
+
+			if(isHidden && !wasHidden) {
+				notifier.onItemRemoved(position);
+
+			} else if(!isHidden && wasHidden) {
+				notifier.onItemInserted(position);
+
+			} else if(!isHidden) {
+				// An unchanged visible item separates the ranges
+				notifier.endRange();
+			}
+
+			group.setHidden(index, isHidden);
+
+			if(!isHidden) {
+				position++;
+			}
+		}
+
+		return position;
+	}
+}
@@ -21,12 +21,10 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
-@SuppressWarnings("ForLoopReplaceableByForEach")
 public class GroupedRecyclerViewAdapter extends RecyclerView.Adapter {
 
 	private static final AtomicLong ITEM_UNIQUE_ID_GENERATOR = new AtomicLong(100_000);
@@ -34,7 +32,9 @@ public class GroupedRecyclerViewAdapter extends RecyclerView.Adapter {
 	public static abstract class Item {
 
 		private final long mUniqueId = ITEM_UNIQUE_ID_GENERATOR.incrementAndGet();
-		private boolean mCurrentlyHidden = false;
+		// Only used by GroupedItemList
+		boolean mCurrentlyHidden = false;
+		int mIndexInGroup = -1;
 
 		public abstract Class getViewType();
 
@@ -45,86 +45,25 @@ public class GroupedRecyclerViewAdapter extends RecyclerView.Adapter {
 		public abstract boolean isHidden();
 	}
 
-	private final ArrayList<Item>[] mItems;
+	private final GroupedItemList mItems;
 	private final HashMap<Class, Integer> mItemViewTypeMap = new HashMap<>();
 	private final HashMap<Integer, Item> mViewTypeItemMap = new HashMap<>();
 
 	public GroupedRecyclerViewAdapter(final int groups) {
-		//noinspection unchecked
-		mItems = (ArrayList<Item>[])new ArrayList[groups];
 
-		for(int i = 0; i < groups; i++) {
-			mItems[i] = new ArrayList<>();
-		}
-
-		setHasStableIds(true);
-	}
-
-	private int getItemPositionInternal(final int groupId, final Item item) {
-
-		final ArrayList<Item> group = mItems[groupId];
-
-		for(int i = 0; i < group.size(); i++) {
-			if(group.get(i) == item) {
-				return getItemPositionInternal(groupId, i);
-			}
-		}
-
-		throw new RuntimeException("Item not found");
-	}
-
-	// "positionInGroup" should include both hidden and visible items
-	private int getItemPositionInternal(final int group, final int positionInGroup) {
-
-		int result = 0;
-
-		for(int i = 0; i < group; i++) {
-			result += getGroupUnhiddenCount(i);
-		}
-
-		for(int i = 0; i < positionInGroup; i++) {
-			if(!mItems[group].get(i).mCurrentlyHidden) {
-				result++;
+		mItems = new GroupedItemList(groups, new GroupedItemList.Listener() {
+			@Override
+			public void onItemRangeInserted(final int positionStart, final int itemCount) {
+				notifyItemRangeInserted(positionStart, itemCount);
 			}
-		}
-
-		return result;
-	}
-
-	private Item getItemInternal(final int desiredPosition) {
 
-		if(desiredPosition < 0) {
-			throw new RuntimeException("Item desiredPosition "
-					+ desiredPosition
-					+ " is too low");
-		}
-
-		int currentPosition = 0;
-
-		for(int groupId = 0; groupId < mItems.length; groupId++) {
-
-			final ArrayList<Item> group = mItems[groupId];
-
-			for(int positionInGroup = 0;
-				positionInGroup < group.size();
-				positionInGroup++) {
-
-				final Item item = group.get(positionInGroup);
-
-				if(!item.mCurrentlyHidden) {
-
-					if(currentPosition == desiredPosition) {
-						return item;
-					}
-
-					currentPosition++;
-				}
+			@Override
+			public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+				notifyItemRangeRemoved(positionStart, itemCount);
 			}
-		}
+		});
 
-		throw new RuntimeException("Item desiredPosition "
-				+ desiredPosition
-				+ " is too high");
+		setHasStableIds(true);
 	}
 
 	@NonNull
@@ -149,13 +88,13 @@ public class GroupedRecyclerViewAdapter extends RecyclerView.Adapter {
 	public void onBindViewHolder(
 			@NonNull final RecyclerView.ViewHolder viewHolder,
 			final int position) {
-		getItemInternal(position).onBindViewHolder(viewHolder);
+		mItems.getItem(position).onBindViewHolder(viewHolder);
 	}
 
 	@Override
 	public int getItemViewType(final int position) {
 
-		final Item item = getItemInternal(position);
+		final Item item = mItems.getItem(position);
 		final Class<?> viewTypeClass = item.getViewType();
 
 		Integer typeId = mItemViewTypeMap.get(viewTypeClass);
@@ -169,139 +108,48 @@ public class GroupedRecyclerViewAdapter extends RecyclerView.Adapter {
 		return typeId;
 	}
 
-	private int getGroupUnhiddenCount(final int groupId) {
-
-		final ArrayList<Item> group = mItems[groupId];
-
-		int result = 0;
-
-		for(int i = 0; i < group.size(); i++) {
-			if(!group.get(i).mCurrentlyHidden) {
-				result++;
-			}
-		}
-
-		return result;
-	}
-
 	@Override
 	public long getItemId(final int position) {
-		return getItemInternal(position).mUniqueId;
+		return mItems.getItem(position).mUniqueId;
 	}
 
 	@Override
 	public int getItemCount() {
-
-		int count = 0;
-
-		for(int i = 0; i < mItems.length; i++) {
-			count += getGroupUnhiddenCount(i);
-		}
-
-		return count;
+		return mItems.getItemCount();
 	}
 
 	public Item getItemAtPosition(final int position) {
-		return getItemInternal(position);
+		return mItems.getItem(position);
 	}
 
 	public void appendToGroup(final int group, final Item item) {
-
-		final int position = getItemPositionInternal(group + 1, 0);
-
-		mItems[group].add(item);
-
-		if(!item.mCurrentlyHidden) {
-			notifyItemInserted(position);
-		}
+		mItems.appendToGroup(group, item);
 	}
 
 	public void appendToGroup(final int group, final Collection<Item> items) {
-
-		final int position = getItemPositionInternal(group + 1, 0);
-
-		mItems[group].addAll(items);
-
-		for(final Item item : items) {
-			item.mCurrentlyHidden = false;
-		}
-
-		notifyItemRangeInserted(position, items.size());
+		mItems.appendToGroup(group, items);
 	}
 
 	public void removeAllFromGroup(final int groupId) {
-
-		final ArrayList<Item> group = mItems[groupId];
-
-		for(int i = group.size() - 1; i >= 0; i--) {
-
-			final Item item = group.get(i);
-			final int position = getItemPositionInternal(groupId, i);
-
-			group.remove(i);
-
-			if(!item.mCurrentlyHidden) {
-				notifyItemRemoved(position);
-			}
-		}
+		mItems.removeAllFromGroup(groupId);
 	}
 
 	public void removeFromGroup(final int groupId, final Item item) {
-
-		final ArrayList<Item> group = mItems[groupId];
-
-		for(int i = 0; i < group.size(); i++) {
-			if(group.get(i) == item) {
-
-				final int position = getItemPositionInternal(groupId, i);
-
-				group.remove(i);
-
-				if(!item.mCurrentlyHidden) {
-					notifyItemRemoved(position);
-				}
-
-				return;
-			}
-		}
-
-		throw new RuntimeException("Item not found");
+		mItems.removeFromGroup(groupId, item);
 	}
 
 	public void updateHiddenStatus() {
+		mItems.updateHiddenStatus();
+	}
 
-		int position = 0;
-
-		for(int groupId = 0; groupId < mItems.length; groupId++) {
-
-			final ArrayList<Item> group = mItems[groupId];
-
-			for(int positionInGroup = 0;
-				positionInGroup < group.size();
-				positionInGroup++) {
-
-				final Item item = group.get(positionInGroup);
-
-				final boolean wasHidden = item.mCurrentlyHidden;
-				final boolean isHidden = item.isHidden();
-				item.mCurrentlyHidden = isHidden;
-
-				if(isHidden && !wasHidden) {
-					notifyItemRemoved(position);
-
-				} else if(!isHidden && wasHidden) {
-					notifyItemInserted(position);
-				}
-
-				if(!isHidden) {
-					position++;
-				}
-			}
-		}
+	// Only checks the given number of items, starting with the specified item. This
+	// is enough when the change can't have affected anything outside that range.
+	public void updateHiddenStatus(final int groupId, final Item first, final int count) {
+		mItems.updateHiddenStatus(groupId, first, count);
 	}
 
 	public void notifyItemChanged(final int groupId, final Item item) {
-		final int position = getItemPositionInternal(groupId, item);
+		final int position = mItems.getItemPosition(groupId, item);
 		notifyItemChanged(position);
 	}
 }
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.view.View;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import org.quantumbadger.redreader.common.General;
+import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElementViewPool;
 import org.quantumbadger.redreader.views.LoadingSpinnerView;
 import org.quantumbadger.redreader.views.RedditPostHeaderView;
 import org.quantumbadger.redreader.views.liststatus.ErrorView;
@@ -43,6 +44,8 @@ public abstract class RedditListingManager {
 	private final GroupedRecyclerViewItemFrameLayout mLoadingItem;
 	private boolean mWorkaroundDone = false;
 
+	private final BodyElementViewPool mBodyViewPool = new BodyElementViewPool();
+
 	protected RedditListingManager(final Context context) {
 		General.checkThisIsUIThread();
 		final LoadingSpinnerView loadingSpinnerView = new LoadingSpinnerView(context);
@@ -53,6 +56,10 @@ public abstract class RedditListingManager {
 		mAdapter.appendToGroup(GROUP_LOADING, mLoadingItem);
 	}
 
+	public BodyElementViewPool getBodyViewPool() {
+		return mBodyViewPool;
+	}
+
 	public void setLayoutManager(final LinearLayoutManager layoutManager) {
 		General.checkThisIsUIThread();
 		mLayoutManager = layoutManager;
@@ -146,6 +153,14 @@ public abstract class RedditListingManager {
 		mAdapter.updateHiddenStatus();
 	}
 
+	public void updateHiddenStatus(
+			final GroupedRecyclerViewAdapter.Item first,
+			final int count) {
+
+		General.checkThisIsUIThread();
+		mAdapter.updateHiddenStatus(GROUP_ITEMS, first, count);
+	}
+
 	public GroupedRecyclerViewAdapter.Item getItemAtPosition(final int position) {
 		return mAdapter.getItemAtPosition(position);
 	}
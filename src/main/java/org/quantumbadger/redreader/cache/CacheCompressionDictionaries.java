@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.cache;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.quantumbadger.redreader.common.Constants;
+import org.quantumbadger.redreader.common.General;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+// Dictionaries trained on sample responses of each file type, and bundled as assets.
+// Compressed files record the ID of their dictionary in the frame header, so an
+// entry can be read without knowing its file type.
+//
+// The dictionaries are generated by CompressionDictionaryTrainer in the unit tests.
+// Comment listings don't use one: they are large enough that plain zstd does almost
+// as well, and they decompressed more slowly with a dictionary.
+public final class CacheCompressionDictionaries {
+
+	private static final String TAG = "CacheCompressionDicts";
+
+	public static final String ASSET_DIR = "zstd_dictionaries";
+
+	public static final int COMPRESSION_LEVEL = 3;
+
+	public interface AssetSource {
+		@NonNull InputStream open(@NonNull String filename) throws IOException;
+	}
+
+	private static final class Dictionary {
+
+		@NonNull final ZstdDictCompress compress;
+		@NonNull final ZstdDictDecompress decompress;
+
+		private Dictionary(@NonNull final byte[] data) {
+			compress = new ZstdDictCompress(data, COMPRESSION_LEVEL);
+			decompress = new ZstdDictDecompress(data);
+		}
+	}
+
+	@NonNull private final AssetSource mAssetSource;
+
+	@Nullable private HashMap<Integer, Dictionary> mByFileType;
+	@Nullable private HashMap<Long, Dictionary> mById;
+
+	public CacheCompressionDictionaries(@NonNull final AssetSource assetSource) {
+		mAssetSource = assetSource;
+	}
+
+	@Nullable
+	private static String getAssetFilename(final int fileType) {
+
+		switch(fileType) {
+			case Constants.FileType.POST_LIST:
+				return "post_list.zdict";
+
+			default:
+				return null;
+		}
+	}
+
+	private synchronized void loadIfNecessary() {
+
+		if(mByFileType != null) {
+			return;
+		}
+
+		final HashMap<Integer, Dictionary> byFileType = new HashMap<>();
+		final HashMap<Long, Dictionary> byId = new HashMap<>();
+
+		final int[] fileTypes = {Constants.FileType.POST_LIST};
+
+		for(final int fileType : fileTypes) {
+
+			final String filename = getAssetFilename(fileType);
+
+			if(filename == null) {
+				continue;
+			}
+
+			try(InputStream is = mAssetSource.open(ASSET_DIR + "/" + filename)) {
+
+				final byte[] data = General.readWholeStream(is);
+				final Dictionary dictionary = new Dictionary(data);
+
+				byFileType.put(fileType, dictionary);
+				byId.put(Zstd.getDictIdFromDict(data), dictionary);
+
+			} catch(final IOException | RuntimeException e) {
+				Log.e(TAG, "Failed to load dictionary " + filename, e);
+			}
+		}
+
+		mByFileType = byFileType;
+		mById = byId;
+	}
+
+	@Nullable
+	public synchronized ZstdDictCompress getForCompression(final int fileType) {
+
+		loadIfNecessary();
+
+		final Dictionary dictionary = mByFileType.get(fileType);
+		return dictionary == null ? null : dictionary.compress;
+	}
+
+	@NonNull
+	public synchronized ZstdDictDecompress getForDecompression(final long dictionaryId)
+			throws IOException {
+
+		loadIfNecessary();
+
+		final Dictionary dictionary = mById.get(dictionaryId);
+
+		if(dictionary == null) {
+			throw new IOException("No dictionary with ID " + dictionaryId);
+		}
+
+		return dictionary.decompress;
+	}
+}
@@ -22,7 +22,10 @@ import androidx.annotation.NonNull;
 public enum CacheCompressionType {
 
 	NONE(0),
-	ZSTD(1);
+	ZSTD(1),
+
+	// The dictionary is identified by the frame header
+	ZSTD_DICTIONARY(2);
 
 	public final int databaseId;
 
@@ -22,15 +22,16 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Log;
 import androidx.annotation.NonNull;
 import org.quantumbadger.redreader.account.RedditAccount;
 import org.quantumbadger.redreader.common.Optional;
 import org.quantumbadger.redreader.common.RRTime;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -53,14 +54,71 @@ final class CacheDbManager extends SQLiteOpenHelper {
 	public static final String FIELD_COMPRESSION_TYPE = "compressionType";
 	public static final String FIELD_LENGTH_UNCOMPRESSED = "lengthUncompressed";
 	public static final String FIELD_LENGTH_COMPRESSED = "lengthCompressed";
+	public static final String FIELD_LOCATION = "location";
+	public static final String FIELD_LAST_ACCESS = "lastAccess";
 
-	private static final int STATUS_MOVING = 1;
+	// Older versions inserted entries with status 1 while the file was moved into
+	// place. Entries are now inserted as done, in the same transaction as the move.
 	private static final int STATUS_DONE = 2;
 
-	private static final int CACHE_DB_VERSION = 2;
+	private static final int CACHE_DB_VERSION = 5;
+
+	// Covers the WHERE and ORDER BY clauses of select()
+	static final String INDEX_LOOKUP = "web_lookup";
+
+	// Lets pruning find the oldest entries of each type without scanning the table
+	static final String INDEX_PRUNE = "web_prune";
+
+	// Lets entries be evicted in least-recently-used order
+	static final String INDEX_LRU = "web_lru";
+
+	// Hits only update the last access time if it's older than this, to avoid a
+	// write for every read
+	static final long LAST_ACCESS_GRANULARITY_MS = 60L * 60L * 1000L;
+
+	interface NewEntryAction {
+		void onEntryCreated(long id) throws IOException;
+	}
+
+	// The sum of the compressed lengths of all entries, or -1 if it needs to be summed
+	// again. This is kept up to date as entries are added and removed, so that the size
+	// limit can be checked without scanning the table.
+	private long mTotalCompressedLength = -1;
 
 	CacheDbManager(final Context context) {
-		super(context, CACHE_DB_FILENAME, null, CACHE_DB_VERSION);
+		this(context, CACHE_DB_FILENAME);
+	}
+
+	CacheDbManager(final Context context, final String filename) {
+		super(context, filename, null, CACHE_DB_VERSION);
+
+		// Lets reads go ahead while an entry is being written
+		setWriteAheadLoggingEnabled(true);
+	}
+
+	private static void createIndexes(final SQLiteDatabase db) {
+
+		db.execSQL(String.format(
+				"CREATE INDEX IF NOT EXISTS %s ON %s (%s, %s, %s, %s)",
+				INDEX_LOOKUP,
+				TABLE,
+				FIELD_URL,
+				FIELD_USER,
+				FIELD_STATUS,
+				FIELD_TIMESTAMP));
+
+		db.execSQL(String.format(
+				"CREATE INDEX IF NOT EXISTS %s ON %s (%s, %s)",
+				INDEX_PRUNE,
+				TABLE,
+				FIELD_TIMESTAMP,
+				FIELD_TYPE));
+
+		db.execSQL(String.format(
+				"CREATE INDEX IF NOT EXISTS %s ON %s (%s)",
+				INDEX_LRU,
+				TABLE,
+				FIELD_LAST_ACCESS));
 	}
 
 	@Override
@@ -79,6 +137,8 @@ final class CacheDbManager extends SQLiteOpenHelper {
 						"%s INTEGER," +
 						"%s INTEGER," +
 						"%s INTEGER," +
+						"%s TEXT," +
+						"%s INTEGER NOT NULL DEFAULT 0," +
 						"UNIQUE (%s, %s, %s) ON CONFLICT REPLACE)",
 				TABLE,
 				FIELD_ID,
@@ -92,9 +152,13 @@ final class CacheDbManager extends SQLiteOpenHelper {
 				FIELD_COMPRESSION_TYPE,
 				FIELD_LENGTH_COMPRESSED,
 				FIELD_LENGTH_UNCOMPRESSED,
+				FIELD_LOCATION,
+				FIELD_LAST_ACCESS,
 				FIELD_USER, FIELD_URL, FIELD_SESSION);
 
 		db.execSQL(queryString);
+
+		createIndexes(db);
 	}
 
 	@Override
@@ -125,9 +189,38 @@ final class CacheDbManager extends SQLiteOpenHelper {
 					FIELD_LENGTH_COMPRESSED,
 					0));
 		}
+
+		if(oldVersion < 4) {
+			// Left null in existing entries until CacheManager migrates them
+			db.execSQL(String.format(
+					Locale.US,
+					"ALTER TABLE %s ADD COLUMN %s TEXT",
+					TABLE,
+					FIELD_LOCATION));
+		}
+
+		if(oldVersion < 5) {
+			db.execSQL(String.format(
+					Locale.US,
+					"ALTER TABLE %s ADD COLUMN %s INTEGER NOT NULL DEFAULT 0",
+					TABLE,
+					FIELD_LAST_ACCESS));
+
+			db.execSQL(String.format(
+					Locale.US,
+					"UPDATE %s SET %s=%s",
+					TABLE,
+					FIELD_LAST_ACCESS,
+					FIELD_TIMESTAMP));
+		}
+
+		// Indexes are only created if they don't already exist
+		createIndexes(db);
 	}
 
-	synchronized Optional<CacheEntry> selectById(final long id) {
+	// Reads don't synchronize on this object, as the database allows them to run
+	// alongside a write
+	Optional<CacheEntry> selectById(final long id) {
 
 		final SQLiteDatabase db = getReadableDatabase();
 
@@ -138,7 +231,8 @@ final class CacheDbManager extends SQLiteOpenHelper {
 				new String[] {String.valueOf(id)},
 				null,
 				null,
-				FIELD_TIMESTAMP + " DESC")) {
+				null,
+				"1")) {
 
 			final List<CacheEntry> entries = readEntriesFromCursor(cursor);
 
@@ -150,7 +244,7 @@ final class CacheDbManager extends SQLiteOpenHelper {
 		}
 	}
 
-	synchronized List<CacheEntry> select(
+	List<CacheEntry> select(
 			final URI url,
 			final String user,
 			final UUID session) {
@@ -207,6 +301,8 @@ final class CacheDbManager extends SQLiteOpenHelper {
 		return result;
 	}
 
+	// The action moves the file into place within the location. The entry is only
+	// committed if this succeeds.
 	synchronized long newEntry(
 			@NonNull final URI url,
 			@NonNull final RedditAccount user,
@@ -215,7 +311,9 @@ final class CacheDbManager extends SQLiteOpenHelper {
 			final String mimetype,
 			@NonNull final CacheCompressionType compressionType,
 			final long lengthCompressed,
-			final long lengthUncompressed) throws IOException {
+			final long lengthUncompressed,
+			@NonNull final File location,
+			@NonNull final NewEntryAction action) throws IOException {
 
 		if(session == null) {
 			throw new RuntimeException("No session to write");
@@ -229,93 +327,158 @@ final class CacheDbManager extends SQLiteOpenHelper {
 		row.put(FIELD_USER, user.username);
 		row.put(FIELD_SESSION, session.toString());
 		row.put(FIELD_TYPE, fileType);
-		row.put(FIELD_STATUS, STATUS_MOVING);
-		row.put(FIELD_TIMESTAMP, RRTime.utcCurrentTimeMillis());
+		row.put(FIELD_STATUS, STATUS_DONE);
+		final long now = RRTime.utcCurrentTimeMillis();
+
+		row.put(FIELD_TIMESTAMP, now);
+		row.put(FIELD_LAST_ACCESS, now);
 		row.put(FIELD_MIMETYPE, mimetype);
 		row.put(FIELD_COMPRESSION_TYPE, compressionType.databaseId);
 		row.put(FIELD_LENGTH_COMPRESSED, lengthCompressed);
 		row.put(FIELD_LENGTH_UNCOMPRESSED, lengthUncompressed);
+		row.put(FIELD_LOCATION, location.getAbsolutePath());
 
-		final long result = db.insert(TABLE, null, row);
+		db.beginTransaction();
 
-		if(result < 0) {
-			throw new IOException("DB insert failed");
-		}
+		try {
+			final long result = db.insert(TABLE, null, row);
 
-		return result;
+			if(result < 0) {
+				throw new IOException("DB insert failed");
+			}
+
+			action.onEntryCreated(result);
+
+			db.setTransactionSuccessful();
+
+			if(mTotalCompressedLength >= 0) {
+				mTotalCompressedLength += lengthCompressed;
+			}
+
+			return result;
+
+		} finally {
+			db.endTransaction();
+		}
 	}
 
-	synchronized void setEntryDone(final long id) {
+	synchronized void setLocation(final long id, @NonNull final File location) {
 		final SQLiteDatabase db = this.getWritableDatabase();
 
 		final ContentValues row = new ContentValues();
-		row.put(FIELD_STATUS, STATUS_DONE);
+		row.put(FIELD_LOCATION, location.getAbsolutePath());
 
 		db.update(TABLE, row, FIELD_ID + "=?", new String[] {String.valueOf(id)});
 	}
 
-	synchronized int delete(final long id) {
-		final SQLiteDatabase db = this.getWritableDatabase();
-		return db.delete(TABLE, FIELD_ID + "=?", new String[] {String.valueOf(id)});
-	}
+	synchronized ArrayList<Long> getIdsWithoutLocation() {
+		final SQLiteDatabase db = this.getReadableDatabase();
 
-	public synchronized ArrayList<Long> getFilesToPrune(
-			final HashSet<Long> currentFiles,
-			final HashMap<Integer, Long> maxAge,
-			final long defaultMaxAge) {
+		final ArrayList<Long> result = new ArrayList<>();
 
-		final SQLiteDatabase db = this.getWritableDatabase();
-
-		final long currentTime = RRTime.utcCurrentTimeMillis();
-
-		final Cursor cursor = db.query(
+		try(Cursor cursor = db.query(
 				TABLE,
-				new String[] {FIELD_ID, FIELD_TIMESTAMP, FIELD_TYPE},
-				null,
-				null,
+				new String[] {FIELD_ID},
+				FIELD_LOCATION + " IS NULL",
 				null,
 				null,
 				null,
-				null);
+				null)) {
 
-		final HashSet<Long> currentEntries = new HashSet<>();
-		final ArrayList<Long> entriesToDelete = new ArrayList<>();
-		final ArrayList<Long> filesToDelete = new ArrayList<>(32);
+			while(cursor.moveToNext()) {
+				result.add(cursor.getLong(0));
+			}
+		}
 
-		while(cursor.moveToNext()) {
+		return result;
+	}
 
-			final long id = cursor.getLong(0);
-			final long timestamp = cursor.getLong(1);
-			final int type = cursor.getInt(2);
+	synchronized void markAccessed(final long id, final long time) {
+		final SQLiteDatabase db = this.getWritableDatabase();
 
-			final long pruneIfBeforeMs;
+		final ContentValues row = new ContentValues();
+		row.put(FIELD_LAST_ACCESS, time);
 
-			if(maxAge.containsKey(type)) {
-				pruneIfBeforeMs = currentTime - maxAge.get(type);
-			} else {
-				Log.e("RR DEBUG cache", "Using default age! Filetype " + type);
-				pruneIfBeforeMs = currentTime - defaultMaxAge;
-			}
+		db.update(TABLE, row, FIELD_ID + "=?", new String[] {String.valueOf(id)});
+	}
 
-			if(!currentFiles.contains(id)) {
-				entriesToDelete.add(id);
+	synchronized long getTotalCompressedLength() {
 
-			} else if(timestamp < pruneIfBeforeMs) {
-				entriesToDelete.add(id);
-				filesToDelete.add(id);
+		if(mTotalCompressedLength < 0) {
 
-			} else {
-				currentEntries.add(id);
+			final SQLiteDatabase db = getReadableDatabase();
+
+			try(Cursor cursor = db.rawQuery(
+					String.format("SELECT SUM(%s) FROM %s", FIELD_LENGTH_COMPRESSED, TABLE),
+					null)) {
+
+				mTotalCompressedLength = cursor.moveToFirst() ? cursor.getLong(0) : 0;
 			}
 		}
 
-		for(final long id : currentFiles) {
-			if(!currentEntries.contains(id)) {
-				filesToDelete.add(id);
+		return mTotalCompressedLength;
+	}
+
+	private void subtractFromTotalCompressedLength(final long length) {
+		if(mTotalCompressedLength >= 0) {
+			mTotalCompressedLength -= length;
+		}
+	}
+
+	// Removes the least recently used entries until at least the given number of
+	// bytes have been freed, and returns them so that their files can be deleted
+	@NonNull
+	synchronized ArrayList<CacheEntry> evictLeastRecentlyUsed(final long bytesToFree) {
+
+		final SQLiteDatabase db = this.getWritableDatabase();
+
+		final ArrayList<CacheEntry> result = new ArrayList<>();
+		final ArrayList<Long> ids = new ArrayList<>();
+
+		long bytesFreed = 0;
+
+		db.beginTransaction();
+
+		try {
+			try(Cursor cursor = db.query(
+					TABLE,
+					CacheEntry.DB_FIELDS,
+					null,
+					null,
+					null,
+					null,
+					FIELD_LAST_ACCESS + " ASC")) {
+
+				while(bytesFreed < bytesToFree && cursor.moveToNext()) {
+
+					final CacheEntry entry = new CacheEntry(cursor);
+
+					result.add(entry);
+					ids.add(entry.id);
+					bytesFreed += entry.lengthCompressed;
+				}
 			}
+
+			deleteEntries(db, ids);
+
+			db.setTransactionSuccessful();
+
+			subtractFromTotalCompressedLength(bytesFreed);
+
+		} finally {
+			db.endTransaction();
 		}
 
-		if(!entriesToDelete.isEmpty()) {
+		return result;
+	}
+
+	private static void deleteEntries(
+			@NonNull final SQLiteDatabase db,
+			@NonNull final List<Long> ids) {
+
+		int start = 0;
+
+		while(start < ids.size()) {
 
 			final StringBuilder query = new StringBuilder(String.format(
 					Locale.US,
@@ -323,28 +486,218 @@ final class CacheDbManager extends SQLiteOpenHelper {
 					TABLE,
 					FIELD_ID));
 
-			query.append(entriesToDelete.remove(entriesToDelete.size() - 1));
+			query.append(ids.get(start));
 
-			for(final long id : entriesToDelete) {
-				query.append(",").append(id);
-				if(query.length() > 512 * 1024) {
-					break;
-				}
+			int end = start + 1;
+
+			while(end < ids.size() && query.length() < 512 * 1024) {
+				query.append(",").append(ids.get(end));
+				end++;
 			}
 
 			query.append(')');
 
 			db.execSQL(query.toString());
+
+			start = end;
 		}
+	}
 
-		cursor.close();
+	synchronized int delete(final long id) {
+
+		final SQLiteDatabase db = this.getWritableDatabase();
+		final String[] args = {String.valueOf(id)};
+
+		db.beginTransaction();
+
+		try {
+			long length = 0;
+
+			try(Cursor cursor = db.query(
+					TABLE,
+					new String[] {FIELD_LENGTH_COMPRESSED},
+					FIELD_ID + "=?",
+					args,
+					null,
+					null,
+					null)) {
+
+				if(cursor.moveToFirst()) {
+					length = cursor.getLong(0);
+				}
+			}
+
+			final int result = db.delete(TABLE, FIELD_ID + "=?", args);
+
+			db.setTransactionSuccessful();
+
+			subtractFromTotalCompressedLength(length);
+
+			return result;
+
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	// Deletes up to the given number of the oldest entries created before the cutoff,
+	// in a single transaction, and returns them so that their files can be deleted.
+	// If excludeTypes is set, entries of every type except the given ones are pruned.
+	@NonNull
+	synchronized ArrayList<CacheEntry> pruneBatch(
+			final long cutoffTimestamp,
+			@NonNull final Collection<Integer> types,
+			final boolean excludeTypes,
+			final int limit) {
+
+		final SQLiteDatabase db = this.getWritableDatabase();
+
+		final StringBuilder where = new StringBuilder(String.format(
+				Locale.US,
+				"%s<%d AND %s %s (",
+				FIELD_TIMESTAMP,
+				cutoffTimestamp,
+				FIELD_TYPE,
+				excludeTypes ? "NOT IN" : "IN"));
+
+		boolean first = true;
+
+		for(final int type : types) {
+
+			if(!first) {
+				where.append(',');
+			}
+
+			where.append(type);
+			first = false;
+		}
+
+		where.append(')');
+
+		final ArrayList<CacheEntry> result = new ArrayList<>(limit);
+
+		db.beginTransaction();
+
+		try {
+			try(Cursor cursor = db.query(
+					TABLE,
+					CacheEntry.DB_FIELDS,
+					where.toString(),
+					null,
+					null,
+					null,
+					FIELD_TIMESTAMP + " ASC",
+					String.valueOf(limit))) {
+
+				result.addAll(readEntriesFromCursor(cursor));
+			}
+
+			final ArrayList<Long> ids = new ArrayList<>(result.size());
+			long bytesDeleted = 0;
+
+			for(final CacheEntry entry : result) {
+				ids.add(entry.id);
+				bytesDeleted += entry.lengthCompressed;
+			}
+
+			deleteEntries(db, ids);
+
+			db.setTransactionSuccessful();
+
+			subtractFromTotalCompressedLength(bytesDeleted);
 
-		return filesToDelete;
+		} finally {
+			db.endTransaction();
+		}
+
+		return result;
+	}
+
+	// Returns up to the given number of entries with IDs above afterId, in ID order
+	@NonNull
+	List<CacheEntry> selectBatchAfterId(final long afterId, final int limit) {
+
+		final SQLiteDatabase db = getReadableDatabase();
+
+		try(Cursor cursor = db.query(
+				TABLE,
+				CacheEntry.DB_FIELDS,
+				FIELD_ID + ">?",
+				new String[] {String.valueOf(afterId)},
+				null,
+				null,
+				FIELD_ID + " ASC",
+				String.valueOf(limit))) {
+
+			return readEntriesFromCursor(cursor);
+		}
+	}
+
+	synchronized void deleteAll(@NonNull final List<Long> ids) {
+
+		if(ids.isEmpty()) {
+			return;
+		}
+
+		final SQLiteDatabase db = this.getWritableDatabase();
+
+		db.beginTransaction();
+
+		try {
+			deleteEntries(db, ids);
+			db.setTransactionSuccessful();
+
+			// The lengths aren't known here, so the total is summed again when next
+			// needed. This is only used while pruning.
+			mTotalCompressedLength = -1;
+
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	// Returns the subset of the given IDs which have an entry
+	@NonNull
+	HashSet<Long> getExistingIds(@NonNull final List<Long> ids) {
+
+		final HashSet<Long> result = new HashSet<>();
+
+		if(ids.isEmpty()) {
+			return result;
+		}
+
+		final SQLiteDatabase db = getReadableDatabase();
+
+		final StringBuilder where = new StringBuilder(FIELD_ID).append(" IN (");
+		where.append(ids.get(0));
+
+		for(int i = 1; i < ids.size(); i++) {
+			where.append(',').append(ids.get(i));
+		}
+
+		where.append(')');
+
+		try(Cursor cursor = db.query(
+				TABLE,
+				new String[] {FIELD_ID},
+				where.toString(),
+				null,
+				null,
+				null,
+				null)) {
+
+			while(cursor.moveToNext()) {
+				result.add(cursor.getLong(0));
+			}
+		}
+
+		return result;
 	}
 
 	public synchronized void emptyTheWholeCache() {
 		final SQLiteDatabase db = this.getWritableDatabase();
 		db.execSQL(String.format(Locale.US, "DELETE FROM %s", TABLE));
+		mTotalCompressedLength = 0;
 	}
 
 	public synchronized HashMap<Long, Integer> getFilesToSize() {
@@ -19,6 +19,7 @@ package org.quantumbadger.redreader.cache;
 
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import org.quantumbadger.redreader.activities.BugReportActivity;
 import org.quantumbadger.redreader.common.Constants;
 import org.quantumbadger.redreader.common.General;
@@ -34,6 +35,7 @@ import org.quantumbadger.redreader.reddit.api.RedditOAuth;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -43,22 +45,44 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 
 	private final CacheRequest mInitiator;
 	private final CacheManager manager;
+	private final PrioritisedDownloadQueue mQueue;
 	private final UUID session;
 
 	private volatile boolean mCancelled = false;
 	private static final AtomicBoolean resetUserCredentials = new AtomicBoolean(false);
 	private final HTTPBackend.Request mRequest;
 
+	// All requests sharing this download, including the initiator. Guarded by
+	// "this", along with the replay state below, which lets requests that attach
+	// part way through catch up on the callbacks they missed.
+	private final ArrayList<CacheRequest> mRequests = new ArrayList<>(1);
+	@NonNull private Priority mPriority;
+	private boolean mFinished = false;
+
+	private boolean mDownloadStarted = false;
+	@Nullable private MemoryDataStream mStream;
+	private long mStreamTimestamp;
+	private boolean mStreamComplete = false;
+	private long mStreamCompleteTimestamp;
+	@Nullable private String mMimetype;
+
 	public CacheDownload(
 			final CacheRequest initiator,
-			final CacheManager manager) {
+			final CacheManager manager,
+			final PrioritisedDownloadQueue queue) {
 
 		this.mInitiator = initiator;
 
 		this.manager = manager;
-
-		if(!initiator.setDownload(this)) {
-			mCancelled = true;
+		mQueue = queue;
+		mPriority = initiator.getPriority();
+
+		synchronized(this) {
+			if(initiator.setDownload(this)) {
+				mRequests.add(initiator);
+			} else {
+				mCancelled = true;
+			}
 		}
 
 		if(initiator.requestSession != null) {
@@ -72,16 +96,114 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 				new HTTPBackend.RequestDetails(mInitiator.url, mInitiator.requestBody));
 	}
 
-	public synchronized void cancel() {
+	/**
+	 * Attaches another request for the same resource to this download. The request
+	 * receives the same callbacks as the initiator, including any which have already
+	 * been delivered.
+	 *
+	 * @return false if the download has already finished or been cancelled, in which
+	 * case the caller must start a new download for the request.
+	 */
+	public boolean attach(@NonNull final CacheRequest request) {
+
+		final boolean downloadStarted;
+		@Nullable final MemoryDataStream stream;
+		final long streamTimestamp;
+		final boolean streamComplete;
+		final long streamCompleteTimestamp;
+		@Nullable final String mimetype;
+
+		boolean priorityChanged = false;
+
+		synchronized(this) {
+
+			if(mCancelled || mFinished) {
+				return false;
+			}
+
+			if(!request.setDownload(this)) {
+				// The request was cancelled before it could be attached
+				return true;
+			}
+
+			mRequests.add(request);
+
+			priorityChanged = updatePriority();
 
-		mCancelled = true;
+			downloadStarted = mDownloadStarted;
+			stream = mStream;
+			streamTimestamp = mStreamTimestamp;
+			streamComplete = mStreamComplete;
+			streamCompleteTimestamp = mStreamCompleteTimestamp;
+			mimetype = mMimetype;
+		}
+
+		// Called outside the lock, as the queue reads the priority under its own lock
+		if(priorityChanged) {
+			mQueue.onPriorityChanged(this);
+		}
+
+		if(downloadStarted) {
+			request.notifyDownloadStarted();
+		}
+
+		if(stream != null) {
+
+			request.notifyDataStreamAvailable(
+					stream::getInputStream,
+					streamTimestamp,
+					session,
+					false,
+					mimetype);
+
+			if(streamComplete) {
+				request.notifyDataStreamComplete(
+						stream::getInputStream,
+						streamCompleteTimestamp,
+						session,
+						false,
+						mimetype);
+			}
+		}
+
+		return true;
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	public void cancel(@NonNull final CacheRequest request) {
+
+		final boolean cancelDownload;
+
+		synchronized(this) {
+
+			if(!mRequests.remove(request)) {
+				return;
+			}
+
+			cancelDownload = mRequests.isEmpty();
+
+			if(cancelDownload) {
+				mCancelled = true;
+			}
+		}
+
+		if(cancelDownload) {
+			mQueue.onDownloadFinished(this);
+		}
 
 		new Thread() {
 			@Override
 			public void run() {
 				if(mRequest != null) {
-					mRequest.cancel();
-					mInitiator.notifyFailure(
+
+					if(cancelDownload) {
+						mRequest.cancel();
+					}
+
+					request.notifyFailure(
 							CacheRequest.REQUEST_FAILURE_CANCELLED,
 							null,
 							null,
@@ -92,6 +214,156 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 		}.start();
 	}
 
+	// Takes the highest priority of the attached requests. Returns true if this
+	// changed.
+	private synchronized boolean updatePriority() {
+
+		Priority highest = null;
+
+		for(final CacheRequest request : mRequests) {
+
+			final Priority priority = request.getPriority();
+
+			if(highest == null || priority.isHigherPriorityThan(highest)) {
+				highest = priority;
+			}
+		}
+
+		if(highest == null || highest.equals(mPriority)) {
+			return false;
+		}
+
+		mPriority = highest;
+		return true;
+	}
+
+	// Called by CacheRequest
+	void onRequestPriorityChanged() {
+
+		final boolean priorityChanged;
+
+		synchronized(this) {
+			priorityChanged = !mCancelled && !mDownloadStarted && updatePriority();
+		}
+
+		if(priorityChanged) {
+			mQueue.onPriorityChanged(this);
+		}
+	}
+
+	@NonNull
+	private synchronized ArrayList<CacheRequest> getRequests() {
+		return new ArrayList<>(mRequests);
+	}
+
+	// Prevents further requests from attaching, and returns those already attached
+	@NonNull
+	private ArrayList<CacheRequest> finish() {
+
+		final ArrayList<CacheRequest> requests;
+
+		synchronized(this) {
+			mFinished = true;
+			requests = new ArrayList<>(mRequests);
+		}
+
+		mQueue.onDownloadFinished(this);
+		return requests;
+	}
+
+	private void notifyProgress(
+			final boolean authorizationInProgress,
+			final long bytesRead,
+			final long totalBytes) {
+
+		for(final CacheRequest request : getRequests()) {
+			request.notifyProgress(authorizationInProgress, bytesRead, totalBytes);
+		}
+	}
+
+	private void notifyDownloadStarted() {
+
+		final ArrayList<CacheRequest> requests;
+
+		synchronized(this) {
+			mDownloadStarted = true;
+			requests = new ArrayList<>(mRequests);
+		}
+
+		for(final CacheRequest request : requests) {
+			request.notifyDownloadStarted();
+		}
+	}
+
+	private void notifyDataStreamAvailable(
+			@NonNull final MemoryDataStream stream,
+			final long timestamp,
+			@Nullable final String mimetype) {
+
+		final ArrayList<CacheRequest> requests;
+
+		synchronized(this) {
+			mStream = stream;
+			mStreamTimestamp = timestamp;
+			mMimetype = mimetype;
+			requests = new ArrayList<>(mRequests);
+		}
+
+		for(final CacheRequest request : requests) {
+			request.notifyDataStreamAvailable(
+					stream::getInputStream,
+					timestamp,
+					session,
+					false,
+					mimetype);
+		}
+	}
+
+	private void notifyDataStreamComplete(
+			@NonNull final MemoryDataStream stream,
+			final long timestamp,
+			@Nullable final String mimetype) {
+
+		final ArrayList<CacheRequest> requests;
+
+		synchronized(this) {
+			mStreamComplete = true;
+			mStreamCompleteTimestamp = timestamp;
+			requests = new ArrayList<>(mRequests);
+		}
+
+		for(final CacheRequest request : requests) {
+			request.notifyDataStreamComplete(
+					stream::getInputStream,
+					timestamp,
+					session,
+					false,
+					mimetype);
+		}
+	}
+
+	private void notifyCacheFileWritten(
+			@NonNull final CacheManager.ReadableCacheFile cacheFile,
+			final long timestamp,
+			@Nullable final String mimetype) {
+
+		for(final CacheRequest request : finish()) {
+			request.notifyCacheFileWritten(cacheFile, timestamp, session, false, mimetype);
+		}
+	}
+
+	private void notifyFailure(
+			final @CacheRequest.RequestFailureType int type,
+			@Nullable final Throwable t,
+			@Nullable final Integer httpStatus,
+			@Nullable final String readableMessage,
+			@NonNull final Optional<FailedRequestBody> body) {
+
+		for(final CacheRequest request : finish()) {
+			request.notifyFailure(type, t, httpStatus, readableMessage, body);
+		}
+	}
+
 	public void doDownload() {
 
 		if(mCancelled) {
@@ -102,6 +374,7 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 			performDownload(mRequest);
 
 		} catch(final Throwable t) {
+			finish();
 			BugReportActivity.handleGlobalError(mInitiator.context, t);
 		}
 	}
@@ -123,7 +396,7 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 
 			if(accessToken == null || accessToken.isExpired()) {
 
-				mInitiator.notifyProgress(true, 0, 0);
+				notifyProgress(true, 0, 0);
 
 				final RedditOAuth.FetchAccessTokenResult result;
 
@@ -137,7 +410,7 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 				}
 
 				if(result.status != RedditOAuth.FetchAccessTokenResultStatus.SUCCESS) {
-					mInitiator.notifyFailure(
+					notifyFailure(
 							CacheRequest.REQUEST_FAILURE_REQUEST,
 							result.error.t,
 							result.error.httpStatus,
@@ -158,9 +431,19 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 			request.addHeader("Authorization", "Client-ID c3713d9e7674477");
 		}
 
-		mInitiator.notifyDownloadStarted();
+		notifyDownloadStarted();
 
 		request.executeInThisThread(new HTTPBackend.Listener() {
+
+			@Override
+			public void onResponseHeaders(@NonNull final HTTPBackend.ResponseHeaders headers) {
+				if(mInitiator.queueType == CacheRequest.DOWNLOAD_QUEUE_REDDIT_API) {
+					mQueue.onRedditRateLimitHeaders(
+							headers.get("X-Ratelimit-Remaining"),
+							headers.get("X-Ratelimit-Reset"));
+				}
+			}
+
 			@Override
 			public void onError(
 					final @CacheRequest.RequestFailureType int failureType,
@@ -173,7 +456,7 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 					resetUserCredentialsOnNextRequest();
 				}
 
-				mInitiator.notifyFailure(
+				notifyFailure(
 						failureType,
 						exception,
 						httpStatus,
@@ -194,14 +477,41 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 
 				final MemoryDataStream stream = new MemoryDataStream(64 * 1024);
 
-				mInitiator.notifyDataStreamAvailable(
-						stream::getInputStream,
-						RRTime.utcCurrentTimeMillis(),
-						session,
-						false,
-						mimetype);
+				notifyDataStreamAvailable(stream, RRTime.utcCurrentTimeMillis(), mimetype);
+
+				// The cache file is written as the data arrives, rather than after the
+				// download completes
 
-				// Download the file into memory
+				@Nullable CacheManager.WritableCacheFile writableCacheFile = null;
+
+				// Reported once the download is complete, so that live readers still
+				// get the data
+				@Nullable IOException cacheException = null;
+				int cacheFailureType = CacheRequest.REQUEST_FAILURE_STORAGE;
+				String cacheFailureMessage = "Failed to write to cache";
+
+				if(mInitiator.cache) {
+
+					try {
+						writableCacheFile = manager.openNewCacheFile(
+								mInitiator,
+								session,
+								mimetype,
+								getCompressionType(manager, mInitiator.fileType));
+
+					} catch(final IOException e) {
+
+						Log.e(TAG, "Exception opening cache file for write", e);
+
+						cacheException = e;
+						cacheFailureMessage = "Could not access the local cache";
+
+						if(!manager.getPreferredCacheLocation().exists()) {
+							cacheFailureType
+									= CacheRequest.REQUEST_FAILURE_CACHE_DIR_DOES_NOT_EXIST;
+						}
+					}
+				}
 
 				try {
 
@@ -216,8 +526,20 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 
 						stream.writeBytes(buf, 0, bytesRead);
 
+						if(writableCacheFile != null) {
+							try {
+								writableCacheFile.write(buf, 0, bytesRead);
+
+							} catch(final IOException e) {
+								Log.e(TAG, "Exception writing to cache file", e);
+								writableCacheFile.onWriteCancelled();
+								writableCacheFile = null;
+								cacheException = e;
+							}
+						}
+
 						if(bodyBytes != null) {
-							mInitiator.notifyProgress(
+							notifyProgress(
 									false,
 									totalBytesRead,
 									bodyBytes);
@@ -226,26 +548,30 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 						if(mCancelled) {
 							Log.i(TAG, "Request cancelled during read loop");
 							stream.setFailed(new IOException("Download cancelled"));
+
+							if(writableCacheFile != null) {
+								writableCacheFile.onWriteCancelled();
+							}
+
 							return;
 						}
 					}
 
 					stream.setComplete();
 
-					mInitiator.notifyDataStreamComplete(
-							stream::getInputStream,
-							RRTime.utcCurrentTimeMillis(),
-							session,
-							false,
-							mimetype);
+					notifyDataStreamComplete(stream, RRTime.utcCurrentTimeMillis(), mimetype);
 
 				} catch(final Throwable t) {
 
+					if(writableCacheFile != null) {
+						writableCacheFile.onWriteCancelled();
+					}
+
 					stream.setFailed(t instanceof IOException
 							? (IOException)t
 							: new IOException("Got exception during download", t));
 
-					mInitiator.notifyFailure(
+					notifyFailure(
 							CacheRequest.REQUEST_FAILURE_CONNECTION,
 							t,
 							null,
@@ -260,110 +586,79 @@ public final class CacheDownload extends PrioritisedCachedThreadPool.Task {
 
 				// Save it to the cache
 
-				if(mInitiator.cache) {
-
-					@NonNull final CacheManager.WritableCacheFile writableCacheFile;
-
-					final CacheCompressionType cacheCompressionType;
-
-					switch(mInitiator.fileType) {
-						case Constants.FileType.CAPTCHA:
-						case Constants.FileType.IMAGE:
-						case Constants.FileType.INLINE_IMAGE_PREVIEW:
-						case Constants.FileType.NOCACHE:
-						case Constants.FileType.THUMBNAIL:
-							// Image saving/sharing relies the file on disk being "raw"
-							cacheCompressionType = CacheCompressionType.NONE;
-							break;
-
-						case Constants.FileType.COMMENT_LIST:
-						case Constants.FileType.IMAGE_INFO:
-						case Constants.FileType.INBOX_LIST:
-						case Constants.FileType.MULTIREDDIT_LIST:
-						case Constants.FileType.POST_LIST:
-						case Constants.FileType.SUBREDDIT_ABOUT:
-						case Constants.FileType.SUBREDDIT_LIST:
-						case Constants.FileType.USER_ABOUT:
-							cacheCompressionType = CacheCompressionType.ZSTD;
-							break;
-
-						default:
-							Log.e(TAG, "Unhandled filetype: " + mInitiator.fileType);
-							cacheCompressionType = CacheCompressionType.NONE;
-					}
-
-					try {
-						writableCacheFile = manager.openNewCacheFile(
-								mInitiator,
-								session,
-								mimetype,
-								cacheCompressionType);
-
-					} catch(final IOException e) {
-
-						Log.e(TAG, "Exception opening cache file for write", e);
-
-						final int failureType;
-
-						if(manager.getPreferredCacheLocation().exists()) {
-							failureType = CacheRequest.REQUEST_FAILURE_STORAGE;
-						} else {
-							failureType
-									= CacheRequest.REQUEST_FAILURE_CACHE_DIR_DOES_NOT_EXIST;
-						}
-
-						mInitiator.notifyFailure(
-								failureType,
-								e,
-								null,
-								"Could not access the local cache",
-								Optional.empty());
-
-						return;
-					}
+				if(writableCacheFile != null) {
 
 					try {
-						stream.getUnderlyingByteArrayWhenComplete(
-								writableCacheFile::writeWholeFile);
-
 						writableCacheFile.onWriteFinished();
 
-						mInitiator.notifyCacheFileWritten(
+						notifyCacheFileWritten(
 								writableCacheFile.getReadableCacheFile(),
 								RRTime.utcCurrentTimeMillis(),
-								session,
-								false,
 								mimetype);
 
-					} catch(final IOException e) {
+						return;
 
+					} catch(final IOException e) {
 						writableCacheFile.onWriteCancelled();
+						cacheException = e;
+					}
+				}
 
-						if(e.getMessage() != null && e.getMessage().contains("ENOSPC")) {
-							mInitiator.notifyFailure(
-									CacheRequest.REQUEST_FAILURE_STORAGE,
-									e,
-									null,
-									"Out of disk space",
-									Optional.empty());
-						} else {
-							mInitiator.notifyFailure(
-									CacheRequest.REQUEST_FAILURE_STORAGE,
-									e,
-									null,
-									"Failed to write to cache",
-									Optional.empty());
-						}
+				if(cacheException != null) {
+
+					if(cacheException.getMessage() != null
+							&& cacheException.getMessage().contains("ENOSPC")) {
+						cacheFailureMessage = "Out of disk space";
 					}
+
+					notifyFailure(
+							cacheFailureType,
+							cacheException,
+							null,
+							cacheFailureMessage,
+							Optional.empty());
+
+				} else {
+					finish();
 				}
 			}
 		});
 	}
 
+	@NonNull
+	private static CacheCompressionType getCompressionType(
+			@NonNull final CacheManager manager,
+			final int fileType) {
+
+		switch(fileType) {
+			case Constants.FileType.CAPTCHA:
+			case Constants.FileType.IMAGE:
+			case Constants.FileType.INLINE_IMAGE_PREVIEW:
+			case Constants.FileType.NOCACHE:
+			case Constants.FileType.THUMBNAIL:
+				// Image saving/sharing relies the file on disk being "raw"
+				return CacheCompressionType.NONE;
+
+			case Constants.FileType.COMMENT_LIST:
+			case Constants.FileType.IMAGE_INFO:
+			case Constants.FileType.INBOX_LIST:
+			case Constants.FileType.MULTIREDDIT_LIST:
+			case Constants.FileType.POST_LIST:
+			case Constants.FileType.SUBREDDIT_ABOUT:
+			case Constants.FileType.SUBREDDIT_LIST:
+			case Constants.FileType.USER_ABOUT:
+				return manager.getJsonCompressionType(fileType);
+
+			default:
+				Log.e(TAG, "Unhandled filetype: " + fileType);
+				return CacheCompressionType.NONE;
+		}
+	}
+
 	@NonNull
 	@Override
-	public Priority getPriority() {
-		return mInitiator.priority;
+	public synchronized Priority getPriority() {
+		return mPriority;
 	}
 
 	@Override
@@ -17,16 +17,29 @@
 
 package org.quantumbadger.redreader.cache;
 
+import androidx.annotation.Nullable;
+
 final class CacheDownloadThread extends Thread {
 	private final CacheDownload singleDownload;
+	@Nullable private final Runnable mOnFinished;
 
 	public CacheDownloadThread(
 			final CacheDownload singleDownload,
 			final boolean start,
 			final String name) {
 
+		this(singleDownload, start, name, null);
+	}
+
+	public CacheDownloadThread(
+			final CacheDownload singleDownload,
+			final boolean start,
+			final String name,
+			@Nullable final Runnable onFinished) {
+
 		super(name);
 		this.singleDownload = singleDownload;
+		mOnFinished = onFinished;
 		if(start) {
 			start();
 		}
@@ -35,6 +48,14 @@ final class CacheDownloadThread extends Thread {
 	@Override
 	public void run() {
 		android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
-		singleDownload.doDownload();
+
+		try {
+			singleDownload.doDownload();
+
+		} finally {
+			if(mOnFinished != null) {
+				mOnFinished.run();
+			}
+		}
 	}
 }
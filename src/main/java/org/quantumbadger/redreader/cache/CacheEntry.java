@@ -19,8 +19,10 @@ package org.quantumbadger.redreader.cache;
 
 import android.database.Cursor;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import org.quantumbadger.redreader.common.General;
 
+import java.io.File;
 import java.net.URI;
 import java.util.UUID;
 
@@ -34,7 +36,9 @@ public final class CacheEntry {
 			CacheDbManager.FIELD_MIMETYPE,
 			CacheDbManager.FIELD_COMPRESSION_TYPE,
 			CacheDbManager.FIELD_LENGTH_COMPRESSED,
-			CacheDbManager.FIELD_LENGTH_UNCOMPRESSED};
+			CacheDbManager.FIELD_LENGTH_UNCOMPRESSED,
+			CacheDbManager.FIELD_LOCATION,
+			CacheDbManager.FIELD_LAST_ACCESS};
 
 	public final long id;
 	public final URI url;
@@ -45,6 +49,14 @@ public final class CacheEntry {
 	public final long lengthCompressed;
 	public final long lengthUncompressed;
 
+	// The cache directory containing the file, or null if the entry is from an
+	// older version and hasn't been migrated yet
+	@Nullable public final File location;
+
+	// Only updated periodically, so may be up to CacheDbManager.LAST_ACCESS_GRANULARITY_MS
+	// behind the most recent access
+	public final long lastAccess;
+
 	CacheEntry(@NonNull final Cursor cursor) {
 
 		id = cursor.getLong(0);
@@ -56,5 +68,7 @@ public final class CacheEntry {
 				cursor.getInt(5));
 		lengthCompressed = cursor.getLong(6);
 		lengthUncompressed = cursor.getLong(7);
+		location = cursor.isNull(8) ? null : new File(cursor.getString(8));
+		lastAccess = cursor.getLong(9);
 	}
 }
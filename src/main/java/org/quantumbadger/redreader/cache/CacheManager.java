@@ -18,29 +18,33 @@
 package org.quantumbadger.redreader.cache;
 
 import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.Uri;
 import android.os.Build;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.github.luben.zstd.Zstd;
-import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdOutputStream;
 import org.quantumbadger.redreader.account.RedditAccount;
 import org.quantumbadger.redreader.activities.BugReportActivity;
+import org.quantumbadger.redreader.common.Constants;
 import org.quantumbadger.redreader.common.FileUtils;
-import org.quantumbadger.redreader.common.General;
 import org.quantumbadger.redreader.common.GenericFactory;
 import org.quantumbadger.redreader.common.Optional;
 import org.quantumbadger.redreader.common.PrefsUtility;
 import org.quantumbadger.redreader.common.PrioritisedCachedThreadPool;
 import org.quantumbadger.redreader.common.Priority;
-import org.quantumbadger.redreader.common.datastream.MemoryDataStream;
+import org.quantumbadger.redreader.common.RRTime;
 import org.quantumbadger.redreader.common.datastream.SeekableFileInputStream;
 import org.quantumbadger.redreader.common.datastream.SeekableInputStream;
+import org.quantumbadger.redreader.common.datastream.SeekableZstdFileInputStream;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -48,6 +52,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,6 +61,7 @@ import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class CacheManager {
 
@@ -76,6 +82,28 @@ public final class CacheManager {
 
 	private final Context context;
 
+	@NonNull private final CacheCompressionDictionaries mCompressionDictionaries;
+
+	// Cleared when storage is mounted or removed
+	@Nullable private volatile ArrayList<File> mCacheDirs;
+
+	private static final int PRUNE_BATCH_SIZE = 500;
+	private static final long ORPHAN_MIN_AGE_MS = 60L * 60L * 1000L;
+
+	private final Object mPruneLock = new Object();
+
+	private final AtomicReference<CachePruneOperation> mBackgroundPrune
+			= new AtomicReference<>();
+
+	// Guarded by mPruneLock
+	private boolean mMigrationComplete = false;
+
+	private final Object mSizeLock = new Object();
+
+	// Set while a size limit check is queued, so that a burst of new entries only
+	// causes one check
+	private final AtomicBoolean mSizeLimitCheckQueued = new AtomicBoolean(false);
+
 	@SuppressLint("StaticFieldLeak") private static CacheManager singleton;
 
 	public static synchronized CacheManager getInstance(final Context context) {
@@ -93,10 +121,28 @@ public final class CacheManager {
 
 		this.context = context;
 
+		mCompressionDictionaries = new CacheCompressionDictionaries(context.getAssets()::open);
+
 		dbManager = new CacheDbManager(context);
 
 		downloadQueue = new PrioritisedDownloadQueue(context);
 
+		final IntentFilter storageFilter = new IntentFilter();
+		storageFilter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+		storageFilter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+		storageFilter.addAction(Intent.ACTION_MEDIA_REMOVED);
+		storageFilter.addAction(Intent.ACTION_MEDIA_BAD_REMOVAL);
+		storageFilter.addAction(Intent.ACTION_MEDIA_EJECT);
+		storageFilter.addDataScheme("file");
+
+		context.registerReceiver(new BroadcastReceiver() {
+			@Override
+			public void onReceive(final Context context, final Intent intent) {
+				Log.i(TAG, "Storage changed: " + intent.getAction());
+				mCacheDirs = null;
+			}
+		}, storageFilter);
+
 		final RequestHandlerThread requestHandler = new RequestHandlerThread();
 		requestHandler.start();
 	}
@@ -122,7 +168,7 @@ public final class CacheManager {
 		}
 	}
 
-	private void getCacheFileList(final File dir, final HashSet<Long> currentFiles) {
+	private void getCacheFileList(final File dir, final HashMap<Long, File> currentFiles) {
 
 		final File[] list = dir.listFiles();
 		if(list == null) {
@@ -138,7 +184,7 @@ public final class CacheManager {
 				final Long cacheFileId = isCacheFile(file);
 
 				if(cacheFileId != null) {
-					currentFiles.add(cacheFileId);
+					currentFiles.put(cacheFileId, file);
 				}
 			}
 		}
@@ -183,18 +229,60 @@ public final class CacheManager {
 		return dirs;
 	}
 
+	@NonNull
+	private ArrayList<File> getCacheDirs() {
+
+		ArrayList<File> result = mCacheDirs;
+
+		if(result == null) {
+			result = getCacheDirs(context);
+			mCacheDirs = result;
+		}
+
+		return result;
+	}
+
 	public void pruneTemp() {
-		final List<File> dirs = getCacheDirs(context);
+		final List<File> dirs = getCacheDirs();
 		for(final File dir : dirs) {
 			pruneTemp(dir);
 		}
 	}
 
-	public synchronized void pruneCache() {
-		pruneCache(PrefsUtility.pref_cache_maxage());
+	// Regular pruning in the background. This is cancelled if the user clears the
+	// cache manually.
+	public void pruneCache() {
+
+		final CachePruneOperation operation = new CachePruneOperation(null);
+
+		final CachePruneOperation previous = mBackgroundPrune.getAndSet(operation);
+
+		if(previous != null) {
+			previous.cancel();
+		}
+
+		try {
+			pruneCache(PrefsUtility.pref_cache_maxage(), operation);
+
+			if(!operation.isCancelled()) {
+				enforceSizeLimit();
+			}
+
+		} finally {
+			mBackgroundPrune.compareAndSet(operation, null);
+		}
+	}
+
+	public void cancelBackgroundPrune() {
+
+		final CachePruneOperation operation = mBackgroundPrune.get();
+
+		if(operation != null) {
+			operation.cancel();
+		}
 	}
 
-	public synchronized void pruneCache(
+	public void pruneCache(
 			final boolean clearListings,
 			final boolean clearThumbnails,
 			final boolean clearImages) {
@@ -203,59 +291,355 @@ public final class CacheManager {
 			return;
 		}
 
+		cancelBackgroundPrune();
+
 		/*Use a maximum age of 0 to clear everything* in that category.
 		Otherwise, use Long.MAX_VALUE as the maximum age to ensure that nothing is deleted.
 
 		*May not clear everything if system time shenanigans have occurred.*/
-		pruneCache(PrefsUtility.createFileTypeToLongMap(
-				clearListings ? 0 : Long.MAX_VALUE,
-				clearThumbnails ? 0 : Long.MAX_VALUE,
-				clearImages ? 0 : Long.MAX_VALUE
-		));
+		pruneCache(
+				PrefsUtility.createFileTypeToLongMap(
+						clearListings ? 0 : Long.MAX_VALUE,
+						clearThumbnails ? 0 : Long.MAX_VALUE,
+						clearImages ? 0 : Long.MAX_VALUE),
+				new CachePruneOperation(null));
 	}
 
-	public synchronized void pruneCache(final HashMap<Integer, Long> maxAge) {
+	// Entries are pruned in batches, each in its own transaction, so that the
+	// database isn't locked for long. Entries of types missing from maxAge are
+	// always pruned.
+	public void pruneCache(
+			final HashMap<Integer, Long> maxAge,
+			@NonNull final CachePruneOperation operation) {
 
-		try {
+		synchronized(mPruneLock) {
 
-			final HashSet<Long> currentFiles = new HashSet<>(1024);
+			try {
+				final List<File> dirs = getCacheDirs();
 
-			final List<File> dirs = getCacheDirs(context);
-			for(final File dir : dirs) {
-				getCacheFileList(dir, currentFiles);
+				@Nullable HashMap<Long, File> currentFiles = null;
+
+				if(!mMigrationComplete) {
+					currentFiles = listCacheFiles(dirs);
+					migrateEntriesWithoutLocation(dirs, currentFiles);
+				}
+
+				final long now = RRTime.utcCurrentTimeMillis();
+
+				// Types with the same max age are pruned together
+				final HashMap<Long, ArrayList<Integer>> typesByMaxAge = new HashMap<>();
+
+				for(final HashMap.Entry<Integer, Long> entry : maxAge.entrySet()) {
+
+					ArrayList<Integer> types = typesByMaxAge.get(entry.getValue());
+
+					if(types == null) {
+						types = new ArrayList<>();
+						typesByMaxAge.put(entry.getValue(), types);
+					}
+
+					types.add(entry.getKey());
+				}
+
+				for(final HashMap.Entry<Long, ArrayList<Integer>> entry
+						: typesByMaxAge.entrySet()) {
+
+					pruneEntries(now - entry.getKey(), entry.getValue(), false, operation);
+				}
+
+				pruneEntries(now, maxAge.keySet(), true, operation);
+
+				if(!operation.isCancelled()) {
+
+					if(currentFiles == null) {
+						currentFiles = listCacheFiles(dirs);
+					}
+
+					deleteOrphanedFiles(currentFiles, operation);
+				}
+
+				deleteEntriesWithoutFiles(operation);
+
+			} catch(final Throwable t) {
+				BugReportActivity.handleGlobalError(context, t);
 			}
 
-			final ArrayList<Long> filesToDelete = dbManager.getFilesToPrune(
-					currentFiles,
-					maxAge,
-					72);
+			Log.i(TAG, String.format(
+					Locale.US,
+					"Pruned %d entries, freeing %d bytes%s",
+					operation.getEntriesPruned(),
+					operation.getBytesFreed(),
+					operation.isCancelled() ? " (cancelled)" : ""));
+		}
+	}
+
+	@NonNull
+	private HashMap<Long, File> listCacheFiles(@NonNull final List<File> dirs) {
+
+		final HashMap<Long, File> result = new HashMap<>(1024);
 
-			Log.i("CacheManager", "Pruning " + filesToDelete.size() + " files");
+		for(final File dir : dirs) {
+			getCacheFileList(dir, result);
+		}
+
+		return result;
+	}
+
+	private void pruneEntries(
+			final long cutoffTimestamp,
+			@NonNull final Collection<Integer> types,
+			final boolean excludeTypes,
+			@NonNull final CachePruneOperation operation) {
+
+		while(!operation.isCancelled()) {
+
+			final ArrayList<CacheEntry> batch = dbManager.pruneBatch(
+					cutoffTimestamp,
+					types,
+					excludeTypes,
+					PRUNE_BATCH_SIZE);
+
+			long bytesFreed = 0;
+
+			for(final CacheEntry entry : batch) {
+
+				final File file = getExistingCacheFile(entry.id, entry.location);
 
-			for(final long id : filesToDelete) {
-				final File file = getExistingCacheFile(id);
 				if(file != null) {
-					file.delete();
+
+					final long length = file.length();
+
+					if(file.delete()) {
+						bytesFreed += length;
+					}
 				}
 			}
 
-		} catch(final Throwable t) {
-			BugReportActivity.handleGlobalError(context, t);
+			operation.onBatchPruned(batch.size(), bytesFreed);
+
+			if(batch.size() < PRUNE_BATCH_SIZE) {
+				return;
+			}
+
+			// Let other users of the database in between batches
+			Thread.yield();
 		}
+	}
+
+	// Deletes files which don't have an entry in the database, for example if the
+	// app was killed while writing one
+	private void deleteOrphanedFiles(
+			@NonNull final HashMap<Long, File> currentFiles,
+			@NonNull final CachePruneOperation operation) {
+
+		// Skip files which may belong to an entry that's still being committed
+		final long modifiedBefore = System.currentTimeMillis() - ORPHAN_MIN_AGE_MS;
+
+		final ArrayList<Long> ids = new ArrayList<>(currentFiles.keySet());
+
+		for(int start = 0; start < ids.size() && !operation.isCancelled();
+				start += PRUNE_BATCH_SIZE) {
+
+			final List<Long> batch
+					= ids.subList(start, Math.min(ids.size(), start + PRUNE_BATCH_SIZE));
+
+			final HashSet<Long> existingIds = dbManager.getExistingIds(batch);
+
+			int filesDeleted = 0;
+			long bytesFreed = 0;
+
+			for(final long id : batch) {
+
+				if(existingIds.contains(id)) {
+					continue;
+				}
+
+				final File file = Objects.requireNonNull(currentFiles.get(id));
+				final long length = file.length();
+
+				if(file.lastModified() < modifiedBefore && file.delete()) {
+					filesDeleted++;
+					bytesFreed += length;
+				}
+			}
+
+			operation.onBatchPruned(filesDeleted, bytesFreed);
 
+			Thread.yield();
+		}
+	}
+
+	// Deletes entries whose file is missing, for example if it was removed by the
+	// system or another app. Each file is checked after its entry is read, as an
+	// entry is only committed once its file is in place.
+	private void deleteEntriesWithoutFiles(@NonNull final CachePruneOperation operation) {
+
+		long lastId = -1;
+
+		while(!operation.isCancelled()) {
+
+			final List<CacheEntry> batch
+					= dbManager.selectBatchAfterId(lastId, PRUNE_BATCH_SIZE);
+
+			final ArrayList<Long> missing = new ArrayList<>();
+
+			for(final CacheEntry entry : batch) {
+
+				final File file = getExistingCacheFile(entry.id, entry.location);
+
+				if(file == null || !file.exists()) {
+					missing.add(entry.id);
+				}
+
+				lastId = entry.id;
+			}
+
+			dbManager.deleteAll(missing);
+			operation.onBatchPruned(missing.size(), 0);
+
+			if(batch.size() < PRUNE_BATCH_SIZE) {
+				return;
+			}
+
+			Thread.yield();
+		}
+	}
+
+	// Entries written by older versions don't store their location, and their files
+	// may be in the legacy flat layout. These files are moved into the current
+	// layout, and their location is stored, so that lookups never need to search
+	// for them again.
+	private void migrateEntriesWithoutLocation(
+			@NonNull final List<File> dirs,
+			@NonNull final HashMap<Long, File> currentFiles) {
+
+		if(mMigrationComplete) {
+			return;
+		}
+
+		final ArrayList<Long> ids = dbManager.getIdsWithoutLocation();
+
+		if(!ids.isEmpty()) {
+			Log.i(TAG, "Migrating " + ids.size() + " cache entries");
+		}
+
+		for(final long id : ids) {
+
+			final File file = currentFiles.get(id);
+
+			if(file == null) {
+				dbManager.delete(id);
+				continue;
+			}
+
+			for(final File dir : dirs) {
+
+				if(!file.getAbsolutePath().startsWith(dir.getAbsolutePath() + File.separator)) {
+					continue;
+				}
+
+				try {
+					if(dir.equals(file.getParentFile())) {
+
+						final File subdir = getSubdirForCacheFile(dir, id);
+						FileUtils.mkdirs(subdir);
+
+						final File dstFile = new File(subdir, id + ext);
+						FileUtils.moveFile(file, dstFile);
+						currentFiles.put(id, dstFile);
+					}
+
+					dbManager.setLocation(id, dir);
+
+				} catch(final IOException e) {
+					Log.e(TAG, "Failed to migrate cache file " + id, e);
+				}
+
+				break;
+			}
+		}
+
+		mMigrationComplete = true;
 	}
 
 	public synchronized void emptyTheWholeCache() {
 		dbManager.emptyTheWholeCache();
 	}
 
+	// The check runs on the disk cache threads, rather than the download thread
+	// which wrote the entry
+	private void onCacheEntryAdded() {
+
+		if(PrefsUtility.pref_cache_max_size_bytes() <= 0) {
+			return;
+		}
+
+		if(mSizeLimitCheckQueued.getAndSet(true)) {
+			return;
+		}
+
+		mDiskCacheThreadPool.add(new PrioritisedCachedThreadPool.Task() {
+
+			@NonNull
+			@Override
+			public Priority getPriority() {
+				return new Priority(Constants.Priority.CACHE_SIZE_LIMIT);
+			}
+
+			@Override
+			public void run() {
+				mSizeLimitCheckQueued.set(false);
+				enforceSizeLimit();
+			}
+		});
+	}
+
+	// Evicts the least recently used entries until the cache is below the size
+	// set by the user. This relies on the lengths stored in the database, so the
+	// filesystem isn't walked. The database keeps a running total of these, which is
+	// only summed again after pruning deletes entries with missing files.
+	public void enforceSizeLimit() {
+
+		final long maxSize = PrefsUtility.pref_cache_max_size_bytes();
+
+		if(maxSize <= 0) {
+			return;
+		}
+
+		synchronized(mSizeLock) {
+
+			final long cacheSize = dbManager.getTotalCompressedLength();
+
+			if(cacheSize <= maxSize) {
+				return;
+			}
+
+			// Evict a little extra, so that every new entry doesn't cause an eviction
+			final long targetSize = maxSize - (maxSize / 10);
+
+			final ArrayList<CacheEntry> evicted
+					= dbManager.evictLeastRecentlyUsed(cacheSize - targetSize);
+
+			Log.i(TAG, "Evicting " + evicted.size() + " entries to stay within size limit");
+
+			for(final CacheEntry entry : evicted) {
+
+				final File file = getExistingCacheFile(entry.id, entry.location);
+
+				if(file != null && !file.delete()) {
+					Log.e(TAG, "Failed to delete evicted cache file " + entry.id);
+				}
+			}
+		}
+	}
+
 	public synchronized HashMap<Integer, Long> getCacheDataUsages() {
 		final HashMap<Integer, Long> dataUsagePerType = PrefsUtility.createFileTypeToLongMap();
 
 		try {
-			final HashSet<Long> currentFiles = new HashSet<>(128);
+			final HashMap<Long, File> currentFiles = new HashMap<>(128);
 
-			final List<File> dirs = getCacheDirs(context);
+			final List<File> dirs = getCacheDirs();
 			for(final File dir : dirs) {
 				getCacheFileList(dir, currentFiles);
 			}
@@ -266,7 +650,7 @@ public final class CacheManager {
 				final long id = fileEntry.getKey();
 				final int type = fileEntry.getValue();
 
-				final File file = getExistingCacheFile(id);
+				final File file = currentFiles.get(id);
 				if(file != null && dataUsagePerType.containsKey(type)) {
 					dataUsagePerType.put(
 							type,
@@ -294,11 +678,22 @@ public final class CacheManager {
 				PrefsUtility.pref_cache_location(context));
 	}
 
+	@NonNull
+	public CacheCompressionType getJsonCompressionType(final int fileType) {
+
+		if(mCompressionDictionaries.getForCompression(fileType) != null) {
+			return CacheCompressionType.ZSTD_DICTIONARY;
+
+		} else {
+			return CacheCompressionType.ZSTD;
+		}
+	}
+
 	@NonNull
 	public ReadableCacheFile getExistingCacheFileById(
 			final long cacheId,
 			@NonNull final CacheCompressionType cacheCompressionType) {
-		return new ReadableCacheFile(cacheId, cacheCompressionType);
+		return new ReadableCacheFile(cacheId, cacheCompressionType, null);
 	}
 
 	public class WritableCacheFile {
@@ -315,7 +710,6 @@ public final class CacheManager {
 		@NonNull private final File mTmpFile;
 
 		private long mUncompressedLength = 0;
-		private long mCompressedLength = 0;
 
 		private WritableCacheFile(
 				final CacheRequest request,
@@ -331,52 +725,69 @@ public final class CacheManager {
 			location = getPreferredCacheLocation();
 			mTmpFile = new File(location, UUID.randomUUID().toString() + tempExt);
 
-			mOutStream = new FileOutputStream(mTmpFile);
-		}
+			final OutputStream fileStream
+					= new BufferedOutputStream(new FileOutputStream(mTmpFile), 64 * 1024);
 
-		@NonNull
-		public ReadableCacheFile getReadableCacheFile() {
-			return Objects.requireNonNull(readableCacheFile);
-		}
+			if(cacheCompressionType == CacheCompressionType.NONE) {
+				mOutStream = fileStream;
 
-		public void writeWholeFile(
-				final byte[] buf,
-				final int offset,
-				final int length) throws IOException {
+			} else if(cacheCompressionType == CacheCompressionType.ZSTD) {
 
-			if(mCacheCompressionType == CacheCompressionType.NONE) {
-				mOutStream.write(buf, offset, length);
-				mCompressedLength += length;
+				try {
+					mOutStream = new ZstdOutputStream(
+							fileStream,
+							CacheCompressionDictionaries.COMPRESSION_LEVEL);
 
-			} else if(mCacheCompressionType == CacheCompressionType.ZSTD) {
+				} catch(final IOException | RuntimeException e) {
+					fileStream.close();
+					throw e;
+				}
 
-				final long maxDestSize = Zstd.compressBound(length);
+			} else if(cacheCompressionType == CacheCompressionType.ZSTD_DICTIONARY) {
 
-				if(maxDestSize > Integer.MAX_VALUE) {
-					throw new IOException("Max output size is greater than MAX_INT");
-				}
+				try {
+					final ZstdDictCompress dictionary
+							= mCompressionDictionaries.getForCompression(request.fileType);
 
-				final byte[] dst = new byte[(int)maxDestSize];
+					if(dictionary == null) {
+						throw new IOException("No dictionary for file type " + request.fileType);
+					}
 
-				final int size = (int)Zstd.compressByteArray(
-						dst,
-						0,
-						dst.length,
-						buf,
-						offset,
-						length,
-						3);
+					mOutStream = new ZstdOutputStream(fileStream).setDict(dictionary);
 
-				mOutStream.write(dst, 0, size);
+				} catch(final IOException | RuntimeException e) {
+					fileStream.close();
+					throw e;
+				}
 
-				mCompressedLength += size;
+			} else {
+				fileStream.close();
+				throw new RuntimeException("Unhandled compression type " + cacheCompressionType);
 			}
+		}
 
+		@NonNull
+		public ReadableCacheFile getReadableCacheFile() {
+			return Objects.requireNonNull(readableCacheFile);
+		}
+
+		// Called with each chunk as it arrives from the network
+		public void write(
+				final byte[] buf,
+				final int offset,
+				final int length) throws IOException {
+
+			mOutStream.write(buf, offset, length);
 			mUncompressedLength += length;
 		}
 
 		public void onWriteFinished() throws IOException {
 
+			mOutStream.flush();
+			mOutStream.close();
+
+			final long compressedLength = mTmpFile.length();
+
 			final long cacheFileId = dbManager.newEntry(
 					mRequest.url,
 					mRequest.user,
@@ -384,21 +795,23 @@ public final class CacheManager {
 					mSession,
 					mMimetype,
 					mCacheCompressionType,
-					mCompressedLength,
-					mUncompressedLength);
-
-			mOutStream.flush();
-			mOutStream.close();
-
-			final File subdir = getSubdirForCacheFile(location, cacheFileId);
-			FileUtils.mkdirs(subdir);
-
-			final File dstFile = new File(subdir, cacheFileId + ext);
-			FileUtils.moveFile(mTmpFile, dstFile);
-
-			dbManager.setEntryDone(cacheFileId);
+					compressedLength,
+					mUncompressedLength,
+					location,
+					id -> {
+						final File subdir = getSubdirForCacheFile(location, id);
+						FileUtils.mkdirs(subdir);
+
+						final File dstFile = new File(subdir, id + ext);
+						FileUtils.moveFile(mTmpFile, dstFile);
+					});
+
+			readableCacheFile = new ReadableCacheFile(
+					cacheFileId,
+					mCacheCompressionType,
+					location);
 
-			readableCacheFile = new ReadableCacheFile(cacheFileId, mCacheCompressionType);
+			onCacheEntryAdded();
 		}
 
 		public void onWriteCancelled() {
@@ -433,14 +846,34 @@ public final class CacheManager {
 		private final long mId;
 		@NonNull private final CacheCompressionType mCacheCompressionType;
 
+		// Looked up from the database if not known
+		@Nullable private File mLocation;
+
 		@Nullable private Uri mCachedUri;
 
 		private ReadableCacheFile(
 				final long id,
-				@NonNull final CacheCompressionType cacheCompressionType) {
+				@NonNull final CacheCompressionType cacheCompressionType,
+				@Nullable final File location) {
 
 			mId = id;
 			mCacheCompressionType = cacheCompressionType;
+			mLocation = location;
+		}
+
+		@Nullable
+		private File getLocation() {
+
+			if(mLocation == null) {
+
+				final Optional<CacheEntry> entry = dbManager.selectById(mId);
+
+				if(entry.isPresent()) {
+					mLocation = entry.get().location;
+				}
+			}
+
+			return mLocation;
 		}
 
 		public long getId() {
@@ -450,7 +883,10 @@ public final class CacheManager {
 		@NonNull
 		public InputStream getInputStream() throws IOException {
 
-			final InputStream result = getCacheFileInputStream(mId, mCacheCompressionType);
+			final InputStream result = getCacheFileInputStream(
+					mId,
+					getLocation(),
+					mCacheCompressionType);
 
 			if(result == null) {
 				throw new FileNotFoundException("Stream was null for id " + mId);
@@ -463,7 +899,7 @@ public final class CacheManager {
 		public Uri getUri() {
 
 			if(mCachedUri == null) {
-				mCachedUri = getCacheFileUri(mId);
+				mCachedUri = getCacheFileUri(mId, getLocation());
 			}
 
 			return mCachedUri;
@@ -471,7 +907,13 @@ public final class CacheManager {
 
 		@NonNull
 		public Optional<File> getFile() {
-			return Optional.ofNullable(getExistingCacheFile(mId));
+			final File file = getExistingCacheFile(mId, getLocation());
+
+			if(file == null || !file.exists()) {
+				return Optional.empty();
+			}
+
+			return Optional.of(file);
 		}
 
 		@NonNull
@@ -502,10 +944,17 @@ public final class CacheManager {
 		return new WritableCacheFile(request, session, mimetype, cacheCompressionType);
 	}
 
+	// If the location is known, the file isn't checked. Opening it then fails with
+	// FileNotFoundException if it's missing, which callers treat as a cache miss.
 	@Nullable
-	private File getExistingCacheFile(final long id) {
+	private File getExistingCacheFile(final long id, @Nullable final File location) {
 
-		final List<File> dirs = getCacheDirs(context);
+		if(location != null) {
+			return new File(getSubdirForCacheFile(location, id), id + ext);
+		}
+
+		// The entry hasn't been migrated yet, so search for the file
+		final List<File> dirs = getCacheDirs();
 
 		// Try new format first
 		for(final File dir : dirs) {
@@ -528,34 +977,44 @@ public final class CacheManager {
 	@Nullable
 	private SeekableInputStream getCacheFileInputStream(
 			final long id,
+			@Nullable final File location,
 			@NonNull final CacheCompressionType cacheCompressionType) throws IOException {
 
-		final File cacheFile = getExistingCacheFile(id);
+		final File cacheFile = getExistingCacheFile(id, location);
 
 		if(cacheFile == null) {
 			return null;
 		}
 
-		if(cacheCompressionType == CacheCompressionType.NONE) {
-			return new SeekableFileInputStream(cacheFile);
+		try {
+			if(cacheCompressionType == CacheCompressionType.NONE) {
+				return new SeekableFileInputStream(cacheFile);
+
+			} else if(cacheCompressionType == CacheCompressionType.ZSTD) {
 
-		} else if(cacheCompressionType == CacheCompressionType.ZSTD) {
+				return new SeekableZstdFileInputStream(cacheFile);
 
-			try(InputStream is = new ZstdInputStream(new FileInputStream(cacheFile))) {
-				return new MemoryDataStream(General.readWholeStream(is)).getInputStream();
+			} else if(cacheCompressionType == CacheCompressionType.ZSTD_DICTIONARY) {
+
+				return new SeekableZstdFileInputStream(
+						cacheFile,
+						mCompressionDictionaries::getForDecompression);
+
+			} else {
+				throw new RuntimeException("Unhandled compression type " + cacheCompressionType);
 			}
 
-		} else {
-			throw new RuntimeException("Unhandled compression type " + cacheCompressionType);
+		} catch(final FileNotFoundException e) {
+			return null;
 		}
 	}
 
 	@Nullable
-	private Uri getCacheFileUri(final long id) {
+	private Uri getCacheFileUri(final long id, @Nullable final File location) {
 
-		final File cacheFile = getExistingCacheFile(id);
+		final File cacheFile = getExistingCacheFile(id, location);
 
-		if(cacheFile == null) {
+		if(cacheFile == null || !cacheFile.exists()) {
 			return null;
 		}
 
@@ -660,14 +1119,19 @@ public final class CacheManager {
 			}
 		}
 
-		private void handleCacheEntryFound(
+		// The entry is forgotten, and the request treated as a cache miss
+		private void handleCacheFileMissing(
 				final CacheEntry entry,
 				final CacheRequest request) {
 
-			final File cacheFile = getExistingCacheFile(entry.id);
+			Log.w(TAG, "Cache file missing for entry " + entry.id);
+
+			dbManager.delete(entry.id);
 
-			if(cacheFile == null) {
+			if(request.downloadStrategy.shouldDownloadIfNotCached()) {
+				queueDownload(request);
 
+			} else {
 				request.notifyFailure(
 						CacheRequest.REQUEST_FAILURE_STORAGE,
 						new RuntimeException(),
@@ -676,30 +1140,48 @@ public final class CacheManager {
 								+ " the actual data couldn't be found. Press refresh to"
 								+ " download the content again.",
 						Optional.empty());
-
-				dbManager.delete(entry.id);
-
-				return;
 			}
+		}
+
+		private void handleCacheEntryFound(
+				final CacheEntry entry,
+				final CacheRequest request) {
 
 			mDiskCacheThreadPool.add(new PrioritisedCachedThreadPool.Task() {
 
 				@NonNull
 				@Override
 				public Priority getPriority() {
-					return request.priority;
+					return request.getPriority();
 				}
 
 				@Override
 				public void run() {
 
+					final long now = RRTime.utcCurrentTimeMillis();
+
+					if(now - entry.lastAccess > CacheDbManager.LAST_ACCESS_GRANULARITY_MS) {
+						dbManager.markAccessed(entry.id, now);
+					}
+
+					final AtomicBoolean fileMissingHandled = new AtomicBoolean(false);
+
 					final GenericFactory<SeekableInputStream, IOException> streamFactory = () -> {
-						final SeekableInputStream stream
-								= getCacheFileInputStream(entry.id, entry.cacheCompressionType);
+						final SeekableInputStream stream = getCacheFileInputStream(
+								entry.id,
+								entry.location,
+								entry.cacheCompressionType);
 
+						// The file isn't checked before this, so a missing file is only
+						// found here. The request then continues as a cache miss.
 						if(stream == null) {
-							dbManager.delete(entry.id);
-							throw new IOException("Failed to open file");
+
+							if(!fileMissingHandled.getAndSet(true)) {
+								handleCacheFileMissing(entry, request);
+							}
+
+							throw new FileNotFoundException(
+									"Cache file missing for entry " + entry.id);
 						}
 
 						return stream;
@@ -720,7 +1202,10 @@ public final class CacheManager {
 							entry.mimetype);
 
 					request.notifyCacheFileWritten(
-							new ReadableCacheFile(entry.id, entry.cacheCompressionType),
+							new ReadableCacheFile(
+									entry.id,
+									entry.cacheCompressionType,
+									entry.location),
 							entry.timestamp,
 							entry.session,
 							true,
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.cache;
+
+import androidx.annotation.Nullable;
+
+// Tracks a run of CacheManager.pruneCache(). Pruning happens in batches, and
+// stops after the current batch once cancelled.
+public final class CachePruneOperation {
+
+	public interface Listener {
+		void onPruneProgress(long entriesPruned, long bytesFreed);
+	}
+
+	@Nullable private final Listener mListener;
+
+	private volatile boolean mCancelled = false;
+
+	private long mEntriesPruned = 0;
+	private long mBytesFreed = 0;
+
+	public CachePruneOperation(@Nullable final Listener listener) {
+		mListener = listener;
+	}
+
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	void onBatchPruned(final int entries, final long bytesFreed) {
+
+		final long totalEntries;
+		final long totalBytes;
+
+		synchronized(this) {
+			mEntriesPruned += entries;
+			mBytesFreed += bytesFreed;
+
+			totalEntries = mEntriesPruned;
+			totalBytes = mBytesFreed;
+		}
+
+		if(mListener != null) {
+			mListener.onPruneProgress(totalEntries, totalBytes);
+		}
+	}
+
+	public synchronized long getEntriesPruned() {
+		return mEntriesPruned;
+	}
+
+	public synchronized long getBytesFreed() {
+		return mBytesFreed;
+	}
+}
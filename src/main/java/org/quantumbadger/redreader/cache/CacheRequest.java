@@ -87,7 +87,9 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 	public final RedditAccount user;
 	public final UUID requestSession;
 
-	@NonNull public final Priority priority;
+	// May be changed while the request is queued, e.g. as the row it belongs to
+	// scrolls on or off screen
+	@NonNull private Priority mPriority;
 
 	@NonNull public final DownloadStrategy downloadStrategy;
 
@@ -101,6 +103,9 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 	@Nullable private CacheDownload download;
 	private boolean cancelled;
 
+	// Set once the request has completed or failed
+	private boolean mFinished;
+
 	public final Context context;
 
 	private final CacheRequestCallbacks mCallbacks;
@@ -114,14 +119,57 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 		return true;
 	}
 
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	public synchronized boolean isFinished() {
+		return mFinished || cancelled;
+	}
+
+	private synchronized void setFinished() {
+		mFinished = true;
+	}
+
+	@NonNull
+	public synchronized Priority getPriority() {
+		return mPriority;
+	}
+
+	public void setPriority(@NonNull final Priority priority) {
+
+		final CacheDownload download;
+
+		synchronized(this) {
+
+			if(priority.equals(mPriority)) {
+				return;
+			}
+
+			mPriority = priority;
+			download = this.download;
+		}
+
+		// Outside the lock, as the download reads the priority while holding its own
+		if(download != null) {
+			download.onRequestPriorityChanged();
+		}
+	}
+
 	// Can be called to cancel the request
-	public synchronized void cancel() {
+	public void cancel() {
+
+		final CacheDownload download;
 
-		cancelled = true;
+		synchronized(this) {
+			cancelled = true;
+			download = mFinished ? null : this.download;
+			this.download = null;
+		}
 
+		// Outside the lock, as the download calls setDownload() while holding its own
 		if(download != null) {
-			download.cancel();
-			download = null;
+			download.cancel(this);
 		}
 	}
 
@@ -231,7 +279,7 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 		this.url = url;
 		this.user = user;
 		this.requestSession = requestSession;
-		this.priority = priority;
+		mPriority = priority;
 		this.downloadStrategy = downloadStrategy;
 		this.fileType = fileType;
 		this.queueType = queueType;
@@ -253,9 +301,12 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 
 	@Override
 	public int compareTo(final CacheRequest another) {
-		return priority.isHigherPriorityThan(another.priority)
+		final Priority priority = getPriority();
+		final Priority otherPriority = another.getPriority();
+
+		return priority.isHigherPriorityThan(otherPriority)
 				? -1
-				: (another.priority.isHigherPriorityThan(priority) ? 1 : 0);
+				: (otherPriority.isHigherPriorityThan(priority) ? 1 : 0);
 	}
 
 	// Callbacks
@@ -282,6 +333,7 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 			final boolean fromCache,
 			@Nullable final String mimetype) {
 
+		setFinished();
 		mCallbacks.onDataStreamComplete(streamFactory, timestamp, session, fromCache, mimetype);
 	}
 
@@ -292,6 +344,8 @@ public final class CacheRequest implements Comparable<CacheRequest> {
 			final String readableMessage,
 			@NonNull final Optional<FailedRequestBody> body) {
 
+		setFinished();
+
 		try {
 			mCallbacks.onFailure(type, t, httpStatus, readableMessage, body);
 
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.cache;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.fasterxml.jackson.core.JsonParser;
+import org.quantumbadger.redreader.activities.BugReportActivity;
+import org.quantumbadger.redreader.common.CachedThreadPool;
+import org.quantumbadger.redreader.common.General;
+import org.quantumbadger.redreader.common.GenericFactory;
+import org.quantumbadger.redreader.common.Optional;
+import org.quantumbadger.redreader.common.datastream.SeekableInputStream;
+import org.quantumbadger.redreader.http.FailedRequestBody;
+import org.quantumbadger.redreader.jsonwrap.JsonValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Like CacheRequestJSONParser, but hands the listener a token stream rather than a
+ * fully parsed document. As the stream is read while the download is still in
+ * progress, the listener can act on the start of the response before the end has
+ * arrived.
+ */
+public final class CacheRequestJSONStreamParser implements CacheRequestCallbacks {
+
+	private static final CachedThreadPool mThreadPool
+			= new CachedThreadPool(5, "JSONStreamParser");
+
+	public interface Listener {
+
+		// An IOException thrown here, including the JsonParseException thrown for
+		// malformed or unexpected JSON, is reported to onFailure() as a parse failure.
+		// Anything else is a bug, and is passed to the global error handler.
+		void onJsonStream(
+				@NonNull JsonParser parser,
+				long timestamp,
+				@NonNull UUID session,
+				boolean fromCache) throws Exception;
+
+		void onFailure(
+				int type,
+				@Nullable Throwable t,
+				@Nullable Integer httpStatus,
+				@Nullable String readableMessage,
+				@NonNull Optional<FailedRequestBody> body);
+
+		default void onDownloadNecessary() {
+			// Do nothing by default
+		}
+	}
+
+	@NonNull private final Listener mListener;
+	@NonNull private final Context mContext;
+
+	private final AtomicBoolean mNotifiedFailure = new AtomicBoolean(false);
+
+	public CacheRequestJSONStreamParser(
+			@NonNull final Listener listener,
+			@NonNull final Context context) {
+		mListener = listener;
+		mContext = context;
+	}
+
+	@Override
+	public void onDownloadNecessary() {
+		mListener.onDownloadNecessary();
+	}
+
+	@Override
+	public void onDataStreamAvailable(
+			@NonNull final GenericFactory<SeekableInputStream, IOException> streamFactory,
+			final long timestamp,
+			@NonNull final UUID session,
+			final boolean fromCache,
+			@Nullable final String mimetype) {
+
+		try {
+			mThreadPool.add(() -> {
+
+				try(InputStream is = streamFactory.create();
+					JsonParser parser = JsonValue.createParser(is)) {
+
+					mListener.onJsonStream(parser, timestamp, session, fromCache);
+
+				} catch(final IOException e) {
+					onFailure(
+							CacheRequest.REQUEST_FAILURE_PARSE,
+							e,
+							null,
+							"Exception during JSON parse",
+							General.ignoreIOException(streamFactory)
+									.filter(FailedRequestBody::from));
+
+				} catch(final Throwable t) {
+					BugReportActivity.handleGlobalError(mContext, t);
+				}
+			});
+
+		} catch(final Exception e) {
+			onFailure(
+					CacheRequest.REQUEST_FAILURE_STORAGE,
+					e,
+					null,
+					"Exception in CacheRequestJSONStreamParser",
+					Optional.empty());
+		}
+	}
+
+	@Override
+	public void onFailure(
+			final int type,
+			@Nullable final Throwable t,
+			@Nullable final Integer httpStatus,
+			@Nullable final String readableMessage,
+			@NonNull final Optional<FailedRequestBody> body) {
+
+		if(!mNotifiedFailure.getAndSet(true)) {
+			mListener.onFailure(type, t, httpStatus, readableMessage, body);
+		}
+	}
+}
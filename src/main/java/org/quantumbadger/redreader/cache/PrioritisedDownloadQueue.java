@@ -18,14 +18,38 @@
 package org.quantumbadger.redreader.cache;
 
 import android.content.Context;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import org.quantumbadger.redreader.account.RedditAccount;
+import org.quantumbadger.redreader.common.Optional;
 import org.quantumbadger.redreader.common.PrioritisedCachedThreadPool;
+import org.quantumbadger.redreader.http.body.HTTPRequestBody;
 
+import java.net.URI;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Objects;
+import java.util.UUID;
 
 
 class PrioritisedDownloadQueue {
 
+	// Reddit API requests which may be in progress at once, once permitted by the
+	// rate limiter
+	private static final int MAX_REDDIT_DOWNLOADS_IN_FLIGHT = 4;
+
 	private final HashSet<CacheDownload> redditDownloadsQueued = new HashSet<>();
+	private int mRedditDownloadsInFlight = 0;
+
+	private final RedditRateLimiter mRedditRateLimiter = new RedditRateLimiter(
+			RedditRateLimiter.DEFAULT_CAPACITY,
+			SystemClock.elapsedRealtime());
+
+	// Downloads which are queued or in progress, so that concurrent requests for the
+	// same resource can share a single download
+	private final HashMap<DownloadKey, CacheDownload> mDownloadsInFlight = new HashMap<>();
+	private final HashMap<CacheDownload, DownloadKey> mDownloadKeys = new HashMap<>();
 
 	private final PrioritisedCachedThreadPool mDownloadThreadPool
 			= new PrioritisedCachedThreadPool(5, "Download");
@@ -34,9 +58,49 @@ class PrioritisedDownloadQueue {
 		new RedditQueueProcessor().start();
 	}
 
-	public synchronized void add(final CacheRequest request, final CacheManager manager) {
+	public void add(final CacheRequest request, final CacheManager manager) {
+
+		final DownloadKey key = new DownloadKey(request);
 
-		final CacheDownload download = new CacheDownload(request, manager);
+		CacheDownload refused = null;
+
+		while(true) {
+
+			final CacheDownload existing = addNewDownloadIfAbsent(key, request, manager, refused);
+
+			// Attached outside the lock, as this may replay callbacks to the request
+			if(existing == null || existing.attach(request)) {
+				return;
+			}
+
+			// The download finished before the request could attach
+			refused = existing;
+		}
+	}
+
+	// The check and the insert happen under the same lock, so identical requests which
+	// arrive together can't both start a download. Returns the download already in
+	// flight, which the caller then attaches to, or null if a new download was started.
+	// A download which has already refused this request is replaced.
+	@Nullable
+	private synchronized CacheDownload addNewDownloadIfAbsent(
+			@NonNull final DownloadKey key,
+			final CacheRequest request,
+			final CacheManager manager,
+			@Nullable final CacheDownload refused) {
+
+		final CacheDownload existing = mDownloadsInFlight.get(key);
+
+		if(existing != null && existing != refused) {
+			return existing;
+		}
+
+		final CacheDownload download = new CacheDownload(request, manager, this);
+
+		if(!download.isCancelled()) {
+			mDownloadsInFlight.put(key, download);
+			mDownloadKeys.put(download, key);
+		}
 
 		if(request.queueType == CacheRequest.DOWNLOAD_QUEUE_REDDIT_API) {
 			redditDownloadsQueued.add(download);
@@ -49,17 +113,51 @@ class PrioritisedDownloadQueue {
 		} else {
 			mDownloadThreadPool.add(download);
 		}
+
+		return null;
 	}
 
-	private synchronized CacheDownload getNextRedditInQueue() {
+	// Moves a queued download to its new position after its priority has changed
+	void onPriorityChanged(@NonNull final CacheDownload download) {
+		mDownloadThreadPool.updatePriority(download);
+	}
+
+	// Called by CacheDownload once it will no longer accept new requests
+	synchronized void onDownloadFinished(@NonNull final CacheDownload download) {
+
+		final DownloadKey key = mDownloadKeys.remove(download);
+
+		if(key != null && mDownloadsInFlight.get(key) == download) {
+			mDownloadsInFlight.remove(key);
+		}
+	}
+
+	void onRedditRateLimitHeaders(
+			@Nullable final String remaining,
+			@Nullable final String reset) {
+
+		mRedditRateLimiter.onRateLimitHeaders(remaining, reset, SystemClock.elapsedRealtime());
+	}
 
-		while(redditDownloadsQueued.isEmpty()) {
+	private synchronized void onRedditDownloadFinished() {
+		mRedditDownloadsInFlight--;
+		notifyAll();
+	}
+
+	// Waits until there is a queued download, and room for it to start
+	private synchronized void waitForRedditDownload() {
+
+		while(redditDownloadsQueued.isEmpty()
+				|| mRedditDownloadsInFlight >= MAX_REDDIT_DOWNLOADS_IN_FLIGHT) {
 			try {
 				wait();
 			} catch(final InterruptedException e) {
 				throw new RuntimeException(e);
 			}
 		}
+	}
+
+	private synchronized CacheDownload getNextRedditInQueue() {
 
 		CacheDownload next = null;
 
@@ -70,6 +168,7 @@ class PrioritisedDownloadQueue {
 		}
 
 		redditDownloadsQueued.remove(next);
+		mRedditDownloadsInFlight++;
 
 		return next;
 	}
@@ -85,21 +184,80 @@ class PrioritisedDownloadQueue {
 
 			while(true) {
 
-				synchronized(this) {
-					final CacheDownload download = getNextRedditInQueue();
-					new CacheDownloadThread(
-							download,
-							true,
-							"Cache Download Thread: Reddit");
-				}
+				waitForRedditDownload();
+
+				final long waitMs = mRedditRateLimiter.tryAcquire(SystemClock.elapsedRealtime());
 
-				try {
-					sleep(1200); // Delay imposed by reddit API restrictions.
-				} catch(final InterruptedException e) {
-					throw new RuntimeException(e);
+				if(waitMs > 0) {
+
+					try {
+						sleep(waitMs);
+					} catch(final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+
+					continue;
 				}
+
+				// Chosen only once a request is permitted, in case a higher priority
+				// download was queued while waiting
+				new CacheDownloadThread(
+						getNextRedditInQueue(),
+						true,
+						"Cache Download Thread: Reddit",
+						PrioritisedDownloadQueue.this::onRedditDownloadFinished);
 			}
 
 		}
 	}
+
+	private static final class DownloadKey {
+
+		@NonNull private final URI mUrl;
+		@NonNull private final RedditAccount mUser;
+		private final int mFileType;
+		private final int mQueueType;
+		private final boolean mCache;
+		@Nullable private final UUID mRequestSession;
+
+		// Request bodies don't implement equals(), so POST requests are never merged
+		@NonNull private final Optional<HTTPRequestBody> mRequestBody;
+
+		private DownloadKey(@NonNull final CacheRequest request) {
+			mUrl = request.url;
+			mUser = request.user;
+			mFileType = request.fileType;
+			mQueueType = request.queueType;
+			mCache = request.cache;
+			mRequestSession = request.requestSession;
+			mRequestBody = request.requestBody;
+		}
+
+		@Override
+		public boolean equals(@Nullable final Object o) {
+
+			if(this == o) {
+				return true;
+			}
+
+			if(!(o instanceof DownloadKey)) {
+				return false;
+			}
+
+			final DownloadKey other = (DownloadKey)o;
+
+			return mFileType == other.mFileType
+					&& mQueueType == other.mQueueType
+					&& mCache == other.mCache
+					&& mUrl.equals(other.mUrl)
+					&& mUser.equals(other.mUser)
+					&& Objects.equals(mRequestSession, other.mRequestSession)
+					&& mRequestBody.equals(other.mRequestBody);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mUrl, mUser, mFileType, mQueueType, mCache);
+		}
+	}
 }
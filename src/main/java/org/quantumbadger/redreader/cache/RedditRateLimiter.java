@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.cache;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+
+// Token bucket for requests to the Reddit API. Tokens accumulate while the app is idle,
+// so that a burst of requests can start immediately, and the refill rate follows the
+// X-Ratelimit headers returned by Reddit. All times are monotonic, in milliseconds.
+public final class RedditRateLimiter {
+
+	private static final String TAG = "RedditRateLimiter";
+
+	public static final int DEFAULT_CAPACITY = 10;
+
+	// Used until Reddit tells us otherwise
+	public static final long DEFAULT_INTERVAL_MS = 1000;
+
+	// Reddit allows at most 100 requests per minute per client
+	public static final long MIN_INTERVAL_MS = 600;
+
+	private final int mCapacity;
+
+	private double mTokens;
+	private long mIntervalMs = DEFAULT_INTERVAL_MS;
+	private long mLastRefill;
+
+	// Set when Reddit reports that no requests remain in the current period
+	private long mBlockedUntil;
+
+	public RedditRateLimiter(final int capacity, final long now) {
+		mCapacity = capacity;
+		mTokens = capacity;
+		mLastRefill = now;
+		mBlockedUntil = now;
+	}
+
+	private void refill(final long now) {
+
+		if(now > mLastRefill) {
+			mTokens = Math.min(mCapacity, mTokens + (double)(now - mLastRefill) / mIntervalMs);
+			mLastRefill = now;
+		}
+	}
+
+	// Returns zero, and takes a token, if a request may start now. Otherwise returns the
+	// time to wait before trying again.
+	public synchronized long tryAcquire(final long now) {
+
+		if(now < mBlockedUntil) {
+			return mBlockedUntil - now;
+		}
+
+		refill(now);
+
+		if(mTokens >= 1) {
+			mTokens -= 1;
+			return 0;
+		}
+
+		return Math.max(1, (long)Math.ceil((1 - mTokens) * mIntervalMs));
+	}
+
+	// Spreads the requests Reddit says we have left evenly over the rest of the period
+	public synchronized void onRateLimitStatus(
+			final double remaining,
+			final long resetSecs,
+			final long now) {
+
+		refill(now);
+
+		final long resetMs = Math.max(0, resetSecs) * 1000;
+
+		if(remaining < 1) {
+			// A new period starts once the block ends
+			mTokens = 1;
+			mBlockedUntil = Math.max(mBlockedUntil, now + resetMs);
+			mLastRefill = mBlockedUntil;
+			return;
+		}
+
+		mIntervalMs = Math.max(MIN_INTERVAL_MS, (long)(resetMs / remaining));
+		mTokens = Math.min(mTokens, remaining);
+	}
+
+	public void onRateLimitHeaders(
+			@Nullable final String remaining,
+			@Nullable final String reset,
+			final long now) {
+
+		if(remaining == null || reset == null) {
+			return;
+		}
+
+		try {
+			onRateLimitStatus(
+					Double.parseDouble(remaining.trim()),
+					Long.parseLong(reset.trim()),
+					now);
+
+		} catch(final NumberFormatException e) {
+			Log.e(TAG, "Invalid rate limit headers: " + remaining + ", " + reset, e);
+		}
+	}
+}
@@ -229,10 +229,14 @@ public final class Constants {
 		public static final int INLINE_IMAGE_PREVIEW = 100;
 		public static final int IMAGE_PRECACHE = 500;
 		public static final int COMMENT_PRECACHE = 500;
+		public static final int OFFSCREEN = 550;
+		public static final int COMMENT_BODY_VISIBLE = 0;
+		public static final int COMMENT_BODY_PRECACHE = 100;
 		public static final int IMAGE_VIEW = -400;
 		public static final int API_USER_ABOUT = -500;
 		public static final int API_INBOX_LIST = -500;
 		public static final int DEV_ANNOUNCEMENTS = 600;
+		public static final int CACHE_SIZE_LIMIT = 700;
 	}
 
 	public static final class FileType {
@@ -1205,6 +1205,17 @@ public final class PrefsUtility {
 				"168"));
 	}
 
+	// pref_cache_max_size
+
+	// Returns zero if the size is unlimited
+	public static long pref_cache_max_size_bytes() {
+		return 1000L
+				* 1000L
+				* Long.parseLong(getString(
+				R.string.pref_cache_max_size_key,
+				"0"));
+	}
+
 	// pref_cache_precache_images
 
 	public static NeverAlwaysOrWifiOnly cache_precache_images() {
@@ -19,11 +19,16 @@ package org.quantumbadger.redreader.common;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class PrioritisedCachedThreadPool {
 
-	private final ArrayList<Task> mTasks = new ArrayList<>(16);
+	// Binary heap, ordered by priority and then by the order the tasks were added
+	private Task[] mHeap = new Task[16];
+	private int mSize = 0;
+	private long mNextSequence = 0;
+
+	private final Object mLock = new Object();
 	private final Executor mExecutor = new Executor();
 
 	private final int mMaxThreads;
@@ -40,9 +45,26 @@ public class PrioritisedCachedThreadPool {
 
 	public void add(final Task task) {
 
-		synchronized(mTasks) {
-			mTasks.add(task);
-			mTasks.notifyAll();
+		synchronized(mLock) {
+
+			if(task.mHeapIndex >= 0) {
+				throw new RuntimeException("Task already queued");
+			}
+
+			task.mQueuedPriority = task.getPriority();
+			task.mSequence = mNextSequence++;
+
+			if(mSize == mHeap.length) {
+				mHeap = Arrays.copyOf(mHeap, mHeap.length * 2);
+			}
+
+			mHeap[mSize] = task;
+			task.mHeapIndex = mSize;
+			mSize++;
+
+			siftUp(task.mHeapIndex);
+
+			mLock.notifyAll();
 
 			if(mIdleThreads < 1 && mRunningThreads < mMaxThreads) {
 				mRunningThreads++;
@@ -51,13 +73,166 @@ public class PrioritisedCachedThreadPool {
 		}
 	}
 
+	/**
+	 * The priority of a task is read when it is added. If it changes while the task
+	 * is queued, this must be called to move the task to its new position. Tasks
+	 * keep their original place among others of equal priority.
+	 *
+	 * @return false if the task is no longer queued.
+	 */
+	public boolean updatePriority(@NonNull final Task task) {
+
+		synchronized(mLock) {
+
+			final int index = task.mHeapIndex;
+
+			if(index < 0 || mHeap[index] != task) {
+				return false;
+			}
+
+			task.mQueuedPriority = task.getPriority();
+
+			siftUp(index);
+			siftDown(task.mHeapIndex);
+
+			return true;
+		}
+	}
+
+	/**
+	 * Removes the task from the queue, if it hasn't started running yet.
+	 *
+	 * @return false if the task is no longer queued.
+	 */
+	public boolean remove(@NonNull final Task task) {
+
+		synchronized(mLock) {
+
+			final int index = task.mHeapIndex;
+
+			if(index < 0 || mHeap[index] != task) {
+				return false;
+			}
+
+			mSize--;
+
+			final Task last = mHeap[mSize];
+			mHeap[mSize] = null;
+
+			if(index < mSize) {
+				place(last, index);
+				siftUp(index);
+				siftDown(last.mHeapIndex);
+			}
+
+			task.mHeapIndex = -1;
+			task.mQueuedPriority = null;
+
+			return true;
+		}
+	}
+
 	public static abstract class Task {
 
+		// Only accessed while holding the lock of the pool which queued the task
+		private Priority mQueuedPriority;
+		private long mSequence;
+		private int mHeapIndex = -1;
+
 		@NonNull public abstract Priority getPriority();
 
 		public abstract void run();
 	}
 
+	private static boolean runsBefore(@NonNull final Task a, @NonNull final Task b) {
+
+		if(a.mQueuedPriority.isHigherPriorityThan(b.mQueuedPriority)) {
+			return true;
+
+		} else if(b.mQueuedPriority.isHigherPriorityThan(a.mQueuedPriority)) {
+			return false;
+
+		} else {
+			return a.mSequence < b.mSequence;
+		}
+	}
+
+	private void place(@NonNull final Task task, final int index) {
+		mHeap[index] = task;
+		task.mHeapIndex = index;
+	}
+
+	private void siftUp(int index) {
+
+		final Task task = mHeap[index];
+
+		while(index > 0) {
+
+			final int parentIndex = (index - 1) / 2;
+			final Task parent = mHeap[parentIndex];
+
+			if(!runsBefore(task, parent)) {
+				break;
+			}
+
+			place(parent, index);
+			index = parentIndex;
+		}
+
+		place(task, index);
+	}
+
+	private void siftDown(int index) {
+
+		final Task task = mHeap[index];
+
+		while(true) {
+
+			int childIndex = index * 2 + 1;
+
+			if(childIndex >= mSize) {
+				break;
+			}
+
+			if(childIndex + 1 < mSize && runsBefore(mHeap[childIndex + 1], mHeap[childIndex])) {
+				childIndex++;
+			}
+
+			final Task child = mHeap[childIndex];
+
+			if(!runsBefore(child, task)) {
+				break;
+			}
+
+			place(child, index);
+			index = childIndex;
+		}
+
+		place(task, index);
+	}
+
+	@NonNull
+	private Task removeFirst() {
+
+		final Task result = mHeap[0];
+
+		mSize--;
+
+		if(mSize > 0) {
+			place(mHeap[mSize], 0);
+			mHeap[mSize] = null;
+			siftDown(0);
+
+		} else {
+			mHeap[0] = null;
+		}
+
+		result.mHeapIndex = -1;
+		result.mQueuedPriority = null;
+
+		return result;
+	}
+
 	private final class Executor implements Runnable {
 
 		@Override
@@ -65,41 +240,31 @@ public class PrioritisedCachedThreadPool {
 
 			while(true) {
 
-				Task taskToRun = null;
+				final Task taskToRun;
 
-				synchronized(mTasks) {
+				synchronized(mLock) {
 
-					if(mTasks.isEmpty()) {
+					if(mSize == 0) {
 
 						mIdleThreads++;
 
 						try {
-							mTasks.wait(30_000);
+							mLock.wait(30_000);
 						} catch(final InterruptedException e) {
 							throw new RuntimeException(e);
 						} finally {
 							mIdleThreads--;
 						}
 
-						if(mTasks.isEmpty()) {
+						if(mSize == 0) {
 							mRunningThreads--;
 							return;
 						}
 					}
 
-					int taskIndex = -1;
-					for(int i = 0; i < mTasks.size(); i++) {
-						if(taskToRun == null || mTasks.get(i).getPriority()
-								.isHigherPriorityThan(taskToRun.getPriority())) {
-							taskToRun = mTasks.get(i);
-							taskIndex = i;
-						}
-					}
-
-					mTasks.remove(taskIndex);
+					taskToRun = removeFirst();
 				}
 
-				assert taskToRun != null;
 				taskToRun.run();
 			}
 		}
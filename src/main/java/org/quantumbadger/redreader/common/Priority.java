@@ -43,4 +43,24 @@ public class Priority {
 			return secondary < other.secondary;
 		}
 	}
+
+	@Override
+	public boolean equals(final Object o) {
+
+		if(this == o) {
+			return true;
+		}
+
+		if(!(o instanceof Priority)) {
+			return false;
+		}
+
+		final Priority other = (Priority)o;
+		return primary == other.primary && secondary == other.secondary;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * primary + secondary;
+	}
 }
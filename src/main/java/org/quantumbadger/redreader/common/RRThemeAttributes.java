@@ -84,4 +84,47 @@ public class RRThemeAttributes {
 	public boolean shouldShow(final PrefsUtility.AppearanceCommentHeaderItem type) {
 		return mCommentHeaderItems.contains(type);
 	}
+
+	// Attributes read separately from the same theme and preferences are equal, so
+	// that text built from them can be reused
+	@Override
+	public boolean equals(final Object o) {
+
+		if(this == o) {
+			return true;
+		}
+
+		if(!(o instanceof RRThemeAttributes)) {
+			return false;
+		}
+
+		final RRThemeAttributes other = (RRThemeAttributes)o;
+
+		return rrCommentHeaderBoldCol == other.rrCommentHeaderBoldCol
+				&& rrCommentHeaderAuthorCol == other.rrCommentHeaderAuthorCol
+				&& rrPostSubtitleUpvoteCol == other.rrPostSubtitleUpvoteCol
+				&& rrPostSubtitleDownvoteCol == other.rrPostSubtitleDownvoteCol
+				&& rrFlairBackCol == other.rrFlairBackCol
+				&& rrFlairTextCol == other.rrFlairTextCol
+				&& rrGoldBackCol == other.rrGoldBackCol
+				&& rrGoldTextCol == other.rrGoldTextCol
+				&& rrCommentHeaderCol == other.rrCommentHeaderCol
+				&& rrCommentBodyCol == other.rrCommentBodyCol
+				&& rrMainTextCol == other.rrMainTextCol
+				&& colorAccent == other.colorAccent
+				&& rrCommentFontScale == other.rrCommentFontScale
+				&& rrCommentHeaderFontScale == other.rrCommentHeaderFontScale
+				&& mCommentHeaderItems.equals(other.mCommentHeaderItems);
+	}
+
+	@Override
+	public int hashCode() {
+
+		int result = rrCommentHeaderBoldCol;
+		result = 31 * result + rrCommentHeaderAuthorCol;
+		result = 31 * result + rrFlairBackCol;
+		result = 31 * result + rrCommentBodyCol;
+		result = 31 * result + mCommentHeaderItems.hashCode();
+		return result;
+	}
 }
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.common.collections;
+
+// An open-addressing hash map from long to long, using linear probing, which
+// doesn't allocate on lookup or update. The key 0 is reserved to mark empty
+// slots, and may not be used.
+public final class LongLongHashMap {
+
+	public interface Visitor<E extends Exception> {
+		void visit(long key, long value) throws E;
+	}
+
+	private static final long EMPTY_KEY = 0;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] mKeys;
+	private long[] mValues;
+	private int mSize = 0;
+
+	public LongLongHashMap() {
+		mKeys = new long[MIN_CAPACITY];
+		mValues = new long[MIN_CAPACITY];
+	}
+
+	public LongLongHashMap(final LongLongHashMap other) {
+		mKeys = other.mKeys.clone();
+		mValues = other.mValues.clone();
+		mSize = other.mSize;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	private static int hash(final long key, final int mask) {
+		final long mixed = key * 0x9E3779B97F4A7C15L;
+		return (int)(mixed ^ (mixed >>> 32)) & mask;
+	}
+
+	// Returns the slot containing the key, or the empty slot where it would go
+	private int findSlot(final long key) {
+
+		final int mask = mKeys.length - 1;
+		int slot = hash(key, mask);
+
+		while(mKeys[slot] != EMPTY_KEY && mKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private static void checkKey(final long key) {
+		if(key == EMPTY_KEY) {
+			throw new IllegalArgumentException("Key must not be zero");
+		}
+	}
+
+	public boolean containsKey(final long key) {
+		checkKey(key);
+		return mKeys[findSlot(key)] == key;
+	}
+
+	public long get(final long key, final long defaultValue) {
+
+		checkKey(key);
+
+		final int slot = findSlot(key);
+
+		if(mKeys[slot] == key) {
+			return mValues[slot];
+		} else {
+			return defaultValue;
+		}
+	}
+
+	public void put(final long key, final long value) {
+
+		checkKey(key);
+
+		int slot = findSlot(key);
+
+		if(mKeys[slot] == key) {
+			mValues[slot] = value;
+			return;
+		}
+
+		// Keep the load factor at or below 0.5, so probe sequences stay short
+		if((mSize + 1) * 2 > mKeys.length) {
+			resize(mKeys.length * 2);
+			slot = findSlot(key);
+		}
+
+		mKeys[slot] = key;
+		mValues[slot] = value;
+		mSize++;
+	}
+
+	public boolean remove(final long key) {
+
+		checkKey(key);
+
+		final int mask = mKeys.length - 1;
+		int slot = findSlot(key);
+
+		if(mKeys[slot] != key) {
+			return false;
+		}
+
+		// Shift later entries in the probe sequence back, rather than leaving a
+		// marker, so that lookups never have to skip over removed slots
+		int next = slot;
+
+		while(true) {
+
+			next = (next + 1) & mask;
+
+			final long nextKey = mKeys[next];
+
+			if(nextKey == EMPTY_KEY) {
+				break;
+			}
+
+			final int home = hash(nextKey, mask);
+
+			// Only move the entry if its home slot isn't cyclically in (slot, next]
+			final boolean canMove = slot <= next
+					? (home <= slot || home > next)
+					: (home <= slot && home > next);
+
+			if(canMove) {
+				mKeys[slot] = nextKey;
+				mValues[slot] = mValues[next];
+				slot = next;
+			}
+		}
+
+		mKeys[slot] = EMPTY_KEY;
+		mValues[slot] = 0;
+		mSize--;
+
+		return true;
+	}
+
+	public void clear() {
+		mKeys = new long[MIN_CAPACITY];
+		mValues = new long[MIN_CAPACITY];
+		mSize = 0;
+	}
+
+	// The map must not be modified during the visit
+	public <E extends Exception> void forEach(final Visitor<E> visitor) throws E {
+
+		final long[] keys = mKeys;
+		final long[] values = mValues;
+
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != EMPTY_KEY) {
+				visitor.visit(keys[slot], values[slot]);
+			}
+		}
+	}
+
+	private void resize(final int capacity) {
+
+		final long[] oldKeys = mKeys;
+		final long[] oldValues = mValues;
+
+		mKeys = new long[capacity];
+		mValues = new long[capacity];
+
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY_KEY) {
+				final int slot = findSlot(oldKeys[i]);
+				mKeys[slot] = oldKeys[i];
+				mValues[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.common.datastream;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStream;
+import org.quantumbadger.redreader.common.General;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Decompresses on the fly. Seeking forwards decompresses and discards the data in
+// between, and seeking backwards re-opens the file.
+public class SeekableZstdFileInputStream extends SeekableInputStream {
+
+	// ZSTD_FRAMEHEADERSIZE_MAX
+	private static final int FRAME_HEADER_SIZE_MAX = 18;
+
+	public interface DictionarySource {
+		@NonNull ZstdDictDecompress getForDecompression(long dictionaryId) throws IOException;
+	}
+
+	@NonNull private final File mFile;
+	@Nullable private final ZstdDictDecompress mDictionary;
+
+	@NonNull private ZstdInputStream mStream;
+	private long mPosition;
+
+	public SeekableZstdFileInputStream(@NonNull final File file) throws IOException {
+		this(file, (ZstdDictDecompress)null);
+	}
+
+	public SeekableZstdFileInputStream(
+			@NonNull final File file,
+			@Nullable final ZstdDictDecompress dictionary) throws IOException {
+
+		mFile = file;
+		mDictionary = dictionary;
+		mStream = open(file, dictionary);
+	}
+
+	// The dictionary is looked up using the ID in the frame header, which is read from
+	// the same open file as the rest of the stream
+	public SeekableZstdFileInputStream(
+			@NonNull final File file,
+			@NonNull final DictionarySource dictionaries) throws IOException {
+
+		final BufferedInputStream bufferedStream = openBuffered(file);
+
+		final ZstdDictDecompress dictionary;
+		final ZstdInputStream stream;
+
+		try {
+			dictionary = dictionaries.getForDecompression(readDictionaryId(bufferedStream));
+			stream = createStream(bufferedStream, dictionary);
+
+		} catch(final IOException | RuntimeException e) {
+			General.closeSafely(bufferedStream);
+			throw e;
+		}
+
+		mFile = file;
+		mDictionary = dictionary;
+		mStream = stream;
+	}
+
+	@NonNull
+	private static BufferedInputStream openBuffered(@NonNull final File file)
+			throws IOException {
+
+		return new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+	}
+
+	// Leaves the stream where it was
+	private static long readDictionaryId(@NonNull final BufferedInputStream stream)
+			throws IOException {
+
+		final byte[] header = new byte[FRAME_HEADER_SIZE_MAX];
+		int read = 0;
+		int bytesRead;
+
+		stream.mark(header.length);
+
+		while(read < header.length
+				&& (bytesRead = stream.read(header, read, header.length - read)) > 0) {
+			read += bytesRead;
+		}
+
+		stream.reset();
+
+		// Very small files may be shorter than the maximum header size
+		return Zstd.getDictIdFromFrame(Arrays.copyOf(header, read));
+	}
+
+	@NonNull
+	private static ZstdInputStream createStream(
+			@NonNull final BufferedInputStream bufferedStream,
+			@Nullable final ZstdDictDecompress dictionary) throws IOException {
+
+		final ZstdInputStream result = new ZstdInputStream(bufferedStream);
+
+		if(dictionary != null) {
+			result.setDict(dictionary);
+		}
+
+		return result;
+	}
+
+	@NonNull
+	private static ZstdInputStream open(
+			@NonNull final File file,
+			@Nullable final ZstdDictDecompress dictionary) throws IOException {
+
+		final BufferedInputStream bufferedStream = openBuffered(file);
+
+		try {
+			return createStream(bufferedStream, dictionary);
+
+		} catch(final IOException | RuntimeException e) {
+			General.closeSafely(bufferedStream);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getPosition() {
+		return mPosition;
+	}
+
+	@Override
+	public void seek(final long position) throws IOException {
+
+		if(position < mPosition) {
+			final ZstdInputStream newStream = open(mFile, mDictionary);
+			General.closeSafely(mStream);
+			mStream = newStream;
+			mPosition = 0;
+		}
+
+		while(mPosition < position) {
+
+			final long skipped = mStream.skip(position - mPosition);
+
+			if(skipped > 0) {
+				mPosition += skipped;
+
+			} else if(mStream.read() >= 0) {
+				mPosition++;
+
+			} else {
+				throw new IOException("Attempted to seek past the end of the stream");
+			}
+		}
+	}
+
+	@Override
+	public void readRemainingAsBytes(@NonNull final ByteArrayCallback callback) throws IOException {
+		final byte[] result = General.readWholeStream(this);
+		callback.onByteArray(result, 0, result.length);
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		final int result = mStream.read();
+
+		if(result >= 0) {
+			mPosition ++;
+		}
+
+		return result;
+	}
+
+	@Override
+	public int read(final byte[] buf) throws IOException {
+		return read(buf, 0, buf.length);
+	}
+
+	@Override
+	public int read(final byte[] buf, final int off, final int len) throws IOException {
+
+		if(len == 0) {
+			throw new IOException("Attempted to read zero bytes");
+		}
+
+		final int result = mStream.read(buf, off, len);
+
+		if(result > 0) {
+			mPosition += result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+
+		final long result = mStream.skip(n);
+
+		if(result > 0) {
+			mPosition += result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return mStream.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		mStream.close();
+	}
+}
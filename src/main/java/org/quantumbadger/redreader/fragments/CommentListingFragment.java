@@ -36,6 +36,7 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import org.quantumbadger.redreader.R;
@@ -62,6 +63,7 @@ import org.quantumbadger.redreader.reddit.api.RedditAPICommentAction;
 import org.quantumbadger.redreader.reddit.prepared.RedditChangeDataManager;
 import org.quantumbadger.redreader.reddit.prepared.RedditPreparedPost;
 import org.quantumbadger.redreader.reddit.prepared.RedditRenderableComment;
+import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElementViewPool;
 import org.quantumbadger.redreader.reddit.url.RedditURLParser;
 import org.quantumbadger.redreader.views.RedditCommentView;
 import org.quantumbadger.redreader.views.RedditPostHeaderView;
@@ -108,6 +110,9 @@ public class CommentListingFragment extends RRFragment
 
 	private Integer mPreviousFirstVisibleItemPosition;
 
+	private final ArrayList<CommentListingRequest> mRequests = new ArrayList<>();
+	private boolean mCancelled = false;
+
 	public CommentListingFragment(
 			final AppCompatActivity parent,
 			final Bundle savedInstanceState,
@@ -344,7 +349,7 @@ public class CommentListingFragment extends RRFragment
 					comment,
 					!comment.isCollapsed(changeDataManager));
 
-			mCommentListingManager.updateHiddenStatus();
+			mCommentListingManager.updateHiddenStatusOfSubtree(item);
 
 			final LinearLayoutManager layoutManager
 					= (LinearLayoutManager)mRecyclerView.getLayoutManager();
@@ -371,6 +376,18 @@ public class CommentListingFragment extends RRFragment
 		return mPost;
 	}
 
+	public BodyElementViewPool getBodyViewPool() {
+		return mCommentListingManager.getBodyViewPool();
+	}
+
+	// The metrics of the comment body text, so that it can be measured ahead of time
+	public PrecomputedTextCompat.Params getBodyTextMetricsParams() {
+		return getBodyViewPool().getTextMetricsParams(
+				(BaseActivity)getActivity(),
+				RedditCommentView.BODY_TEXT_SIZE
+						* PrefsUtility.appearance_fontscale_bodytext());
+	}
+
 	@Override
 	public Bundle onSaveInstanceState() {
 
@@ -388,8 +405,8 @@ public class CommentListingFragment extends RRFragment
 	@SuppressLint("WrongConstant")
 	private void makeNextRequest(final Context context) {
 
-		if(!mUrlsToDownload.isEmpty()) {
-			new CommentListingRequest(
+		if(!mCancelled && !mUrlsToDownload.isEmpty()) {
+			mRequests.add(new CommentListingRequest(
 					context,
 					this,
 					(BaseActivity)getActivity(),
@@ -400,8 +417,20 @@ public class CommentListingFragment extends RRFragment
 					mSession,
 					mDownloadStrategy,
 					this
-			);
+			));
+		}
+	}
+
+	// Called when the fragment is replaced or its activity is destroyed
+	public void cancel() {
+
+		mCancelled = true;
+
+		for(final CommentListingRequest request : mRequests) {
+			request.cancel();
 		}
+
+		mRequests.clear();
 	}
 
 	@Override
@@ -589,7 +618,7 @@ public class CommentListingFragment extends RRFragment
 	}
 
 	@Override
-	public void onCommentListingRequestAllItemsDownloaded(
+	public void onCommentListingRequestItemsDownloaded(
 			final ArrayList<RedditCommentListItem> items) {
 
 		mCommentListingManager.addComments(items);
@@ -603,8 +632,6 @@ public class CommentListingFragment extends RRFragment
 			mFloatingToolbar.startAnimation(animation);
 		}
 
-		mUrlsToDownload.removeFirst();
-
 		final LinearLayoutManager layoutManager
 				= (LinearLayoutManager)mRecyclerView.getLayoutManager();
 
@@ -617,6 +644,12 @@ public class CommentListingFragment extends RRFragment
 
 			mPreviousFirstVisibleItemPosition = null;
 		}
+	}
+
+	@Override
+	public void onCommentListingRequestAllItemsDownloaded() {
+
+		mUrlsToDownload.removeFirst();
 
 		if(mUrlsToDownload.isEmpty()) {
 
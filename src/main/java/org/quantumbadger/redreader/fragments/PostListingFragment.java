@@ -32,6 +32,8 @@ import androidx.annotation.StringRes;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import org.apache.commons.text.StringEscapeUtils;
 import org.quantumbadger.redreader.R;
 import org.quantumbadger.redreader.account.RedditAccount;
@@ -44,7 +46,7 @@ import org.quantumbadger.redreader.adapters.PostListingManager;
 import org.quantumbadger.redreader.cache.CacheManager;
 import org.quantumbadger.redreader.cache.CacheRequest;
 import org.quantumbadger.redreader.cache.CacheRequestCallbacks;
-import org.quantumbadger.redreader.cache.CacheRequestJSONParser;
+import org.quantumbadger.redreader.cache.CacheRequestJSONStreamParser;
 import org.quantumbadger.redreader.cache.downloadstrategy.DownloadStrategy;
 import org.quantumbadger.redreader.cache.downloadstrategy.DownloadStrategyAlways;
 import org.quantumbadger.redreader.cache.downloadstrategy.DownloadStrategyIfNotCached;
@@ -65,15 +67,13 @@ import org.quantumbadger.redreader.http.FailedRequestBody;
 import org.quantumbadger.redreader.image.GetImageInfoListener;
 import org.quantumbadger.redreader.image.ImageInfo;
 import org.quantumbadger.redreader.io.RequestResponseHandler;
-import org.quantumbadger.redreader.jsonwrap.JsonArray;
-import org.quantumbadger.redreader.jsonwrap.JsonObject;
-import org.quantumbadger.redreader.jsonwrap.JsonValue;
 import org.quantumbadger.redreader.listingcontrollers.CommentListingController;
 import org.quantumbadger.redreader.reddit.PostSort;
 import org.quantumbadger.redreader.reddit.RedditPostListItem;
 import org.quantumbadger.redreader.reddit.RedditSubredditManager;
 import org.quantumbadger.redreader.reddit.api.RedditSubredditSubscriptionManager;
 import org.quantumbadger.redreader.reddit.api.SubredditRequestFailure;
+import org.quantumbadger.redreader.reddit.prepared.RedditChangeDataManager;
 import org.quantumbadger.redreader.reddit.prepared.RedditParsedPost;
 import org.quantumbadger.redreader.reddit.prepared.RedditPreparedPost;
 import org.quantumbadger.redreader.reddit.things.InvalidSubredditNameException;
@@ -90,6 +90,7 @@ import org.quantumbadger.redreader.views.PostListingHeader;
 import org.quantumbadger.redreader.views.RedditPostView;
 import org.quantumbadger.redreader.views.ScrollbarRecyclerViewManager;
 import org.quantumbadger.redreader.views.SearchListingHeader;
+import org.quantumbadger.redreader.views.ViewportRequestScheduler;
 import org.quantumbadger.redreader.views.liststatus.ErrorView;
 
 import java.net.URI;
@@ -118,6 +119,8 @@ public class PostListingFragment extends RRFragment
 	private final PostListingManager mPostListingManager;
 	private final RecyclerView mRecyclerView;
 
+	private final ViewportRequestScheduler mRequestScheduler = new ViewportRequestScheduler();
+
 	private final View mOuter;
 
 	private String mAfter = null;
@@ -231,6 +234,8 @@ public class PostListingFragment extends RRFragment
 			}
 		});
 
+		mRecyclerView.addOnScrollListener(mRequestScheduler);
+
 		General.setLayoutMatchParent(mRecyclerView);
 
 		final DownloadStrategy downloadStrategy;
@@ -647,14 +652,14 @@ public class PostListingFragment extends RRFragment
 				Constants.FileType.POST_LIST,
 				CacheRequest.DOWNLOAD_QUEUE_REDDIT_API,
 				activity,
-				new CacheRequestJSONParser(activity, new CacheRequestJSONParser.Listener() {
+				new CacheRequestJSONStreamParser(new CacheRequestJSONStreamParser.Listener() {
 
 					@Override
-					public void onJsonParsed(
-							@NonNull final JsonValue value,
+					public void onJsonStream(
+							@NonNull final JsonParser parser,
 							final long timestamp,
 							@NonNull final UUID session,
-							final boolean fromCache) {
+							final boolean fromCache) throws Exception {
 
 						final BaseActivity activity = (BaseActivity)getActivity();
 
@@ -687,11 +692,21 @@ public class PostListingFragment extends RRFragment
 
 						// TODO {"error": 403} is received for unauthorized subreddits
 
-						try {
+						// Bind the posts straight from the stream, without building a tree first
+						final ArrayList<RedditThing> postThings = new ArrayList<>(25);
 
-							final JsonObject thing = value.asObject();
-							final JsonObject listing = thing.getObject("data");
-							final JsonArray posts = listing.getArray("children");
+						final boolean foundChildren = RedditThing.parseListing(
+								parser,
+								child -> postThings.add(RedditThing.parse(child)));
+
+						if(!foundChildren) {
+							throw new JsonParseException(
+									parser,
+									"Post listing has no children",
+									parser.getCurrentLocation());
+						}
+
+						try {
 
 							final boolean isNsfwAllowed = PrefsUtility.pref_behaviour_nsfw();
 							final boolean hideReadPosts
@@ -779,10 +794,17 @@ public class PostListingFragment extends RRFragment
 							final ArrayList<RedditPostListItem> downloadedPosts
 									= new ArrayList<>(25);
 
-							for(final JsonValue postThingValue : posts) {
+							final RedditChangeDataManager changeDataManager
+									= RedditChangeDataManager.getInstance(
+											RedditAccountManager.getInstance(activity)
+													.getDefaultAccount());
 
-								final RedditThing postThing
-										= postThingValue.asObject(RedditThing.class);
+							// Filter first, so that only the posts shown are recorded in the
+							// change data
+							final ArrayList<RedditThing> shownPostThings
+									= new ArrayList<>(postThings.size());
+
+							for(final RedditThing postThing : postThings) {
 
 								if(!postThing.getKind().equals(RedditThing.Kind.POST)) {
 									continue;
@@ -796,99 +818,110 @@ public class PostListingFragment extends RRFragment
 										&& blockedSubreddits.contains(
 												new SubredditCanonicalId(post.subreddit));
 
+								// Skip posts which have been clicked on, if user preference
+								// "hideReadPosts" is true
+								final boolean isPostHiddenAsRead = hideReadPosts
+										&& (post.clicked || changeDataManager.isRead(post));
+
 								if(!isPostBlocked
 										&& (!post.over_18 || isNsfwAllowed)
-										&& mPostIds.add(post.getIdAlone())) {
-
-									final boolean downloadThisThumbnail = downloadThumbnails
-											&& (!post.over_18 || showNsfwThumbnails)
-											&& (!post.spoiler || showSpoilerThumbnails);
-
-									final boolean downloadThisPreview = inlinePreviews
-											&& (!post.over_18 || showNsfwPreviews)
-											&& (!post.spoiler || showSpoilerPreviews);
-
-									final int positionInList = mPostCount;
-
-									final RedditParsedPost parsedPost = new RedditParsedPost(
-											activity,
-											post,
-											false);
-
-									final RedditPreparedPost preparedPost = new RedditPreparedPost(
-											activity,
-											cm,
-											positionInList,
-											parsedPost,
-											timestamp,
-											showSubredditName,
-											downloadThisThumbnail,
-											allowHighResThumbnails,
-											downloadThisPreview);
-
-									// Skip adding this post (go to next iteration) if it
-									// has been clicked on AND user preference
-									// "hideReadPosts" is true
-									if(hideReadPosts && preparedPost.isRead()) {
-										mPostsNotShown = true;
-										continue;
-									}
+										&& mPostIds.add(post.getIdAlone())
+										&& !isPostHiddenAsRead) {
 
-									if(precacheComments) {
-										precacheComments(activity, preparedPost, positionInList);
-									}
+									shownPostThings.add(postThing);
 
-									LinkHandler.getImageInfo(
-											activity,
-											parsedPost.getUrl(),
-											new Priority(
-													Constants.Priority.IMAGE_PRECACHE,
-													positionInList),
-											new GetImageInfoListener() {
-
-												@Override
-												public void onFailure(
-														final @CacheRequest.RequestFailureType
-																int type,
-														final Throwable t,
-														final Integer status,
-														final String readableMessage,
-														@NonNull final
-																Optional<FailedRequestBody> body) {
-												}
+								} else {
+									mPostsNotShown = true;
+								}
+							}
 
-												@Override
-												public void onNotAnImage() {
-												}
+							// Each RedditPreparedPost then finds its entry already up to date
+							changeDataManager.updateAll(timestamp, shownPostThings);
 
-												@Override
-												public void onSuccess(final ImageInfo info) {
+							for(final RedditThing postThing : shownPostThings) {
 
-													if(!precacheImages) {
-														return;
-													}
+								final RedditPost post = postThing.asPost();
 
-													precacheImage(
-															activity,
-															info,
-															positionInList,
-															gifViewMode,
-															imageViewMode,
-															videoViewMode);
-												}
-											});
+								final boolean downloadThisThumbnail = downloadThumbnails
+										&& (!post.over_18 || showNsfwThumbnails)
+										&& (!post.spoiler || showSpoilerThumbnails);
 
-									downloadedPosts.add(new RedditPostListItem(
-											preparedPost,
-											PostListingFragment.this,
-											activity,
-											leftHandedMode));
+								final boolean downloadThisPreview = inlinePreviews
+										&& (!post.over_18 || showNsfwPreviews)
+										&& (!post.spoiler || showSpoilerPreviews);
 
-									mPostCount++;
-									mPostRefreshCount.decrementAndGet();
-								} else {
-									mPostsNotShown = true;
+								final int positionInList = mPostCount;
+
+								final RedditParsedPost parsedPost = new RedditParsedPost(
+										activity,
+										post,
+										false);
+
+								final RedditPreparedPost preparedPost = new RedditPreparedPost(
+										activity,
+										cm,
+										positionInList,
+										parsedPost,
+										timestamp,
+										showSubredditName,
+										downloadThisThumbnail,
+										allowHighResThumbnails,
+										downloadThisPreview);
+
+								preparedPost.setRequestScheduler(mRequestScheduler);
+
+								if(precacheComments) {
+									precacheComments(activity, preparedPost, positionInList);
 								}
+
+								LinkHandler.getImageInfo(
+										activity,
+										parsedPost.getUrl(),
+										new Priority(
+												Constants.Priority.IMAGE_PRECACHE,
+												positionInList),
+										new GetImageInfoListener() {
+
+											@Override
+											public void onFailure(
+													final @CacheRequest.RequestFailureType
+															int type,
+													final Throwable t,
+													final Integer status,
+													final String readableMessage,
+													@NonNull final
+															Optional<FailedRequestBody> body) {
+											}
+
+											@Override
+											public void onNotAnImage() {
+											}
+
+											@Override
+											public void onSuccess(final ImageInfo info) {
+
+												if(!precacheImages) {
+													return;
+												}
+
+												precacheImage(
+														activity,
+														info,
+														positionInList,
+														gifViewMode,
+														imageViewMode,
+														videoViewMode);
+											}
+										});
+
+								downloadedPosts.add(new RedditPostListItem(
+										preparedPost,
+										PostListingFragment.this,
+										activity,
+										leftHandedMode));
+
+								mPostCount++;
+								mPostRefreshCount.decrementAndGet();
 							}
 
 							AndroidCommon.runOnUiThread(() -> {
@@ -941,7 +974,7 @@ public class PostListingFragment extends RRFragment
 									t,
 									null,
 									"Parse failure",
-									Optional.of(new FailedRequestBody(value)));
+									Optional.empty());
 						}
 					}
 
@@ -985,7 +1018,7 @@ public class PostListingFragment extends RRFragment
 									error));
 						});
 					}
-				}));
+				}, activity));
 	}
 
 	private void precacheComments(
@@ -1135,7 +1168,7 @@ public class PostListingFragment extends RRFragment
 			return;
 		}
 
-		CacheManager.getInstance(activity).makeRequest(new CacheRequest(
+		final CacheRequest request = new CacheRequest(
 				uri,
 				RedditAccountManager.getAnon(),
 				null,
@@ -1177,6 +1210,9 @@ public class PostListingFragment extends RRFragment
 
 						// Successfully precached
 					}
-				}));
+				});
+
+		CacheManager.getInstance(activity).makeRequest(request);
+		mRequestScheduler.add(positionInList, request);
 	}
 }
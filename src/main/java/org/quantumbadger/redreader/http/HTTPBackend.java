@@ -19,6 +19,7 @@ package org.quantumbadger.redreader.http;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import org.quantumbadger.redreader.cache.CacheRequest;
 import org.quantumbadger.redreader.common.Optional;
 import org.quantumbadger.redreader.http.body.HTTPRequestBody;
@@ -84,6 +85,13 @@ public abstract class HTTPBackend {
 				@NonNull Optional<FailedRequestBody> body);
 
 		void onSuccess(String mimetype, Long bodyBytes, InputStream body);
+
+		// Called before onSuccess() or onError() for any request which received a response
+		default void onResponseHeaders(@NonNull final ResponseHeaders headers) {}
+	}
+
+	public interface ResponseHeaders {
+		@Nullable String get(@NonNull String name);
 	}
 
 	public abstract Request prepareRequest(Context context, RequestDetails details);
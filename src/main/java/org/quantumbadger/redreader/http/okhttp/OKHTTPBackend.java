@@ -271,6 +271,8 @@ public class OKHTTPBackend extends HTTPBackend {
 					final int status = response.code();
 					final ResponseBody body = response.body();
 
+					listener.onResponseHeaders(response::header);
+
 					if(status == 200 || status == 202) {
 
 						@SuppressWarnings("PMD.CloseResource") final InputStream bodyStream;
@@ -37,10 +37,19 @@ public class RedditChangeDataIO {
 
 	private static final String TAG = "RedditChangeDataIO";
 
-	private static final int DB_VERSION = 1;
-	private static final String DB_FILENAME = "rr_change_data.dat";
+	// Each change is appended to the log as a record, and the log is periodically
+	// compacted into one record per entry
+	private static final int DB_VERSION = 2;
+	private static final String DB_FILENAME = "rr_change_data.log";
 	private static final String DB_WRITETMP_FILENAME = "rr_change_data_tmp.dat";
 
+	private static final int LEGACY_DB_VERSION = 1;
+	private static final String LEGACY_DB_FILENAME = "rr_change_data.dat";
+
+	// The log is compacted once it holds this many more records than it did after
+	// the last compaction, in addition to twice that number again
+	private static final int MIN_RECORDS_BEFORE_COMPACTION = 1000;
+
 	@SuppressLint("StaticFieldLeak") private static RedditChangeDataIO INSTANCE;
 	private static boolean STATIC_UPDATE_PENDING = false;
 
@@ -58,6 +67,21 @@ public class RedditChangeDataIO {
 		return INSTANCE;
 	}
 
+	// Starts the initial read if necessary, and waits for it to finish. Must not be
+	// called on the UI thread.
+	public static void awaitInitialReadStatic() {
+
+		final RedditChangeDataIO instance;
+
+		synchronized(RedditChangeDataIO.class) {
+			instance = INSTANCE;
+		}
+
+		if(instance != null) {
+			instance.awaitInitialRead();
+		}
+	}
+
 	public static synchronized void notifyUpdateStatic() {
 
 		if(INSTANCE != null) {
@@ -74,57 +98,45 @@ public class RedditChangeDataIO {
 	private boolean mIsInitialReadComplete = false;
 	private boolean mUpdatePending = false;
 
+	// Only accessed by the initial read, and then by the write thread
+	private int mRecordsInLog = 0;
+	private int mRecordsAfterLastCompaction = 0;
+	private boolean mCompactionRequired = false;
+
 	private final class WriteRunnable implements Runnable {
 		@Override
 		public void run() {
 
-			final long startTime = System.currentTimeMillis();
-
-			try {
-
-				final File dataFileTmpLocation = getDataFileWriteTmpLocation();
-
-				Log.i(
-						TAG,
-						String.format(
-								Locale.US,
-								"Writing tmp data file at '%s'",
-								dataFileTmpLocation.getAbsolutePath()));
-
-				final ExtendedDataOutputStream dos
-						= new ExtendedDataOutputStream(
-						new BufferedOutputStream(
-								new FileOutputStream(dataFileTmpLocation),
-								64 * 1024));
+			final boolean compact = mCompactionRequired
+					|| !getDataFileLocation().exists()
+					|| mRecordsInLog > 2 * mRecordsAfterLastCompaction
+							+ MIN_RECORDS_BEFORE_COMPACTION;
 
-				dos.writeInt(DB_VERSION);
+			// If a write fails part way through, the log may end with a partial
+			// record, which must not be appended to
+			mCompactionRequired = true;
 
-				RedditChangeDataManager.writeAllUsers(dos);
-
-				dos.flush();
-				dos.close();
-
-				Log.i(TAG, "Write successful. Atomically replacing data file...");
+			final long startTime = System.currentTimeMillis();
 
-				final File dataFileLocation = getDataFileLocation();
+			try {
 
-				if(!dataFileTmpLocation.renameTo(dataFileLocation)) {
-					Log.e(TAG, "Atomic replace failed!");
-					return;
+				if(compact) {
+					compact();
+				} else {
+					append();
 				}
 
-				Log.i(TAG, "Write complete.");
+				mCompactionRequired = false;
 
-				final long bytes = dataFileLocation.length();
 				final long duration = System.currentTimeMillis() - startTime;
 
 				Log.i(
 						TAG,
 						String.format(
 								Locale.US,
-								"%d bytes written in %d ms",
-								bytes,
-								duration));
+								"Write complete in %d ms, %d records in log",
+								duration,
+								mRecordsInLog));
 
 			} catch(final IOException e) {
 				Log.e(TAG, "Write failed!", e);
@@ -159,11 +171,98 @@ public class RedditChangeDataIO {
 		return new File(mContext.getFilesDir(), DB_WRITETMP_FILENAME);
 	}
 
-	public void runInitialReadInThisThread() {
+	private File getLegacyDataFileLocation() {
+		return new File(mContext.getFilesDir(), LEGACY_DB_FILENAME);
+	}
+
+	private void append() throws IOException {
+
+		final File dataFileLocation = getDataFileLocation();
+
+		try(ExtendedDataOutputStream dos = new ExtendedDataOutputStream(
+				new BufferedOutputStream(
+						new FileOutputStream(dataFileLocation, true),
+						64 * 1024))) {
+
+			mRecordsInLog += RedditChangeDataManager.writeChangesForAllUsers(dos);
+		}
+	}
+
+	private void compact() throws IOException {
+
+		final File dataFileTmpLocation = getDataFileWriteTmpLocation();
+
+		Log.i(
+				TAG,
+				String.format(
+						Locale.US,
+						"Compacting log into tmp data file at '%s'",
+						dataFileTmpLocation.getAbsolutePath()));
+
+		final int recordCount;
+
+		try(ExtendedDataOutputStream dos = new ExtendedDataOutputStream(
+				new BufferedOutputStream(
+						new FileOutputStream(dataFileTmpLocation),
+						64 * 1024))) {
+
+			dos.writeInt(DB_VERSION);
+			recordCount = RedditChangeDataManager.writeAllUsers(dos);
+		}
+
+		Log.i(TAG, "Write successful. Atomically replacing data file...");
+
+		if(!dataFileTmpLocation.renameTo(getDataFileLocation())) {
+			throw new IOException("Atomic replace failed");
+		}
+
+		mRecordsInLog = recordCount;
+		mRecordsAfterLastCompaction = recordCount;
+
+		final File legacyDataFileLocation = getLegacyDataFileLocation();
+
+		if(legacyDataFileLocation.exists() && !legacyDataFileLocation.delete()) {
+			Log.e(TAG, "Failed to delete legacy data file");
+		}
+	}
+
+	// Reads the log on a background thread, and then prunes old entries. Only the
+	// first call has any effect.
+	public void startInitialRead() {
 
 		if(mIsInitialReadStarted.getAndSet(true)) {
-			throw new RuntimeException("Attempted to run initial read twice!");
+			return;
+		}
+
+		new Thread("Change data read") {
+			@Override
+			public void run() {
+
+				android.os.Process.setThreadPriority(
+						android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+				runInitialRead();
+				RedditChangeDataManager.pruneAllUsersDefaultMaxAge();
+			}
+		}.start();
+	}
+
+	private void awaitInitialRead() {
+
+		startInitialRead();
+
+		synchronized(mLock) {
+			while(!mIsInitialReadComplete) {
+				try {
+					mLock.wait();
+				} catch(final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
 		}
+	}
+
+	private void runInitialRead() {
 
 		Log.i(TAG, "Running initial read...");
 
@@ -177,49 +276,85 @@ public class RedditChangeDataIO {
 							"Data file at '%s'",
 							dataFileLocation.getAbsolutePath()));
 
-			if(!dataFileLocation.exists()) {
+			if(dataFileLocation.exists()) {
+				readLog(dataFileLocation);
+
+			} else if(getLegacyDataFileLocation().exists()) {
+				Log.i(TAG, "Migrating legacy data file.");
+				mCompactionRequired = true;
+				readLegacy(getLegacyDataFileLocation());
+
+			} else {
 				Log.i(TAG, "Data file does not exist. Aborting read.");
-				return;
 			}
 
-			final ExtendedDataInputStream dis
-					= new ExtendedDataInputStream(
-					new BufferedInputStream(
-							new FileInputStream(dataFileLocation),
-							64 * 1024));
+		} catch(final Exception e) {
+			Log.e(TAG, "Initial read failed", e);
+
+		} finally {
+			notifyInitialReadComplete();
+		}
+	}
+
+	private void readLog(final File dataFileLocation) throws IOException {
+
+		try(ExtendedDataInputStream dis = new ExtendedDataInputStream(
+				new BufferedInputStream(
+						new FileInputStream(dataFileLocation),
+						64 * 1024))) {
+
+			final int version = dis.readInt();
+
+			if(DB_VERSION != version) {
+				Log.i(
+						TAG,
+						String.format(
+								Locale.US,
+								"Wanted version %d, got %d. Aborting read.",
+								DB_VERSION,
+								version));
+
+				mCompactionRequired = true;
+				return;
+			}
 
 			try {
+				mRecordsInLog = RedditChangeDataManager.readLog(dis, mContext);
+				mRecordsAfterLastCompaction = mRecordsInLog;
 
-				final int version = dis.readInt();
-
-				if(DB_VERSION != version) {
-					Log.i(
-							TAG,
-							String.format(
-									Locale.US,
-									"Wanted version %d, got %d. Aborting read.",
-									DB_VERSION,
-									version));
-					return;
-				}
+			} catch(final IOException e) {
+				// Keep whatever was read, and replace the damaged log
+				mCompactionRequired = true;
+				throw e;
+			}
 
-				RedditChangeDataManager.readAllUsers(dis, mContext);
+			Log.i(TAG, "Initial read successful.");
+		}
+	}
 
-				Log.i(TAG, "Initial read successful.");
+	private void readLegacy(final File dataFileLocation) throws IOException {
 
-			} finally {
-				try {
-					dis.close();
-				} catch(final IOException e) {
-					Log.e(TAG, "IO error while trying to close input file", e);
-				}
+		try(ExtendedDataInputStream dis = new ExtendedDataInputStream(
+				new BufferedInputStream(
+						new FileInputStream(dataFileLocation),
+						64 * 1024))) {
+
+			final int version = dis.readInt();
+
+			if(LEGACY_DB_VERSION != version) {
+				Log.i(
+						TAG,
+						String.format(
+								Locale.US,
+								"Wanted version %d, got %d. Aborting read.",
+								LEGACY_DB_VERSION,
+								version));
+				return;
 			}
 
-		} catch(final Exception e) {
-			Log.e(TAG, "Initial read failed", e);
+			RedditChangeDataManager.readAllUsersLegacy(dis, mContext);
 
-		} finally {
-			notifyInitialReadComplete();
+			Log.i(TAG, "Initial read successful.");
 		}
 	}
 
@@ -227,8 +362,9 @@ public class RedditChangeDataIO {
 
 		synchronized(mLock) {
 			mIsInitialReadComplete = true;
+			mLock.notifyAll();
 
-			if(mUpdatePending) {
+			if(mUpdatePending || mCompactionRequired) {
 				triggerUpdate();
 				mUpdatePending = false;
 			}
@@ -0,0 +1,487 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.jsonwrap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Fills the public fields of a class from a JsonObject, or directly from a parser
+ * without building a JsonObject first. The reflective lookups (constructor, field
+ * list, field types, accessibility) happen once per class, and the resulting
+ * table is reused for every object bound afterwards.
+ */
+final class JsonClassBinder<E> {
+
+	private enum FieldType {
+		LONG_PRIMITIVE,
+		LONG,
+		INT_PRIMITIVE,
+		INT,
+		DOUBLE_PRIMITIVE,
+		DOUBLE,
+		FLOAT_PRIMITIVE,
+		FLOAT,
+		BOOLEAN_PRIMITIVE,
+		BOOLEAN,
+		STRING,
+		JSON_ARRAY,
+		JSON_OBJECT,
+		JSON_VALUE,
+		DESERIALIZABLE,
+		UNSUPPORTED
+	}
+
+	private static final class FieldBinding {
+
+		@NonNull final Field field;
+		@NonNull final String name;
+		@Nullable final String alternativeName;
+		@NonNull final FieldType type;
+
+		FieldBinding(@NonNull final Field field) {
+
+			this.field = field;
+			name = field.getName();
+
+			if(name.startsWith("_json_")) {
+				alternativeName = name.substring("_json_".length());
+			} else {
+				alternativeName = null;
+			}
+
+			type = getFieldType(field.getType());
+
+			field.setAccessible(true);
+		}
+	}
+
+	private static final HashMap<Class<?>, JsonClassBinder<?>> sBinders = new HashMap<>();
+
+	@NonNull private final Class<E> mClass;
+	@Nullable private final Constructor<E> mConstructor;
+	@NonNull private final FieldBinding[] mFields;
+	@NonNull private final HashMap<String, FieldBinding> mFieldsByName = new HashMap<>();
+
+	private JsonClassBinder(@NonNull final Class<E> clazz) {
+
+		mClass = clazz;
+
+		Constructor<E> constructor;
+
+		try {
+			constructor = clazz.getConstructor();
+		} catch(final NoSuchMethodException e) {
+			// Only needed by newInstance(), which will fail in the usual way
+			constructor = null;
+		}
+
+		mConstructor = constructor;
+
+		final ArrayList<FieldBinding> fields = new ArrayList<>();
+
+		for(final Field field : clazz.getFields()) {
+			if((field.getModifiers() & Modifier.TRANSIENT) == 0) {
+				fields.add(new FieldBinding(field));
+			}
+		}
+
+		mFields = fields.toArray(new FieldBinding[0]);
+
+		// As in populate(JsonObject), a field's own name takes priority
+		for(final FieldBinding binding : mFields) {
+			if(binding.alternativeName != null) {
+				mFieldsByName.put(binding.alternativeName, binding);
+			}
+		}
+
+		for(final FieldBinding binding : mFields) {
+			mFieldsByName.put(binding.name, binding);
+		}
+	}
+
+	@NonNull
+	static <E> JsonClassBinder<E> forClass(@NonNull final Class<E> clazz) {
+
+		synchronized(sBinders) {
+
+			//noinspection unchecked
+			JsonClassBinder<E> result = (JsonClassBinder<E>)sBinders.get(clazz);
+
+			if(result == null) {
+				result = new JsonClassBinder<>(clazz);
+				sBinders.put(clazz, result);
+			}
+
+			return result;
+		}
+	}
+
+	@NonNull
+	private static FieldType getFieldType(@NonNull final Class<?> fieldType) {
+
+		if(fieldType == Long.TYPE) {
+			return FieldType.LONG_PRIMITIVE;
+
+		} else if(fieldType == Long.class) {
+			return FieldType.LONG;
+
+		} else if(fieldType == Integer.TYPE) {
+			return FieldType.INT_PRIMITIVE;
+
+		} else if(fieldType == Integer.class) {
+			return FieldType.INT;
+
+		} else if(fieldType == Double.TYPE) {
+			return FieldType.DOUBLE_PRIMITIVE;
+
+		} else if(fieldType == Double.class) {
+			return FieldType.DOUBLE;
+
+		} else if(fieldType == Float.TYPE) {
+			return FieldType.FLOAT_PRIMITIVE;
+
+		} else if(fieldType == Float.class) {
+			return FieldType.FLOAT;
+
+		} else if(fieldType == Boolean.TYPE) {
+			return FieldType.BOOLEAN_PRIMITIVE;
+
+		} else if(fieldType == Boolean.class) {
+			return FieldType.BOOLEAN;
+
+		} else if(fieldType == String.class) {
+			return FieldType.STRING;
+
+		} else if(fieldType == JsonArray.class) {
+			return FieldType.JSON_ARRAY;
+
+		} else if(fieldType == JsonObject.class) {
+			return FieldType.JSON_OBJECT;
+
+		} else if(fieldType == JsonValue.class) {
+			return FieldType.JSON_VALUE;
+
+		} else if(JsonObject.JsonDeserializable.class.isAssignableFrom(fieldType)) {
+			return FieldType.DESERIALIZABLE;
+
+		} else {
+			return FieldType.UNSUPPORTED;
+		}
+	}
+
+	@NonNull
+	E newInstance() throws
+			InstantiationException,
+			IllegalAccessException,
+			NoSuchMethodException,
+			InvocationTargetException {
+
+		if(mConstructor == null) {
+			throw new NoSuchMethodException(
+					"No public no-arg constructor for " + mClass.getCanonicalName());
+		}
+
+		return mConstructor.newInstance();
+	}
+
+	void populate(@NonNull final JsonObject json, @NonNull final Object o) throws
+			InstantiationException,
+			NoSuchMethodException,
+			InvocationTargetException,
+			IllegalAccessException {
+
+		for(final FieldBinding binding : mFields) {
+
+			JsonValue val = json.get(binding.name);
+
+			if(val == null && binding.alternativeName != null) {
+				val = json.get(binding.alternativeName);
+			}
+
+			if(val != null) {
+				set(binding, o, val);
+			}
+		}
+	}
+
+	// Expects the parser to be on the START_OBJECT token, and leaves it on the token
+	// after the matching END_OBJECT. Fields which aren't bound are skipped without
+	// being parsed, unless the handler consumes them first.
+	void populate(
+			@NonNull final JsonParser parser,
+			@NonNull final Object o,
+			@Nullable final JsonObject.JsonStreamFieldHandler handler) throws
+					IOException,
+					InstantiationException,
+					NoSuchMethodException,
+					InvocationTargetException,
+					IllegalAccessException {
+
+		if(parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException(
+					parser,
+					"Expecting object start, got " + parser.currentToken(),
+					parser.getCurrentLocation());
+		}
+
+		parser.nextToken();
+
+		JsonToken jt;
+
+		while((jt = parser.currentToken()) != JsonToken.END_OBJECT) {
+
+			if(jt != JsonToken.FIELD_NAME) {
+				throw new JsonParseException(parser, "Expecting field name, got " + jt.name(),
+						parser.getCurrentLocation());
+			}
+
+			final String fieldName = parser.getCurrentName();
+
+			parser.nextToken();
+
+			if(handler != null && handler.onField(fieldName, parser)) {
+				continue;
+			}
+
+			final FieldBinding binding = mFieldsByName.get(fieldName);
+
+			if(binding == null) {
+				parser.skipChildren();
+				parser.nextToken();
+
+			} else if(!setFromToken(binding, o, parser)) {
+				set(binding, o, JsonValue.parse(parser));
+			}
+		}
+
+		parser.nextToken();
+	}
+
+	// Handles the common cases, where the JSON token already has the field's type,
+	// without creating a JsonValue. Returns false if the value still needs reading.
+	private static boolean setFromToken(
+			@NonNull final FieldBinding binding,
+			@NonNull final Object o,
+			@NonNull final JsonParser parser) throws
+					IOException,
+					InstantiationException,
+					NoSuchMethodException,
+					InvocationTargetException,
+					IllegalAccessException {
+
+		final Field field = binding.field;
+		final JsonToken token = parser.currentToken();
+
+		switch(binding.type) {
+
+			case LONG_PRIMITIVE:
+				if(token != JsonToken.VALUE_NUMBER_INT) {
+					return false;
+				}
+				field.setLong(o, parser.getValueAsLong());
+				break;
+
+			case INT_PRIMITIVE:
+				if(token != JsonToken.VALUE_NUMBER_INT) {
+					return false;
+				}
+				field.setInt(o, (int)parser.getValueAsLong());
+				break;
+
+			case BOOLEAN_PRIMITIVE:
+			case BOOLEAN:
+				if(token == JsonToken.VALUE_TRUE) {
+					field.set(o, Boolean.TRUE);
+				} else if(token == JsonToken.VALUE_FALSE) {
+					field.set(o, Boolean.FALSE);
+				} else {
+					return false;
+				}
+				break;
+
+			case STRING:
+				if(token == JsonToken.VALUE_STRING) {
+					field.set(o, parser.getText());
+				} else if(token == JsonToken.VALUE_NULL) {
+					field.set(o, null);
+				} else {
+					return false;
+				}
+				break;
+
+			case DESERIALIZABLE:
+				if(token != JsonToken.START_OBJECT) {
+					return false;
+				}
+				//noinspection unchecked
+				field.set(o, parse(
+						parser,
+						(Class<? extends JsonObject.JsonDeserializable>)field.getType(),
+						null));
+				return true;
+
+			default:
+				return false;
+		}
+
+		parser.nextToken();
+		return true;
+	}
+
+	private static void set(
+			@NonNull final FieldBinding binding,
+			@NonNull final Object o,
+			@NonNull final JsonValue val) throws
+					InstantiationException,
+					NoSuchMethodException,
+					InvocationTargetException,
+					IllegalAccessException {
+
+		final Field field = binding.field;
+
+		switch(binding.type) {
+
+			case LONG_PRIMITIVE:
+				field.setLong(o, requireNonNull(binding, val.asLong()));
+				break;
+
+			case LONG:
+				field.set(o, val.asLong());
+				break;
+
+			case INT_PRIMITIVE:
+				field.setInt(o, requireNonNull(binding, val.asLong()).intValue());
+				break;
+
+			case INT: {
+				final Long value = val.asLong();
+				field.set(o, value == null ? null : value.intValue());
+				break;
+			}
+
+			case DOUBLE_PRIMITIVE:
+				field.setDouble(o, requireNonNull(binding, val.asDouble()));
+				break;
+
+			case DOUBLE:
+				field.set(o, val.asDouble());
+				break;
+
+			case FLOAT_PRIMITIVE:
+				field.setFloat(o, requireNonNull(binding, val.asDouble()).floatValue());
+				break;
+
+			case FLOAT: {
+				final Double value = val.asDouble();
+				field.set(o, value == null ? null : value.floatValue());
+				break;
+			}
+
+			case BOOLEAN_PRIMITIVE:
+				field.setBoolean(o, requireNonNull(binding, val.asBoolean()));
+				break;
+
+			case BOOLEAN:
+				field.set(o, val.asBoolean());
+				break;
+
+			case STRING:
+				field.set(o, val.asString());
+				break;
+
+			case JSON_ARRAY:
+				field.set(o, val.asArray());
+				break;
+
+			case JSON_OBJECT:
+				field.set(o, val.asObject());
+				break;
+
+			case JSON_VALUE:
+				field.set(o, val);
+				break;
+
+			case DESERIALIZABLE:
+				//noinspection unchecked
+				field.set(o, val.asObject(
+						(Class<? extends JsonObject.JsonDeserializable>)field.getType()));
+				break;
+
+			default:
+				throw new RuntimeException("Cannot handle field type "
+						+ field.getType().getCanonicalName());
+		}
+	}
+
+	// Reads the current value into a new instance of the class, or returns null (and
+	// skips the value) if it is not an object, to match JsonValue.asObject(Class).
+	@Nullable
+	static <E> E parse(
+			@NonNull final JsonParser parser,
+			@NonNull final Class<E> clazz,
+			@Nullable final JsonObject.JsonStreamFieldHandler handler) throws
+					IOException,
+					InstantiationException,
+					NoSuchMethodException,
+					InvocationTargetException,
+					IllegalAccessException {
+
+		if(parser.currentToken() == null) {
+			parser.nextToken();
+		}
+
+		if(parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			parser.nextToken();
+			return null;
+		}
+
+		final JsonClassBinder<E> binder = forClass(clazz);
+		final E result = binder.newInstance();
+		binder.populate(parser, result, handler);
+		return result;
+	}
+
+	// Matches the behaviour of Field.set() when given null for a primitive field
+	@NonNull
+	private static <T> T requireNonNull(
+			@NonNull final FieldBinding binding,
+			@Nullable final T value) {
+
+		if(value == null) {
+			throw new IllegalArgumentException("Null value for primitive field "
+					+ binding.field.getDeclaringClass().getCanonicalName()
+					+ "."
+					+ binding.name);
+		}
+
+		return value;
+	}
+}
@@ -25,9 +25,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import org.quantumbadger.redreader.common.Optional;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -39,6 +37,19 @@ public final class JsonObject extends JsonValue
 
 	public interface JsonDeserializable {}
 
+	public interface JsonStreamFieldHandler {
+
+		// Called with the parser on the field's value. To take over the field, the
+		// handler must consume the value (leaving the parser on the following token)
+		// and return true.
+		boolean onField(@NonNull String name, @NonNull JsonParser parser) throws
+				IOException,
+				InstantiationException,
+				IllegalAccessException,
+				NoSuchMethodException,
+				InvocationTargetException;
+	}
+
 	private final HashMap<String, JsonValue> properties = new HashMap<>();
 
 	protected JsonObject(final JsonParser parser) throws IOException {
@@ -90,11 +101,45 @@ public final class JsonObject extends JsonValue
 			NoSuchMethodException,
 			InvocationTargetException {
 
-		final E obj = clazz.getConstructor().newInstance();
-		populateObject(obj);
+		final JsonClassBinder<E> binder = JsonClassBinder.forClass(clazz);
+		final E obj = binder.newInstance();
+		binder.populate(this, obj);
 		return obj;
 	}
 
+	/**
+	 * Reads the current value of the parser straight into a new instance of the
+	 * class, without building a JsonObject. Fields of the class which are
+	 * themselves JsonValues are still parsed into a tree, and unknown fields are
+	 * skipped. As with asObject(Class), returns null if the value is not an object.
+	 */
+	@Nullable
+	public static <E extends JsonDeserializable> E parseObject(
+			@NonNull final JsonParser parser,
+			@NonNull final Class<E> clazz,
+			@Nullable final JsonStreamFieldHandler handler) throws
+					IOException,
+					InstantiationException,
+					IllegalAccessException,
+					NoSuchMethodException,
+					InvocationTargetException {
+
+		return JsonClassBinder.parse(parser, clazz, handler);
+	}
+
+	@Nullable
+	public static <E extends JsonDeserializable> E parseObject(
+			@NonNull final JsonParser parser,
+			@NonNull final Class<E> clazz) throws
+					IOException,
+					InstantiationException,
+					IllegalAccessException,
+					NoSuchMethodException,
+					InvocationTargetException {
+
+		return parseObject(parser, clazz, null);
+	}
+
 	@Nullable
 	public JsonValue get(final String name) {
 		return properties.get(name);
@@ -225,73 +270,8 @@ public final class JsonObject extends JsonValue
 			NoSuchMethodException,
 			InvocationTargetException {
 
-		final Field[] objectFields = o.getClass().getFields();
-
 		try {
-
-			for(final Field objectField : objectFields) {
-
-				if((objectField.getModifiers() & Modifier.TRANSIENT) != 0) {
-					continue;
-				}
-
-				final JsonValue val;
-
-				if(properties.containsKey(objectField.getName())) {
-					val = properties.get(objectField.getName());
-
-				} else if(objectField.getName().startsWith("_json_")) {
-					val = properties.get(objectField.getName()
-							.substring("_json_".length()));
-				} else {
-					val = null;
-				}
-
-				if(val == null) {
-					continue;
-				}
-
-				objectField.setAccessible(true);
-
-				final Class<?> fieldType = objectField.getType();
-
-				if(fieldType == Long.class || fieldType == Long.TYPE) {
-					objectField.set(o, val.asLong());
-
-				} else if(fieldType == Double.class || fieldType == Double.TYPE) {
-					objectField.set(o, val.asDouble());
-
-				} else if(fieldType == Integer.class || fieldType == Integer.TYPE) {
-					objectField.set(o, val.asLong() == null ? null : val.asLong().intValue());
-
-				} else if(fieldType == Float.class || fieldType == Float.TYPE) {
-					objectField.set(o, val.asDouble() == null ? null : val.asDouble().floatValue());
-
-				} else if(fieldType == Boolean.class || fieldType == Boolean.TYPE) {
-					objectField.set(o, val.asBoolean());
-
-				} else if(fieldType == String.class) {
-					objectField.set(o, val.asString());
-
-				} else if(fieldType == JsonArray.class) {
-					objectField.set(o, val.asArray());
-
-				} else if(fieldType == JsonObject.class) {
-					objectField.set(o, val.asObject());
-
-				} else if(fieldType == JsonValue.class) {
-					objectField.set(o, val);
-
-				} else if(JsonDeserializable.class.isAssignableFrom(fieldType)) {
-					//noinspection unchecked
-					objectField.set(o, val.asObject(
-							(Class<? extends JsonDeserializable>)fieldType));
-
-				} else {
-					throw new RuntimeException("Cannot handle field type "
-							+ fieldType.getCanonicalName());
-				}
-			}
+			JsonClassBinder.forClass(o.getClass()).populate(this, o);
 
 		} catch(final IllegalAccessException e) {
 			throw new RuntimeException(e);
@@ -34,6 +34,9 @@ public class RegularCachePruner extends BroadcastReceiver {
 		new Thread() {
 			@Override
 			public void run() {
+
+				android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
 				RedditChangeDataManager.pruneAllUsersDefaultMaxAge();
 				CacheManager.getInstance(context).pruneCache();
 			}
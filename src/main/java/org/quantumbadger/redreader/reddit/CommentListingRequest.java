@@ -21,13 +21,17 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
+import androidx.core.text.PrecomputedTextCompat;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.quantumbadger.redreader.account.RedditAccount;
 import org.quantumbadger.redreader.account.RedditAccountManager;
 import org.quantumbadger.redreader.activities.BaseActivity;
 import org.quantumbadger.redreader.activities.SessionChangeListener;
 import org.quantumbadger.redreader.cache.CacheManager;
 import org.quantumbadger.redreader.cache.CacheRequest;
-import org.quantumbadger.redreader.cache.CacheRequestJSONParser;
+import org.quantumbadger.redreader.cache.CacheRequestJSONStreamParser;
 import org.quantumbadger.redreader.cache.downloadstrategy.DownloadStrategy;
 import org.quantumbadger.redreader.common.AndroidCommon;
 import org.quantumbadger.redreader.common.Constants;
@@ -39,7 +43,6 @@ import org.quantumbadger.redreader.common.RRError;
 import org.quantumbadger.redreader.fragments.CommentListingFragment;
 import org.quantumbadger.redreader.http.FailedRequestBody;
 import org.quantumbadger.redreader.jsonwrap.JsonArray;
-import org.quantumbadger.redreader.jsonwrap.JsonObject;
 import org.quantumbadger.redreader.jsonwrap.JsonValue;
 import org.quantumbadger.redreader.reddit.prepared.RedditChangeDataManager;
 import org.quantumbadger.redreader.reddit.prepared.RedditParsedComment;
@@ -51,6 +54,7 @@ import org.quantumbadger.redreader.reddit.things.RedditPost;
 import org.quantumbadger.redreader.reddit.things.RedditThing;
 import org.quantumbadger.redreader.reddit.url.RedditURLParser;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -72,6 +76,13 @@ public class CommentListingRequest {
 
 	private final Listener mListener;
 
+	@NonNull private final PrecomputedTextCompat.Params mBodyTextParams;
+
+	// Comments whose bodies have been queued for background preparation, so that they can
+	// be dropped from the queue if the listing goes away before they're reached
+	@NonNull private final ArrayList<RedditParsedComment> mQueuedBodies = new ArrayList<>();
+	private boolean mCancelled = false;
+
 	public CommentListingRequest(
 			final Context context,
 			final CommentListingFragment fragment,
@@ -87,6 +98,7 @@ public class CommentListingRequest {
 		mContext = context;
 		mFragment = fragment;
 		mActivity = activity;
+		mBodyTextParams = fragment.getBodyTextMetricsParams();
 		mCommentListingURL = commentListingURL;
 		mParsePostSelfText = parsePostSelfText;
 		mUrl = url;
@@ -100,6 +112,21 @@ public class CommentListingRequest {
 		mCacheManager.makeRequest(createCommentListingCacheRequest());
 	}
 
+	// Stops preparing comment bodies in the background for this listing
+	public void cancel() {
+
+		synchronized(mQueuedBodies) {
+
+			mCancelled = true;
+
+			for(final RedditParsedComment comment : mQueuedBodies) {
+				comment.cancelBodyPreparation();
+			}
+
+			mQueuedBodies.clear();
+		}
+	}
+
 	@UiThread
 	public interface Listener {
 
@@ -113,7 +140,10 @@ public class CommentListingRequest {
 
 		void onCommentListingRequestPostDownloaded(RedditPreparedPost post);
 
-		void onCommentListingRequestAllItemsDownloaded(ArrayList<RedditCommentListItem> items);
+		// Called repeatedly as the listing is parsed, with items in depth-first order
+		void onCommentListingRequestItemsDownloaded(ArrayList<RedditCommentListItem> items);
+
+		void onCommentListingRequestAllItemsDownloaded();
 	}
 
 	@NonNull
@@ -130,15 +160,13 @@ public class CommentListingRequest {
 				Constants.FileType.COMMENT_LIST,
 				CacheRequest.DOWNLOAD_QUEUE_REDDIT_API,
 				mContext,
-				new CacheRequestJSONParser(mContext, new CacheRequestJSONParser.Listener() {
+				new CacheRequestJSONStreamParser(new CacheRequestJSONStreamParser.Listener() {
 					@Override
-					public void onJsonParsed(
-							@NonNull final JsonValue value,
+					public void onJsonStream(
+							@NonNull final JsonParser parser,
 							final long timestamp,
 							@NonNull final UUID session,
-							final boolean fromCache) {
-
-						String parentPostAuthor = null;
+							final boolean fromCache) throws Exception {
 
 						if(mActivity instanceof SessionChangeListener) {
 							((SessionChangeListener)mActivity).onSessionChanged(
@@ -147,9 +175,6 @@ public class CommentListingRequest {
 									timestamp);
 						}
 
-						final Integer minimumCommentScore
-								= PrefsUtility.pref_behaviour_comment_min();
-
 						if(fromCache) {
 							AndroidCommon.runOnUiThread(()
 									-> mListener.onCommentListingRequestCachedCopy(timestamp));
@@ -157,89 +182,10 @@ public class CommentListingRequest {
 
 						AndroidCommon.runOnUiThread(mListener::onCommentListingRequestParseStart);
 
-						try {
-							// Download main post
-							if(value.asArray() != null) {
-
-								// lol, reddit api
-								final JsonArray root = value.asArray();
-								final JsonObject thing = root.get(0).asObject();
-								final JsonObject listing = thing.getObject("data");
-								final JsonArray postContainer
-										= listing.getArray("children");
-								final RedditThing postThing =
-										postContainer.getObject(0, RedditThing.class);
-								final RedditPost post = postThing.asPost();
-
-								final RedditParsedPost parsedPost =
-										new RedditParsedPost(mActivity, post, mParsePostSelfText);
-
-								final RedditPreparedPost preparedPost = new RedditPreparedPost(
-										mContext,
-										mCacheManager,
-										0,
-										parsedPost,
-										timestamp,
-										true,
-										false,
-										false,
-										false);
-
-								AndroidCommon.runOnUiThread(()
-										-> mListener.onCommentListingRequestPostDownloaded(
-												preparedPost));
-
-								parentPostAuthor = parsedPost.getAuthor();
-							}
-
-							// Download comments
-
-							final JsonObject thing;
-
-							if(value.asArray() != null) {
-								thing = value.asArray().get(1).asObject();
-							} else {
-								thing = value.asObject();
-							}
-
-							final JsonObject listing = thing.getObject("data");
-							final JsonArray topLevelComments
-									= listing.getArray("children");
-
-							final ArrayList<RedditCommentListItem> items
-									= new ArrayList<>(200);
-
-							for(final JsonValue commentThingValue : topLevelComments) {
-								buildCommentTree(
-										commentThingValue,
-										null,
-										items,
-										minimumCommentScore,
-										parentPostAuthor);
-							}
-
-							final RedditChangeDataManager changeDataManager
-									= RedditChangeDataManager.getInstance(mUser);
-
-							for(final RedditCommentListItem item : items) {
-								if(item.isComment()) {
-									changeDataManager.update(
-											timestamp,
-											item.asComment().getParsedComment().getRawComment());
-								}
-							}
+						parseCommentListing(parser, timestamp);
 
-							AndroidCommon.runOnUiThread(()
-									-> mListener.onCommentListingRequestAllItemsDownloaded(items));
-
-						} catch(final Throwable t) {
-							onFailure(
-									CacheRequest.REQUEST_FAILURE_PARSE,
-									t,
-									null,
-									"Parse failure",
-									Optional.of(new FailedRequestBody(value)));
-						}
+						AndroidCommon.runOnUiThread(
+								mListener::onCommentListingRequestAllItemsDownloaded);
 					}
 
 					@Override
@@ -267,21 +213,247 @@ public class CommentListingRequest {
 						AndroidCommon.runOnUiThread(
 								mListener::onCommentListingRequestDownloadNecessary);
 					}
-				}));
+				}, mContext));
+	}
+
+	// The response is either a two element array containing the post and the
+	// comments, or just the comments. Each top-level comment is read as a unit
+	// (reddit places "replies" before the body), but nothing is kept beyond that,
+	// and items are handed over in batches as soon as they are built.
+	private void parseCommentListing(
+			@NonNull final JsonParser parser,
+			final long timestamp) throws Exception {
+
+		final Integer minimumCommentScore = PrefsUtility.pref_behaviour_comment_min();
+
+		final ItemBatcher output = new ItemBatcher(timestamp);
+
+		parser.nextToken();
+
+		final String parentPostAuthor;
+
+		if(parser.currentToken() == JsonToken.START_ARRAY) {
+
+			parser.nextToken();
+
+			// lol, reddit api
+			final ArrayList<RedditThing> postThings = new ArrayList<>(1);
+			RedditThing.parseListing(parser, child -> postThings.add(RedditThing.parse(child)));
+
+			final RedditPost post = postThings.get(0).asPost();
+
+			final RedditParsedPost parsedPost =
+					new RedditParsedPost(mActivity, post, mParsePostSelfText);
+
+			final RedditPreparedPost preparedPost = new RedditPreparedPost(
+					mContext,
+					mCacheManager,
+					0,
+					parsedPost,
+					timestamp,
+					true,
+					false,
+					false,
+					false);
+
+			AndroidCommon.runOnUiThread(()
+					-> mListener.onCommentListingRequestPostDownloaded(preparedPost));
+
+			parentPostAuthor = parsedPost.getAuthor();
+
+		} else {
+			parentPostAuthor = null;
+		}
+
+		final boolean foundChildren = RedditThing.parseListing(parser, child -> {
+
+			buildCommentTree(
+					readThingTree(child),
+					null,
+					output,
+					minimumCommentScore,
+					parentPostAuthor);
+
+			output.onTopLevelItemComplete();
+		});
+
+		if(!foundChildren) {
+			throw new JsonParseException(
+					parser,
+					"Comment listing has no children",
+					parser.getCurrentLocation());
+		}
+
+		output.flush();
+	}
+
+	// A thing from the listing, along with any things in its "replies" listing
+	private static final class ThingNode {
+
+		@NonNull final RedditThing thing;
+		@NonNull final ArrayList<ThingNode> replies;
+
+		private ThingNode(
+				@NonNull final RedditThing thing,
+				@NonNull final ArrayList<ThingNode> replies) {
+
+			this.thing = thing;
+			this.replies = replies;
+		}
+	}
+
+	// Binds the thing and its replies directly from the token stream. The replies
+	// are collected rather than left in RedditComment.replies as a JsonValue.
+	@NonNull
+	private static ThingNode readThingTree(@NonNull final JsonParser parser) throws
+			IOException,
+			InstantiationException,
+			IllegalAccessException,
+			NoSuchMethodException,
+			InvocationTargetException {
+
+		final ArrayList<ThingNode> replies = new ArrayList<>();
+
+		final RedditThing thing = RedditThing.parse(parser, (name, valueParser) -> {
+
+			if(!"replies".equals(name)) {
+				return false;
+			}
+
+			// An empty string if there are no replies
+			if(valueParser.currentToken() == JsonToken.START_OBJECT) {
+				RedditThing.parseListing(
+						valueParser,
+						child -> replies.add(readThingTree(child)));
+
+			} else {
+				valueParser.skipChildren();
+				valueParser.nextToken();
+			}
+
+			return true;
+		});
+
+		return new ThingNode(thing, replies);
+	}
+
+	private final class ItemBatcher {
+
+		private static final int BATCH_SIZE = 50;
+
+		private final long mTimestamp;
+		private final RedditChangeDataManager mChangeDataManager
+				= RedditChangeDataManager.getInstance(mUser);
+
+		@NonNull private ArrayList<RedditCommentListItem> mBatch = new ArrayList<>(BATCH_SIZE);
+		@NonNull private ArrayList<RedditThing> mComments = new ArrayList<>(BATCH_SIZE);
+		private boolean mFlushed = false;
+
+		// Position of the next comment body to prepare in the background
+		private int mBodiesQueued = 0;
+
+		private ItemBatcher(final long timestamp) {
+			mTimestamp = timestamp;
+		}
+
+		// Get the first comments on screen without waiting for a full batch
+		public void onTopLevelItemComplete() throws
+				InstantiationException,
+				IllegalAccessException,
+				NoSuchMethodException,
+				InvocationTargetException {
+
+			if(!mFlushed) {
+				flush();
+			}
+		}
+
+		public void add(@NonNull final RedditCommentListItem item) throws
+				InstantiationException,
+				IllegalAccessException,
+				NoSuchMethodException,
+				InvocationTargetException {
+
+			mBatch.add(item);
+
+			if(mBatch.size() >= BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		public void addComment(
+				@NonNull final RedditCommentListItem item,
+				@NonNull final RedditThing comment) throws
+						InstantiationException,
+						IllegalAccessException,
+						NoSuchMethodException,
+						InvocationTargetException {
+
+			mComments.add(comment);
+			add(item);
+		}
+
+		public void flush() throws
+				InstantiationException,
+				IllegalAccessException,
+				NoSuchMethodException,
+				InvocationTargetException {
+
+			if(mBatch.isEmpty()) {
+				return;
+			}
+
+			final ArrayList<RedditCommentListItem> items = mBatch;
+			mBatch = new ArrayList<>(BATCH_SIZE);
+			mFlushed = true;
+
+			mChangeDataManager.updateAll(mTimestamp, mComments);
+			mComments = new ArrayList<>(BATCH_SIZE);
+
+			// Bodies of collapsed comments, and their replies, wait until they're shown
+			synchronized(mQueuedBodies) {
+
+				for(final RedditCommentListItem item : items) {
+
+					if(mCancelled) {
+						break;
+					}
+
+					if(item.isComment()
+							&& !item.isCollapsed(mChangeDataManager)
+							&& !item.isHidden(mChangeDataManager)) {
+
+						final RedditParsedComment comment
+								= item.asComment().getParsedComment();
+
+						comment.prepareBodyInBackground(
+								new Priority(
+										Constants.Priority.COMMENT_BODY_PRECACHE,
+										mBodiesQueued++),
+								mBodyTextParams,
+								null);
+
+						mQueuedBodies.add(comment);
+					}
+				}
+			}
+
+			AndroidCommon.runOnUiThread(()
+					-> mListener.onCommentListingRequestItemsDownloaded(items));
+		}
 	}
 
 	private void buildCommentTree(
-			final JsonValue value,
+			final ThingNode node,
 			final RedditCommentListItem parent,
-			final ArrayList<RedditCommentListItem> output,
+			final ItemBatcher output,
 			final Integer minimumCommentScore,
 			final String parentPostAuthor) throws
 					IllegalAccessException,
 					InstantiationException,
 					NoSuchMethodException,
 					InvocationTargetException {
-
-		final RedditThing thing = value.asObject(RedditThing.class);
+		final RedditThing thing = node.thing;
 
 		if(thing.getKind() == RedditThing.Kind.MORE_COMMENTS
 				&& mUrl.pathType() == RedditURLParser.POST_COMMENT_LISTING_URL) {
@@ -317,17 +489,26 @@ public class CommentListingRequest {
 					mActivity,
 					mCommentListingURL);
 
-			output.add(item);
+			output.addComment(item, thing);
+
+			for(final ThingNode reply : node.replies) {
+				buildCommentTree(
+						reply,
+						item,
+						output,
+						minimumCommentScore,
+						parentPostAuthor);
+			}
 
-			if(comment.replies.asObject() != null) {
+			// Only set if the comment's data couldn't be bound from the stream
+			if(comment.replies != null && comment.replies.asObject() != null) {
 
-				final JsonObject replies = comment.replies.asObject();
-				final JsonArray children =
-						replies.getObject("data").getArray("children");
+				final JsonArray children = comment.replies.asObject()
+						.getObject("data").getArray("children");
 
 				for(final JsonValue v : children) {
 					buildCommentTree(
-							v,
+							new ThingNode(v.asObject(RedditThing.class), new ArrayList<>()),
 							item,
 							output,
 							minimumCommentScore,
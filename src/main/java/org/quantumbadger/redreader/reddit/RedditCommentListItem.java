@@ -52,6 +52,9 @@ public class RedditCommentListItem extends GroupedRecyclerViewAdapter.Item {
 
 	private final RedditChangeDataManager mChangeDataManager;
 
+	// Only accessed from the UI thread
+	private int mDescendantsInListing = 0;
+
 	public RedditCommentListItem(
 			final RedditRenderableComment comment,
 			final RedditCommentListItem parent,
@@ -136,6 +139,22 @@ public class RedditCommentListItem extends GroupedRecyclerViewAdapter.Item {
 		return mParent;
 	}
 
+	// Items are added in pre-order, so this item's descendants in the listing are
+	// always the items which directly follow it.
+	public void onAddedToListing() {
+
+		RedditCommentListItem ancestor = mParent;
+
+		while(ancestor != null) {
+			ancestor.mDescendantsInListing++;
+			ancestor = ancestor.mParent;
+		}
+	}
+
+	public int getDescendantsInListing() {
+		return mDescendantsInListing;
+	}
+
 	public boolean isCollapsed(final RedditChangeDataManager changeDataManager) {
 
 		if(!isComment()) {
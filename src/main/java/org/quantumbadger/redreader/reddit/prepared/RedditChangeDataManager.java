@@ -19,21 +19,29 @@ package org.quantumbadger.redreader.reddit.prepared;
 
 import android.content.Context;
 import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import org.quantumbadger.redreader.account.RedditAccount;
 import org.quantumbadger.redreader.account.RedditAccountManager;
 import org.quantumbadger.redreader.common.AndroidCommon;
 import org.quantumbadger.redreader.common.General;
 import org.quantumbadger.redreader.common.PrefsUtility;
+import org.quantumbadger.redreader.common.collections.LongLongHashMap;
 import org.quantumbadger.redreader.common.collections.WeakReferenceListHashMapManager;
 import org.quantumbadger.redreader.common.collections.WeakReferenceListManager;
 import org.quantumbadger.redreader.io.ExtendedDataInputStream;
 import org.quantumbadger.redreader.io.ExtendedDataOutputStream;
 import org.quantumbadger.redreader.io.RedditChangeDataIO;
 import org.quantumbadger.redreader.reddit.things.RedditComment;
+import org.quantumbadger.redreader.reddit.things.RedditIdAndType;
 import org.quantumbadger.redreader.reddit.things.RedditPost;
+import org.quantumbadger.redreader.reddit.things.RedditThing;
 import org.quantumbadger.redreader.reddit.things.RedditThingWithIdAndType;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -49,6 +57,11 @@ public final class RedditChangeDataManager {
 
 	private static final int MAX_ENTRY_COUNT = 10_000;
 
+	// Changes published before they're merged into a new copy of all the entries
+	private static final int MAX_UNMERGED_ENTRY_COUNT = 256;
+
+	private static final int RECORD_MARKER = 0x52;
+
 	private static final HashMap<RedditAccount, RedditChangeDataManager> INSTANCE_MAP
 			= new HashMap<>();
 
@@ -67,9 +80,9 @@ public final class RedditChangeDataManager {
 		}
 	}
 
-	private static HashMap<RedditAccount, HashMap<String, Entry>> snapshotAllUsers() {
+	private static HashMap<RedditAccount, EntryMap> snapshotAllUsers() {
 
-		final HashMap<RedditAccount, HashMap<String, Entry>> result = new HashMap<>();
+		final HashMap<RedditAccount, EntryMap> result = new HashMap<>();
 
 		synchronized(INSTANCE_MAP) {
 			for(final RedditAccount account : INSTANCE_MAP.keySet()) {
@@ -80,33 +93,39 @@ public final class RedditChangeDataManager {
 		return result;
 	}
 
-	public static void writeAllUsers(final ExtendedDataOutputStream dos) throws
+	private static void writeRecord(
+			final ExtendedDataOutputStream dos,
+			final String username,
+			final String thingIdAndType,
+			final long entry) throws IOException {
+
+		dos.writeByte(RECORD_MARKER);
+		dos.writeUTF(username);
+		dos.writeUTF(thingIdAndType);
+		Entry.write(dos, entry);
+	}
+
+	// Writes every entry as a log record. Returns the number of records written.
+	public static int writeAllUsers(final ExtendedDataOutputStream dos) throws
 			IOException {
 
 		Log.i(TAG, "Taking snapshot...");
 
-		final HashMap<RedditAccount, HashMap<String, Entry>> data = snapshotAllUsers();
+		final HashMap<RedditAccount, EntryMap> data = snapshotAllUsers();
 
 		Log.i(TAG, "Writing to stream...");
 
-		final Set<Map.Entry<RedditAccount, HashMap<String, Entry>>> userDataSet =
-				data.entrySet();
-
-		dos.writeInt(userDataSet.size());
+		int recordCount = 0;
 
-		for(final Map.Entry<RedditAccount, HashMap<String, Entry>> userData : userDataSet) {
+		for(final Map.Entry<RedditAccount, EntryMap> userData : data.entrySet()) {
 
 			final String username = userData.getKey().getCanonicalUsername();
-			dos.writeUTF(username);
+			final EntryMap entries = userData.getValue();
 
-			final Set<Map.Entry<String, Entry>> entrySet = userData.getValue().entrySet();
+			entries.forEach((thingIdAndType, entry)
+					-> writeRecord(dos, username, thingIdAndType, entry));
 
-			dos.writeInt(entrySet.size());
-
-			for(final Map.Entry<String, Entry> entry : entrySet) {
-				dos.writeUTF(entry.getKey());
-				entry.getValue().writeTo(dos);
-			}
+			recordCount += entries.size();
 
 			if(General.isSensitiveDebugLoggingEnabled()) {
 				Log.i(
@@ -114,15 +133,132 @@ public final class RedditChangeDataManager {
 						String.format(
 								Locale.US,
 								"Wrote %d entries for user '%s'",
-								entrySet.size(),
+								entries.size(),
 								username));
 			}
 		}
 
 		Log.i(TAG, "All entries written to stream.");
+
+		return recordCount;
+	}
+
+	// Writes a log record for each entry changed since the last write. Returns the
+	// number of records written.
+	public static int writeChangesForAllUsers(final ExtendedDataOutputStream dos) throws
+			IOException {
+
+		final HashMap<RedditAccount, EntryMap> changes = new HashMap<>();
+
+		synchronized(INSTANCE_MAP) {
+			for(final RedditAccount account : INSTANCE_MAP.keySet()) {
+				changes.put(account, getInstance(account).takeChangedEntries());
+			}
+		}
+
+		int recordCount = 0;
+
+		for(final Map.Entry<RedditAccount, EntryMap> userChanges : changes.entrySet()) {
+
+			final String username = userChanges.getKey().getCanonicalUsername();
+			final EntryMap entries = userChanges.getValue();
+
+			entries.forEach((thingIdAndType, entry)
+					-> writeRecord(dos, username, thingIdAndType, entry));
+
+			recordCount += entries.size();
+		}
+
+		return recordCount;
+	}
+
+	// Replays the log, where later records replace earlier ones. Everything read
+	// before an error (such as a record truncated by a crash) is still inserted.
+	// Returns the number of records read.
+	public static int readLog(
+			final ExtendedDataInputStream dis,
+			final Context context) throws IOException {
+
+		Log.i(TAG, "Reading log from stream...");
+
+		final HashMap<String, EntryMap> entriesByUser = new HashMap<>();
+
+		int recordCount = 0;
+
+		try {
+			while(true) {
+
+				final int marker = dis.read();
+
+				if(marker == -1) {
+					break;
+
+				} else if(marker != RECORD_MARKER) {
+					throw new IOException("Invalid record marker: " + marker);
+				}
+
+				final String username = dis.readUTF();
+				final String thingIdAndType = dis.readUTF();
+				final long entry = Entry.read(dis);
+
+				EntryMap entries = entriesByUser.get(username);
+
+				if(entries == null) {
+					entries = new EntryMap();
+					entriesByUser.put(username, entries);
+				}
+
+				entries.put(thingIdAndType, entry);
+				recordCount++;
+			}
+
+		} finally {
+
+			Log.i(TAG, String.format(Locale.US, "%d records read.", recordCount));
+
+			for(final Map.Entry<String, EntryMap> userEntries : entriesByUser.entrySet()) {
+				insertAllForUser(userEntries.getKey(), userEntries.getValue(), context);
+			}
+		}
+
+		return recordCount;
+	}
+
+	private static void insertAllForUser(
+			final String username,
+			final EntryMap entries,
+			final Context context) {
+
+		Log.i(TAG, "Getting account...");
+
+		final RedditAccount account =
+				RedditAccountManager.getInstance(context).getAccount(username);
+
+		if(account == null) {
+			if(General.isSensitiveDebugLoggingEnabled()) {
+				Log.i(
+						TAG,
+						String.format(
+								Locale.US,
+								"Skipping user '%s' as the account no longer exists",
+								username));
+			}
+
+		} else {
+			getInstance(account).insertAll(entries);
+			if(General.isSensitiveDebugLoggingEnabled()) {
+				Log.i(
+						TAG,
+						String.format(
+								Locale.US,
+								"Finished inserting entries for user '%s'",
+								username));
+			}
+		}
 	}
 
-	public static void readAllUsers(
+	// Reads the single-snapshot format used before the log was introduced
+	public static void readAllUsersLegacy(
 			final ExtendedDataInputStream dis,
 			final Context context) throws IOException {
 
@@ -147,40 +283,15 @@ public final class RedditChangeDataManager {
 								username));
 			}
 
-			final HashMap<String, Entry> entries = new HashMap<>(entryCount);
+			final EntryMap entries = new EntryMap();
 
 			for(int j = 0; j < entryCount; j++) {
 				final String thingId = dis.readUTF();
-				final Entry entry = new Entry(dis);
+				final long entry = Entry.read(dis);
 				entries.put(thingId, entry);
 			}
 
-			Log.i(TAG, "Getting account...");
-
-			final RedditAccount account =
-					RedditAccountManager.getInstance(context).getAccount(username);
-
-			if(account == null) {
-				if(General.isSensitiveDebugLoggingEnabled()) {
-					Log.i(
-							TAG,
-							String.format(
-									Locale.US,
-									"Skipping user '%s' as the account no longer exists",
-									username));
-				}
-
-			} else {
-				getInstance(account).insertAll(entries);
-				if(General.isSensitiveDebugLoggingEnabled()) {
-					Log.i(
-							TAG,
-							String.format(
-									Locale.US,
-									"Finished inserting entries for user '%s'",
-									username));
-				}
-			}
+			insertAllForUser(username, entries, context);
 		}
 
 		Log.i(TAG, "All entries read from stream.");
@@ -192,6 +303,9 @@ public final class RedditChangeDataManager {
 
 	public static void pruneAllUsersWhereOlderThan(final long maxAge) {
 
+		// Otherwise, entries read later would bring back what was pruned
+		RedditChangeDataIO.awaitInitialReadStatic();
+
 		Log.i(TAG, "Pruning for all users...");
 
 		final Set<RedditAccount> users;
@@ -213,188 +327,321 @@ public final class RedditChangeDataManager {
 		void onRedditDataChange(final String thingIdAndType);
 	}
 
+	// Each entry is packed into a long, with the timestamp above six flag bits, so
+	// that entries can be stored and updated without allocating.
 	private static final class Entry {
 
-		private final long mTimestamp;
+		private static final int FLAG_BITS = 6;
+		private static final long FLAG_MASK = (1L << FLAG_BITS) - 1;
+
+		private static final long FLAG_UPVOTED = 1;
+		private static final long FLAG_DOWNVOTED = 1 << 1;
+		private static final long FLAG_READ = 1 << 2;
+		private static final long FLAG_SAVED = 1 << 3;
 
-		private final boolean mIsUpvoted;
-		private final boolean mIsDownvoted;
-		private final boolean mIsRead;
-		private final boolean mIsSaved;
-		private final Boolean mIsHidden;
 		// For posts, this means "hidden". For comments, this means "collapsed".
+		// The value may also be unset.
+		private static final long FLAG_HIDDEN_SET = 1 << 4;
+		private static final long FLAG_HIDDEN = 1 << 5;
 
-		static final Entry CLEAR_ENTRY = new Entry();
+		private static final long FLAGS_VOTE = FLAG_UPVOTED | FLAG_DOWNVOTED;
+		private static final long FLAGS_HIDDEN = FLAG_HIDDEN_SET | FLAG_HIDDEN;
 
-		private Entry() {
-			mTimestamp = Long.MIN_VALUE;
-			mIsUpvoted = false;
-			mIsDownvoted = false;
-			mIsRead = false;
-			mIsSaved = false;
-			mIsHidden = null;
+		// The earliest possible timestamp, with no flags set
+		static final long CLEAR_ENTRY = Long.MIN_VALUE;
+
+		private Entry() {}
+
+		private static long create(final long timestamp, final long flags) {
+			return (timestamp << FLAG_BITS) | flags;
 		}
 
-		private Entry(
-				final long timestamp,
-				final boolean isUpvoted,
-				final boolean isDownvoted,
-				final boolean isRead,
-				final boolean isSaved,
-				final Boolean isHidden) {
+		// Recorded in the log when an entry is removed
+		static long cleared(final long timestamp) {
+			return create(timestamp, 0);
+		}
 
-			mTimestamp = timestamp;
-			mIsUpvoted = isUpvoted;
-			mIsDownvoted = isDownvoted;
-			mIsRead = isRead;
-			mIsSaved = isSaved;
-			mIsHidden = isHidden;
+		private static long hiddenFlags(@Nullable final Boolean isHidden) {
+
+			if(isHidden == null) {
+				return 0;
+			}
+
+			return isHidden ? FLAGS_HIDDEN : FLAG_HIDDEN_SET;
 		}
 
-		private Entry(final ExtendedDataInputStream dis) throws IOException {
-			mTimestamp = dis.readLong();
-			mIsUpvoted = dis.readBoolean();
-			mIsDownvoted = dis.readBoolean();
-			mIsRead = dis.readBoolean();
-			mIsSaved = dis.readBoolean();
-			mIsHidden = dis.readNullableBoolean();
+		static long read(final ExtendedDataInputStream dis) throws IOException {
+
+			final long timestamp = dis.readLong();
+
+			long flags = 0;
+
+			if(dis.readBoolean()) {
+				flags |= FLAG_UPVOTED;
+			}
+
+			if(dis.readBoolean()) {
+				flags |= FLAG_DOWNVOTED;
+			}
+
+			if(dis.readBoolean()) {
+				flags |= FLAG_READ;
+			}
+
+			if(dis.readBoolean()) {
+				flags |= FLAG_SAVED;
+			}
+
+			flags |= hiddenFlags(dis.readNullableBoolean());
+
+			return create(timestamp, flags);
+		}
+
+		static void write(
+				final ExtendedDataOutputStream dos,
+				final long entry) throws IOException {
+
+			dos.writeLong(getTimestamp(entry));
+			dos.writeBoolean(isUpvoted(entry));
+			dos.writeBoolean(isDownvoted(entry));
+			dos.writeBoolean(isRead(entry));
+			dos.writeBoolean(isSaved(entry));
+			dos.writeNullableBoolean(isHidden(entry));
+		}
+
+		static long getTimestamp(final long entry) {
+			return entry >> FLAG_BITS;
+		}
+
+		private static long getFlags(final long entry) {
+			return entry & FLAG_MASK;
 		}
 
-		private void writeTo(final ExtendedDataOutputStream dos) throws IOException {
-			dos.writeLong(mTimestamp);
-			dos.writeBoolean(mIsUpvoted);
-			dos.writeBoolean(mIsDownvoted);
-			dos.writeBoolean(mIsRead);
-			dos.writeBoolean(mIsSaved);
-			dos.writeNullableBoolean(mIsHidden);
+		static boolean isClear(final long entry) {
+			return getFlags(entry) == 0;
 		}
 
-		boolean isClear() {
-			return !mIsUpvoted
-					&& !mIsDownvoted
-					&& !mIsRead
-					&& !mIsSaved
-					&& mIsHidden == null;
+		static boolean isUpvoted(final long entry) {
+			return (entry & FLAG_UPVOTED) != 0;
 		}
 
-		public boolean isUpvoted() {
-			return mIsUpvoted;
+		static boolean isSaved(final long entry) {
+			return (entry & FLAG_SAVED) != 0;
 		}
 
-		public boolean isSaved() {
-			return mIsSaved;
+		static boolean isRead(final long entry) {
+			return (entry & FLAG_READ) != 0;
 		}
 
-		public boolean isRead() {
-			return mIsRead;
+		@Nullable
+		static Boolean isHidden(final long entry) {
+
+			if((entry & FLAG_HIDDEN_SET) == 0) {
+				return null;
+			}
+
+			return (entry & FLAG_HIDDEN) != 0;
 		}
 
-		public Boolean isHidden() {
-			return mIsHidden;
+		static boolean isDownvoted(final long entry) {
+			return (entry & FLAG_DOWNVOTED) != 0;
 		}
 
-		public boolean isDownvoted() {
-			return mIsDownvoted;
+		private static long voteFlags(@Nullable final Boolean likes) {
+
+			if(likes == null) {
+				return 0;
+			}
+
+			return likes ? FLAG_UPVOTED : FLAG_DOWNVOTED;
 		}
 
-		Entry update(
+		static long update(
+				final long entry,
 				final long timestamp,
 				final RedditComment comment) {
 
-			if(timestamp < mTimestamp) {
-				return this;
+			if(timestamp < getTimestamp(entry)) {
+				return entry;
 			}
 
-			return new Entry(
+			return create(
 					timestamp,
-					Boolean.TRUE.equals(comment.likes),
-					Boolean.FALSE.equals(comment.likes),
-					false,
-					Boolean.TRUE.equals(comment.saved),
-					mIsHidden); // Use existing value for "collapsed"
+					voteFlags(comment.likes)
+							| (Boolean.TRUE.equals(comment.saved) ? FLAG_SAVED : 0)
+							| (entry & FLAGS_HIDDEN)); // Use existing value for "collapsed"
 		}
 
-		Entry update(
+		static long update(
+				final long entry,
 				final long timestamp,
 				final RedditPost post) {
 
-			if(timestamp < mTimestamp) {
-				return this;
+			if(timestamp < getTimestamp(entry)) {
+				return entry;
 			}
 
-			return new Entry(
+			return create(
 					timestamp,
-					Boolean.TRUE.equals(post.likes),
-					Boolean.FALSE.equals(post.likes),
-					post.clicked || mIsRead,
-					post.saved,
-					post.hidden ? true : null);
+					voteFlags(post.likes)
+							| (post.clicked || isRead(entry) ? FLAG_READ : 0)
+							| (post.saved ? FLAG_SAVED : 0)
+							| (post.hidden ? FLAGS_HIDDEN : 0));
 		}
 
-		Entry markUpvoted(final long timestamp) {
+		// Entries changed before the log was read started out clear, and so lack the
+		// state that updates carry forward from an existing entry. This adds that state
+		// from the older entry which was read from the log.
+		static long mergeOlder(final long entry, final long olderEntry) {
 
-			return new Entry(
-					timestamp,
-					true,
-					false,
-					mIsRead,
-					mIsSaved,
-					mIsHidden);
+			long flags = getFlags(entry) | (olderEntry & FLAG_READ);
+
+			if((entry & FLAG_HIDDEN_SET) == 0) {
+				flags |= olderEntry & FLAGS_HIDDEN;
+			}
+
+			return create(getTimestamp(entry), flags);
 		}
 
-		Entry markDownvoted(final long timestamp) {
+		static long markUpvoted(final long entry, final long timestamp) {
+			return create(timestamp, (getFlags(entry) & ~FLAGS_VOTE) | FLAG_UPVOTED);
+		}
 
-			return new Entry(
-					timestamp,
-					false,
-					true,
-					mIsRead,
-					mIsSaved,
-					mIsHidden);
+		static long markDownvoted(final long entry, final long timestamp) {
+			return create(timestamp, (getFlags(entry) & ~FLAGS_VOTE) | FLAG_DOWNVOTED);
 		}
 
-		Entry markUnvoted(final long timestamp) {
+		static long markUnvoted(final long entry, final long timestamp) {
+			return create(timestamp, getFlags(entry) & ~FLAGS_VOTE);
+		}
+
+		static long markRead(final long entry, final long timestamp) {
+			return create(timestamp, getFlags(entry) | FLAG_READ);
+		}
 
-			return new Entry(
+		static long markSaved(final long entry, final long timestamp, final boolean isSaved) {
+			return create(
 					timestamp,
-					false,
-					false,
-					mIsRead,
-					mIsSaved,
-					mIsHidden);
+					(getFlags(entry) & ~FLAG_SAVED) | (isSaved ? FLAG_SAVED : 0));
 		}
 
-		Entry markRead(final long timestamp) {
+		static long markHidden(
+				final long entry,
+				final long timestamp,
+				@Nullable final Boolean isHidden) {
 
-			return new Entry(
+			return create(
 					timestamp,
-					mIsUpvoted,
-					mIsDownvoted,
-					true,
-					mIsSaved,
-					mIsHidden);
+					(getFlags(entry) & ~FLAGS_HIDDEN) | hiddenFlags(isHidden));
 		}
+	}
 
-		Entry markSaved(final long timestamp, final boolean isSaved) {
+	private interface EntryVisitor<E extends Exception> {
+		void visit(String thingIdAndType, long entry) throws E;
+	}
 
-			return new Entry(
-					timestamp,
-					mIsUpvoted,
-					mIsDownvoted,
-					mIsRead,
-					isSaved,
-					mIsHidden);
+	// Maps fullnames to packed entries. Fullnames are packed into long keys, apart
+	// from any which aren't in the expected format.
+	private static final class EntryMap {
+
+		private final LongLongHashMap mPackedEntries;
+		private final HashMap<String, Long> mOtherEntries;
+
+		EntryMap() {
+			mPackedEntries = new LongLongHashMap();
+			mOtherEntries = new HashMap<>();
 		}
 
-		Entry markHidden(final long timestamp, final Boolean isHidden) {
+		EntryMap(final EntryMap other) {
+			mPackedEntries = new LongLongHashMap(other.mPackedEntries);
+			mOtherEntries = new HashMap<>(other.mOtherEntries);
+		}
 
-			return new Entry(
-					timestamp,
-					mIsUpvoted,
-					mIsDownvoted,
-					mIsRead,
-					mIsSaved,
-					isHidden);
+		int size() {
+			return mPackedEntries.size() + mOtherEntries.size();
+		}
+
+		boolean isEmpty() {
+			return mPackedEntries.isEmpty() && mOtherEntries.isEmpty();
+		}
+
+		long get(final String thingIdAndType) {
+			return get(thingIdAndType, Entry.CLEAR_ENTRY);
+		}
+
+		long get(final String thingIdAndType, final long defaultValue) {
+
+			final long key = RedditIdAndType.pack(thingIdAndType);
+
+			if(key != RedditIdAndType.NOT_PACKABLE) {
+				return mPackedEntries.get(key, defaultValue);
+			}
+
+			final Long entry = mOtherEntries.get(thingIdAndType);
+			return entry == null ? defaultValue : entry;
+		}
+
+		void put(final String thingIdAndType, final long entry) {
+
+			final long key = RedditIdAndType.pack(thingIdAndType);
+
+			if(key != RedditIdAndType.NOT_PACKABLE) {
+				mPackedEntries.put(key, entry);
+			} else {
+				mOtherEntries.put(thingIdAndType, entry);
+			}
+		}
+
+		void remove(final String thingIdAndType) {
+
+			final long key = RedditIdAndType.pack(thingIdAndType);
+
+			if(key != RedditIdAndType.NOT_PACKABLE) {
+				mPackedEntries.remove(key);
+			} else {
+				mOtherEntries.remove(thingIdAndType);
+			}
+		}
+
+		// The map must not be modified during the visit
+		<E extends Exception> void forEach(final EntryVisitor<E> visitor) throws E {
+
+			mPackedEntries.forEach((key, entry)
+					-> visitor.visit(RedditIdAndType.unpack(key), entry));
+
+			for(final Map.Entry<String, Long> entry : mOtherEntries.entrySet()) {
+				visitor.visit(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	// What readers see: a copy of all the entries, and the entries which have changed
+	// since that copy was made. Neither map is modified once published. Only the changes
+	// are copied each time something is published, and these are merged into a new copy
+	// of all the entries once there are enough of them.
+	private static final class PublishedEntries {
+
+		// Removed entries are recorded in the changes as CLEAR_ENTRY, and other entries
+		// there are never clear, so any other clear value can mean "unchanged"
+		private static final long UNCHANGED = Entry.cleared(0);
+
+		@NonNull private final EntryMap mBase;
+		@NonNull private final EntryMap mChanges;
+
+		PublishedEntries(@NonNull final EntryMap base, @NonNull final EntryMap changes) {
+			mBase = base;
+			mChanges = changes;
+		}
+
+		long get(final String thingIdAndType) {
+
+			final long changedEntry = mChanges.get(thingIdAndType, UNCHANGED);
+
+			if(changedEntry != UNCHANGED) {
+				return changedEntry;
+			}
+
+			return mBase.get(thingIdAndType);
 		}
 	}
 
@@ -410,9 +657,19 @@ public final class RedditChangeDataManager {
 		}
 	}
 
-	private final HashMap<String, Entry> mEntries = new HashMap<>();
+	// Only modified while holding mLock, using setEntry(). Each change is then published
+	// to readers, so that reads never wait for a writer.
+	private final EntryMap mEntries = new EntryMap();
+	private volatile PublishedEntries mPublishedEntries
+			= new PublishedEntries(new EntryMap(), new EntryMap());
 	private final Object mLock = new Object();
 
+	// Entries which have changed since mPublishedEntries.mBase was copied
+	private EntryMap mUnmergedEntries = new EntryMap();
+
+	// Entries which have changed since they were last written to the log
+	private EntryMap mChangedEntries = new EntryMap();
+
 	private final WeakReferenceListHashMapManager<String, Listener> mListeners =
 			new WeakReferenceListHashMapManager<>();
 
@@ -430,32 +687,80 @@ public final class RedditChangeDataManager {
 		mListeners.remove(thing.getIdAndType(), listener);
 	}
 
-	private Entry get(final RedditThingWithIdAndType thing) {
+	private long get(final RedditThingWithIdAndType thing) {
+		return mEntries.get(thing.getIdAndType());
+	}
+
+	private long getPublished(final RedditThingWithIdAndType thing) {
+		return mPublishedEntries.get(thing.getIdAndType());
+	}
+
+	private void publish() {
 
-		final Entry entry = mEntries.get(thing.getIdAndType());
+		if(mUnmergedEntries.size() > MAX_UNMERGED_ENTRY_COUNT) {
+			mPublishedEntries = new PublishedEntries(new EntryMap(mEntries), new EntryMap());
+			mUnmergedEntries = new EntryMap();
 
-		if(entry == null) {
-			return Entry.CLEAR_ENTRY;
 		} else {
-			return entry;
+			mPublishedEntries = new PublishedEntries(
+					mPublishedEntries.mBase,
+					new EntryMap(mUnmergedEntries));
 		}
 	}
 
-	private void set(
-			final RedditThingWithIdAndType thing,
-			final Entry existingValue,
-			final Entry newValue) {
+	// The caller must hold mLock, and then publish the change
+	private void setEntry(final String thingIdAndType, final long entry) {
 
-		if(newValue.isClear()) {
-			if(!existingValue.isClear()) {
-				mEntries.remove(thing.getIdAndType());
-				RedditChangeDataIO.notifyUpdateStatic();
-			}
+		if(Entry.isClear(entry)) {
+			mEntries.remove(thingIdAndType);
+			mUnmergedEntries.put(thingIdAndType, Entry.CLEAR_ENTRY);
 
 		} else {
-			mEntries.put(thing.getIdAndType(), newValue);
+			mEntries.put(thingIdAndType, entry);
+			mUnmergedEntries.put(thingIdAndType, entry);
+		}
+	}
+
+	// Everything recorded about the thing, packed into a value which changes whenever
+	// any of it does, so that anything derived from it can tell when to rebuild
+	public long getEntry(final RedditThingWithIdAndType thing) {
+		return getPublished(thing);
+	}
+
+	// Returns true if the entry was changed. The caller must publish the change,
+	// and then notify the IO thread and the listeners.
+	private boolean set(
+			final RedditThingWithIdAndType thing,
+			final long existingValue,
+			final long newValue) {
+
+		if(newValue == existingValue) {
+			return false;
+		}
+
+		if(Entry.isClear(newValue) && Entry.isClear(existingValue)) {
+			return false;
+		}
+
+		setEntry(thing.getIdAndType(), newValue);
+
+		mChangedEntries.put(thing.getIdAndType(), newValue);
+		return true;
+	}
+
+	private void setAndPublish(
+			final RedditThingWithIdAndType thing,
+			final long existingValue,
+			final long newValue) {
+
+		if(set(thing, existingValue, newValue)) {
+			publish();
 			RedditChangeDataIO.notifyUpdateStatic();
+			notifyListeners(thing);
 		}
+	}
+
+	private void notifyListeners(final RedditThingWithIdAndType thing) {
 
 		AndroidCommon.UI_THREAD_HANDLER.post(() -> mListeners.map(
 				thing.getIdAndType(),
@@ -463,52 +768,135 @@ public final class RedditChangeDataManager {
 				thing.getIdAndType()));
 	}
 
-	private void insertAll(final HashMap<String, Entry> entries) {
+	private void insertAll(final EntryMap entries) {
 
 		synchronized(mLock) {
 
-			for(final Map.Entry<String, Entry> entry : entries.entrySet()) {
+			entries.forEach((thingIdAndType, newEntry) -> {
+
+				final long existingEntry = mEntries.get(thingIdAndType);
+				final long insertedEntry;
 
-				final Entry newEntry = entry.getValue();
-				final Entry existingEntry = mEntries.get(entry.getKey());
+				if(Entry.isClear(existingEntry)
+						|| Entry.getTimestamp(existingEntry) < Entry.getTimestamp(newEntry)) {
 
-				if(existingEntry == null
-						|| existingEntry.mTimestamp < newEntry.mTimestamp) {
+					insertedEntry = newEntry;
 
-					mEntries.put(entry.getKey(), newEntry);
+				} else {
+					insertedEntry = Entry.mergeOlder(existingEntry, newEntry);
 				}
-			}
-		}
 
-		for(final String idAndType : entries.keySet()) {
-			mListeners.map(idAndType, ListenerNotifyOperator.INSTANCE, idAndType);
+				if(insertedEntry == existingEntry) {
+					return;
+				}
+
+				setEntry(thingIdAndType, insertedEntry);
+
+				// An existing entry is waiting to be appended to the log, where it would
+				// replace the inserted one
+				if(!Entry.isClear(existingEntry)) {
+					mChangedEntries.put(thingIdAndType, insertedEntry);
+				}
+			});
+
+			publish();
 		}
+
+		entries.forEach((thingIdAndType, entry) -> mListeners.map(
+				thingIdAndType,
+				ListenerNotifyOperator.INSTANCE,
+				thingIdAndType));
 	}
 
 	public void update(final long timestamp, final RedditComment comment) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(comment);
-			final Entry updatedEntry = existingEntry.update(timestamp, comment);
-			set(comment, existingEntry, updatedEntry);
+			final long existingEntry = get(comment);
+			final long updatedEntry = Entry.update(existingEntry, timestamp, comment);
+			setAndPublish(comment, existingEntry, updatedEntry);
 		}
 	}
 
 	public void update(final long timestamp, final RedditPost post) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(post);
-			final Entry updatedEntry = existingEntry.update(timestamp, post);
-			set(post, existingEntry, updatedEntry);
+			final long existingEntry = get(post);
+			final long updatedEntry = Entry.update(existingEntry, timestamp, post);
+			setAndPublish(post, existingEntry, updatedEntry);
+		}
+	}
+
+	// Updates the entries for all comments and posts in the collection. Other
+	// things are ignored. The changes are published, persisted and dispatched to
+	// listeners as a single batch.
+	public void updateAll(final long timestamp, final Collection<RedditThing> things) throws
+			InstantiationException,
+			IllegalAccessException,
+			NoSuchMethodException,
+			InvocationTargetException {
+
+		final ArrayList<RedditThingWithIdAndType> changed = new ArrayList<>();
+
+		synchronized(mLock) {
+
+			for(final RedditThing thing : things) {
+
+				final RedditThingWithIdAndType target;
+				final long existingEntry;
+				final long updatedEntry;
+
+				switch(thing.getKind()) {
+
+					case COMMENT: {
+						final RedditComment comment = thing.asComment();
+						target = comment;
+						existingEntry = get(comment);
+						updatedEntry = Entry.update(existingEntry, timestamp, comment);
+						break;
+					}
+
+					case POST: {
+						final RedditPost post = thing.asPost();
+						target = post;
+						existingEntry = get(post);
+						updatedEntry = Entry.update(existingEntry, timestamp, post);
+						break;
+					}
+
+					default:
+						continue;
+				}
+
+				if(set(target, existingEntry, updatedEntry)) {
+					changed.add(target);
+				}
+			}
+
+			if(changed.isEmpty()) {
+				return;
+			}
+
+			publish();
 		}
+
+		RedditChangeDataIO.notifyUpdateStatic();
+
+		AndroidCommon.UI_THREAD_HANDLER.post(() -> {
+			for(final RedditThingWithIdAndType thing : changed) {
+				mListeners.map(
+						thing.getIdAndType(),
+						ListenerNotifyOperator.INSTANCE,
+						thing.getIdAndType());
+			}
+		});
 	}
 
 	public void markUpvoted(final long timestamp, final RedditThingWithIdAndType thing) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markUpvoted(timestamp);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markUpvoted(existingEntry, timestamp);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
@@ -517,18 +905,18 @@ public final class RedditChangeDataManager {
 			final RedditThingWithIdAndType thing) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markDownvoted(timestamp);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markDownvoted(existingEntry, timestamp);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
 	public void markUnvoted(final long timestamp, final RedditThingWithIdAndType thing) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markUnvoted(timestamp);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markUnvoted(existingEntry, timestamp);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
@@ -538,9 +926,9 @@ public final class RedditChangeDataManager {
 			final boolean saved) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markSaved(timestamp, saved);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markSaved(existingEntry, timestamp, saved);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
@@ -550,54 +938,54 @@ public final class RedditChangeDataManager {
 			final Boolean hidden) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markHidden(timestamp, hidden);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markHidden(existingEntry, timestamp, hidden);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
 	public void markRead(final long timestamp, final RedditThingWithIdAndType thing) {
 
 		synchronized(mLock) {
-			final Entry existingEntry = get(thing);
-			final Entry updatedEntry = existingEntry.markRead(timestamp);
-			set(thing, existingEntry, updatedEntry);
+			final long existingEntry = get(thing);
+			final long updatedEntry = Entry.markRead(existingEntry, timestamp);
+			setAndPublish(thing, existingEntry, updatedEntry);
 		}
 	}
 
 	public boolean isUpvoted(final RedditThingWithIdAndType thing) {
-		synchronized(mLock) {
-			return get(thing).isUpvoted();
-		}
+		return Entry.isUpvoted(getPublished(thing));
 	}
 
 	public boolean isDownvoted(final RedditThingWithIdAndType thing) {
-		synchronized(mLock) {
-			return get(thing).isDownvoted();
-		}
+		return Entry.isDownvoted(getPublished(thing));
 	}
 
 	public boolean isRead(final RedditThingWithIdAndType thing) {
-		synchronized(mLock) {
-			return get(thing).isRead();
-		}
+		return Entry.isRead(getPublished(thing));
 	}
 
 	public boolean isSaved(final RedditThingWithIdAndType thing) {
-		synchronized(mLock) {
-			return get(thing).isSaved();
-		}
+		return Entry.isSaved(getPublished(thing));
 	}
 
 	public Boolean isHidden(final RedditThingWithIdAndType thing) {
+		return Entry.isHidden(getPublished(thing));
+	}
+
+	// The snapshot includes all pending changes, so these are discarded
+	private EntryMap snapshot() {
 		synchronized(mLock) {
-			return get(thing).isHidden();
+			mChangedEntries = new EntryMap();
+			return new EntryMap(mEntries);
 		}
 	}
 
-	private HashMap<String, Entry> snapshot() {
+	private EntryMap takeChangedEntries() {
 		synchronized(mLock) {
-			return new HashMap<>(mEntries);
+			final EntryMap result = mChangedEntries;
+			mChangedEntries = new EntryMap();
+			return result;
 		}
 	}
 
@@ -607,25 +995,28 @@ public final class RedditChangeDataManager {
 		final long timestampBoundary = now - maxAge;
 
 		synchronized(mLock) {
-			final Iterator<Map.Entry<String, Entry>> iterator =
-					mEntries.entrySet().iterator();
 			final SortedMap<Long, String> byTimestamp = new TreeMap<>();
+			final ArrayList<String> expired = new ArrayList<>();
 
-			while(iterator.hasNext()) {
+			mEntries.forEach((thingIdAndType, entry) -> {
 
-				final Map.Entry<String, Entry> entry = iterator.next();
-				final long timestamp = entry.getValue().mTimestamp;
-				byTimestamp.put(timestamp, entry.getKey());
+				final long timestamp = Entry.getTimestamp(entry);
+				byTimestamp.put(timestamp, thingIdAndType);
 
 				if(timestamp < timestampBoundary) {
 
 					Log.i(TAG, String.format(
 							"Pruning '%s' (%d hours old)",
-							entry.getKey(),
+							thingIdAndType,
 							(now - timestamp) / (60L * 60L * 1000L)));
 
-					iterator.remove();
+					expired.add(thingIdAndType);
 				}
+			});
+
+			for(final String thingIdAndType : expired) {
+				setEntry(thingIdAndType, Entry.CLEAR_ENTRY);
+				mChangedEntries.put(thingIdAndType, Entry.cleared(now));
 			}
 
 			// Limit total number of entries to limit our memory usage. This is meant as a
@@ -644,7 +1035,13 @@ public final class RedditChangeDataManager {
 						entry.getValue(),
 						(now - entry.getKey()) / (60L * 60L * 1000L)));
 
-				mEntries.remove(entry.getValue());
+				setEntry(entry.getValue(), Entry.CLEAR_ENTRY);
+				mChangedEntries.put(entry.getValue(), Entry.cleared(now));
+			}
+
+			if(!mChangedEntries.isEmpty()) {
+				publish();
+				RedditChangeDataIO.notifyUpdateStatic();
 			}
 		}
 	}
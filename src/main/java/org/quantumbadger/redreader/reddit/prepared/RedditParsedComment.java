@@ -18,30 +18,85 @@
 package org.quantumbadger.redreader.reddit.prepared;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.text.PrecomputedTextCompat;
 import org.apache.commons.text.StringEscapeUtils;
+import org.quantumbadger.redreader.common.PrioritisedCachedThreadPool;
+import org.quantumbadger.redreader.common.Priority;
 import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElement;
 import org.quantumbadger.redreader.reddit.prepared.html.HtmlReader;
 import org.quantumbadger.redreader.reddit.things.RedditComment;
 import org.quantumbadger.redreader.reddit.things.RedditThingWithIdAndType;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
 public class RedditParsedComment implements RedditThingWithIdAndType {
 
+	// Preparing the body is expensive, so it is done when first needed, or ahead of
+	// time on these threads for comments which are likely to be shown
+	private static final PrioritisedCachedThreadPool BODY_PREPARATION_POOL
+			= new PrioritisedCachedThreadPool(2, "Comment body");
+
 	private final RedditComment mSrc;
 
-	@NonNull private final BodyElement mBody;
+	// Both cleared once the body has been prepared
+	@Nullable private String mBodyHtml;
+	@Nullable private AppCompatActivity mActivity;
+
+	// Only set while holding the lock, but volatile so that the UI thread can check it
+	// without waiting for a body being prepared in the background
+	@Nullable private volatile BodyElement mBody;
+
+	// The metrics the body text should be measured for, and those it was last measured for
+	@Nullable private PrecomputedTextCompat.Params mTextParams;
+	@Nullable private volatile PrecomputedTextCompat.Params mPrecomputedParams;
+
+	@Nullable private BodyPreparationTask mPreparationTask;
+	@NonNull private final ArrayList<Runnable> mOnBodyPrepared = new ArrayList<>(1);
 
 	private final String mFlair;
 
+	// Only weakly holds the comment, so that a queued task doesn't keep the listing, or the
+	// activity the comment was parsed for, alive
+	private static final class BodyPreparationTask extends PrioritisedCachedThreadPool.Task {
+
+		@NonNull private final WeakReference<RedditParsedComment> mComment;
+		@NonNull private volatile Priority mPriority;
+
+		private BodyPreparationTask(
+				@NonNull final RedditParsedComment comment,
+				@NonNull final Priority priority) {
+			mComment = new WeakReference<>(comment);
+			mPriority = priority;
+		}
+
+		@NonNull
+		@Override
+		public Priority getPriority() {
+			return mPriority;
+		}
+
+		@Override
+		public void run() {
+
+			final RedditParsedComment comment = mComment.get();
+
+			if(comment != null) {
+				comment.prepareBody(this);
+			}
+		}
+	}
+
 	public RedditParsedComment(
 			final RedditComment comment,
 			final AppCompatActivity activity) {
 
 		mSrc = comment;
 
-		mBody = HtmlReader.parse(
-				StringEscapeUtils.unescapeHtml4(comment.body_html),
-				activity);
+		mBodyHtml = comment.body_html;
+		mActivity = activity;
 
 		if(comment.author_flair_text != null) {
 			mFlair = StringEscapeUtils.unescapeHtml4(comment.author_flair_text);
@@ -50,9 +105,182 @@ public class RedditParsedComment implements RedditThingWithIdAndType {
 		}
 	}
 
+	// Prepares the body on this thread if this hasn't been done already. The lock isn't
+	// held while parsing, so if two threads get here at once, the first result is kept.
 	@NonNull
 	public BodyElement getBody() {
-		return mBody;
+
+		final BodyElement existingBody = mBody;
+
+		if(existingBody != null) {
+			return existingBody;
+		}
+
+		final String bodyHtml;
+		final AppCompatActivity activity;
+
+		synchronized(this) {
+
+			if(mBody != null) {
+				return mBody;
+			}
+
+			bodyHtml = mBodyHtml;
+			activity = mActivity;
+		}
+
+		final BodyElement body = HtmlReader.parseEscaped(
+				bodyHtml != null ? bodyHtml : "",
+				activity);
+
+		synchronized(this) {
+
+			if(mBody == null) {
+				mBody = body;
+				mBodyHtml = null;
+				mActivity = null;
+			}
+
+			return mBody;
+		}
+	}
+
+	private void prepareBody(@NonNull final BodyPreparationTask task) {
+
+		synchronized(this) {
+			if(mPreparationTask != task) {
+				// Cancelled after the pool had already started the task
+				return;
+			}
+		}
+
+		final BodyElement body = getBody();
+
+		final PrecomputedTextCompat.Params textParams;
+
+		synchronized(this) {
+			textParams = mTextParams;
+		}
+
+		if(textParams != null) {
+			body.precomputeText(textParams);
+		}
+
+		final ArrayList<Runnable> onPrepared;
+
+		synchronized(this) {
+
+			if(mPreparationTask != task) {
+				return;
+			}
+
+			if(textParams != null) {
+				mPrecomputedParams = textParams;
+			}
+
+			mPreparationTask = null;
+
+			onPrepared = new ArrayList<>(mOnBodyPrepared);
+			mOnBodyPrepared.clear();
+		}
+
+		for(final Runnable runnable : onPrepared) {
+			runnable.run();
+		}
+	}
+
+	public boolean isBodyPrepared() {
+		return mBody != null;
+	}
+
+	public boolean isTextPrecomputed(
+			@NonNull final PrecomputedTextCompat.Params textParams) {
+		return mBody != null && textParams.equals(mPrecomputedParams);
+	}
+
+	// Queues the body to be prepared in the background, or moves it up the queue if
+	// this priority is higher than before. If textParams is set, the body text is also
+	// measured for views with those metrics. If set, onPrepared is called on the preparing
+	// thread once this is done, or immediately if it already has been.
+	public void prepareBodyInBackground(
+			@NonNull final Priority priority,
+			@Nullable final PrecomputedTextCompat.Params textParams,
+			@Nullable final Runnable onPrepared) {
+
+		final boolean alreadyPrepared;
+		final BodyPreparationTask newTask;
+		final BodyPreparationTask updatedTask;
+
+		synchronized(this) {
+
+			if(textParams != null) {
+				mTextParams = textParams;
+			}
+
+			alreadyPrepared = mBody != null
+					&& mPreparationTask == null
+					&& (mTextParams == null || mTextParams.equals(mPrecomputedParams));
+
+			if(alreadyPrepared) {
+				newTask = null;
+				updatedTask = null;
+
+			} else {
+
+				if(onPrepared != null) {
+					mOnBodyPrepared.add(onPrepared);
+				}
+
+				if(mPreparationTask == null) {
+					mPreparationTask = new BodyPreparationTask(this, priority);
+					newTask = mPreparationTask;
+					updatedTask = null;
+
+				} else if(priority.isHigherPriorityThan(mPreparationTask.mPriority)) {
+					mPreparationTask.mPriority = priority;
+					newTask = null;
+					updatedTask = mPreparationTask;
+
+				} else {
+					newTask = null;
+					updatedTask = null;
+				}
+			}
+		}
+
+		if(alreadyPrepared) {
+			if(onPrepared != null) {
+				onPrepared.run();
+			}
+
+		} else if(newTask != null) {
+			BODY_PREPARATION_POOL.add(newTask);
+
+		} else if(updatedTask != null) {
+			BODY_PREPARATION_POOL.updatePriority(updatedTask);
+		}
+	}
+
+	// Removes a callback passed to prepareBodyInBackground(), if it hasn't been called yet
+	public synchronized void removeOnBodyPrepared(@NonNull final Runnable onPrepared) {
+		mOnBodyPrepared.remove(onPrepared);
+	}
+
+	// Stops any background preparation which hasn't finished yet, and drops its callbacks.
+	// The body is still prepared on demand by getBody().
+	public void cancelBodyPreparation() {
+
+		final BodyPreparationTask task;
+
+		synchronized(this) {
+			task = mPreparationTask;
+			mPreparationTask = null;
+			mOnBodyPrepared.clear();
+		}
+
+		if(task != null) {
+			BODY_PREPARATION_POOL.remove(task);
+		}
 	}
 
 	public String getFlair() {
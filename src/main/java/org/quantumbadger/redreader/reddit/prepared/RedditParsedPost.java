@@ -59,9 +59,7 @@ public class RedditParsedPost implements RedditThingWithIdAndType {
 				&& src.is_self
 				&& src.selftext_html != null
 				&& !src.selftext.trim().isEmpty()) {
-			mSelfText = HtmlReader.parse(
-					StringEscapeUtils.unescapeHtml4(src.selftext_html),
-					activity);
+			mSelfText = HtmlReader.parseEscaped(src.selftext_html, activity);
 		} else {
 			mSelfText = null;
 		}
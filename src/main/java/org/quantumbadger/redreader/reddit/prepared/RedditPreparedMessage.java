@@ -80,7 +80,7 @@ public final class RedditPreparedMessage implements RedditRenderableInboxItem {
 			appearance.recycle();
 		}
 
-		body = HtmlReader.parse(message.getUnescapedBodyHtml(), activity);
+		body = HtmlReader.parseEscaped(message.body_html, activity);
 
 		idAndType = message.name;
 
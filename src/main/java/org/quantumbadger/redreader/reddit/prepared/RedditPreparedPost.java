@@ -80,6 +80,7 @@ import org.quantumbadger.redreader.reddit.things.SubredditCanonicalId;
 import org.quantumbadger.redreader.reddit.url.SubredditPostListURL;
 import org.quantumbadger.redreader.reddit.url.UserProfileURL;
 import org.quantumbadger.redreader.views.RedditPostView;
+import org.quantumbadger.redreader.views.ViewportRequestScheduler;
 import org.quantumbadger.redreader.views.bezelmenu.SideToolbarOverlay;
 import org.quantumbadger.redreader.views.bezelmenu.VerticalToolbar;
 
@@ -112,6 +113,14 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 	private ThumbnailLoadedCallback thumbnailCallback;
 	private int usageId = -1;
 
+	// Kept so that the thumbnail can be downloaded again if the request was cancelled
+	// while the post was off screen
+	private final boolean mAllowHighResThumbnails;
+	private final int mThumbnailWidth;
+	@Nullable private CacheRequest mThumbnailRequest;
+
+	@Nullable private ViewportRequestScheduler mRequestScheduler;
+
 	public long lastChange;
 
 	private final boolean showSubreddit;
@@ -187,12 +196,13 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 
 		hasThumbnail = showThumbnails && hasThumbnail(post);
 
-		final int thumbnailWidth = General.dpToPixels(
+		mAllowHighResThumbnails = allowHighResThumbnails;
+		mThumbnailWidth = General.dpToPixels(
 				context,
 				PrefsUtility.images_thumbnail_size_dp());
 
 		if(hasThumbnail && hasThumbnail(post) && !shouldShowInlinePreview()) {
-			downloadThumbnail(context, allowHighResThumbnails, thumbnailWidth, cm, listId);
+			downloadThumbnail(context, cm);
 		}
 
 		lastChange = timestamp;
@@ -203,6 +213,24 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 		return mListId;
 	}
 
+	// Hands the downloads for this post to the scheduler, which adjusts them as the
+	// post scrolls on and off screen
+	public void setRequestScheduler(@NonNull final ViewportRequestScheduler scheduler) {
+
+		mRequestScheduler = scheduler;
+
+		if(mThumbnailRequest != null) {
+			scheduler.add(mListId, mThumbnailRequest);
+		}
+	}
+
+	public void scheduleRequest(@NonNull final CacheRequest request) {
+
+		if(mRequestScheduler != null) {
+			mRequestScheduler.add(mListId, request);
+		}
+	}
+
 	public boolean shouldShowInlinePreview() {
 		return mShowInlinePreviews && (src.isPreviewEnabled()
 				|| "gfycat.com".equals(src.getDomain())
@@ -1305,12 +1333,11 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 
 	private void downloadThumbnail(
 			final Context context,
-			final boolean allowHighRes,
-			final int sizePixels,
-			final CacheManager cm,
-			final int listId) {
+			final CacheManager cm) {
+
+		final int sizePixels = mThumbnailWidth;
 
-		final RedditParsedPost.ImagePreviewDetails preview = allowHighRes
+		final RedditParsedPost.ImagePreviewDetails preview = mAllowHighResThumbnails
 				? src.getPreview(sizePixels, sizePixels)
 				: null;
 
@@ -1329,14 +1356,14 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 
 		final RedditAccount anon = RedditAccountManager.getAnon();
 
-		cm.makeRequest(new CacheRequest(
+		mThumbnailRequest = new CacheRequest(
 				uri,
 				anon,
 				null,
-				new Priority(priority, listId),
+				new Priority(priority, mListId),
 				DownloadStrategyIfNotCached.INSTANCE,
 				fileType,
-				CacheRequest.DOWNLOAD_QUEUE_IMMEDIATE,
+				CacheRequest.DOWNLOAD_QUEUE_IMAGE_PRECACHE,
 				context,
 				new CacheRequestCallbacks() {
 
@@ -1369,7 +1396,9 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 									t);
 						}
 					}
-				}));
+				});
+
+		cm.makeRequest(mThumbnailRequest);
 	}
 
 	// These operations are ordered so as to avoid race conditions
@@ -1390,8 +1419,18 @@ public final class RedditPreparedPost implements RedditChangeDataManager.Listene
 	}
 
 	public void bind(final RedditPostView boundView) {
+
 		mBoundView = boundView;
 		mChangeDataManager.addListener(src, this);
+
+		if(mThumbnailRequest != null
+				&& mThumbnailRequest.isCancelled()
+				&& thumbnailCache == null) {
+
+			final Context context = boundView.getContext();
+			downloadThumbnail(context, CacheManager.getInstance(context));
+			scheduleRequest(mThumbnailRequest);
+		}
 	}
 
 	public void unbind(final RedditPostView boundView) {
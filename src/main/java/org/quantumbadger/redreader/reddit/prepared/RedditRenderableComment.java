@@ -40,6 +40,7 @@ import org.quantumbadger.redreader.reddit.things.RedditComment;
 import org.quantumbadger.redreader.reddit.things.RedditThingWithIdAndType;
 
 import java.net.URI;
+import java.util.Objects;
 
 public class RedditRenderableComment
 		implements RedditRenderableInboxItem, RedditThingWithIdAndType {
@@ -52,6 +53,13 @@ public class RedditRenderableComment
 	private final boolean mShowSubreddit;
 	private final boolean mNeverAutoCollapse;
 
+	// The last header built, and what it was built from. Only accessed on the UI thread.
+	@Nullable private CharSequence mCachedHeader;
+	@Nullable private RRThemeAttributes mCachedHeaderTheme;
+	@Nullable private RedditChangeDataManager mCachedHeaderChangeDataManager;
+	private long mCachedHeaderChangeDataEntry;
+	@Nullable private String mCachedHeaderAge;
+
 	public final static int NO_TIMESTAMP = -1;
 
 	public RedditRenderableComment(
@@ -103,8 +111,49 @@ public class RedditRenderableComment
 			final long postCreated,
 			final long parentCommentCreated) {
 
-		final PrefsUtility.CommentAgeMode commentAgeMode
-				= PrefsUtility.appearance_comment_age_mode();
+		// The age is formatted each time, as it may be relative to the current time
+		final String formattedAge;
+
+		if(theme.shouldShow(PrefsUtility.AppearanceCommentHeaderItem.AGE)) {
+			formattedAge = formatAge(
+					context,
+					PrefsUtility.appearance_comment_age_mode(),
+					commentAgeUnits,
+					mComment.getRawComment().created_utc * 1000L,
+					postCreated,
+					parentCommentCreated);
+		} else {
+			formattedAge = null;
+		}
+
+		final long changeDataEntry = changeDataManager.getEntry(mComment);
+
+		if(mCachedHeader != null
+				&& changeDataManager == mCachedHeaderChangeDataManager
+				&& changeDataEntry == mCachedHeaderChangeDataEntry
+				&& theme.equals(mCachedHeaderTheme)
+				&& Objects.equals(formattedAge, mCachedHeaderAge)) {
+
+			return mCachedHeader;
+		}
+
+		final CharSequence header = buildHeader(theme, changeDataManager, context, formattedAge);
+
+		mCachedHeader = header;
+		mCachedHeaderTheme = theme;
+		mCachedHeaderChangeDataManager = changeDataManager;
+		mCachedHeaderChangeDataEntry = changeDataEntry;
+		mCachedHeaderAge = formattedAge;
+
+		return header;
+	}
+
+	@NonNull
+	private CharSequence buildHeader(
+			final RRThemeAttributes theme,
+			final RedditChangeDataManager changeDataManager,
+			final Context context,
+			@Nullable final String formattedAge) {
 
 		final BetterSSB sb = new BetterSSB();
 
@@ -229,15 +278,7 @@ public class RedditRenderableComment
 			}
 		}
 
-		if(theme.shouldShow(PrefsUtility.AppearanceCommentHeaderItem.AGE)) {
-			final long commentTime = rawComment.created_utc * 1000L;
-			final String formattedAge = formatAge(
-					context,
-					commentAgeMode,
-					commentAgeUnits,
-					commentTime,
-					postCreated,
-					parentCommentCreated);
+		if(formattedAge != null) {
 
 			sb.append(
 					formattedAge,
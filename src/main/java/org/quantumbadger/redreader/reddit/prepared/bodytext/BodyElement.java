@@ -20,6 +20,7 @@ package org.quantumbadger.redreader.reddit.prepared.bodytext;
 import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
 import org.quantumbadger.redreader.activities.BaseActivity;
 
 public abstract class BodyElement {
@@ -40,4 +41,19 @@ public abstract class BodyElement {
 			@Nullable Integer textColor,
 			@Nullable Float textSize,
 			boolean showLinkButtons);
+
+	// As generateView(), but reusing views from the pool where this element type allows it
+	public View bindView(
+			@NonNull final BaseActivity activity,
+			@Nullable final Integer textColor,
+			@Nullable final Float textSize,
+			final boolean showLinkButtons,
+			@NonNull final BodyElementViewPool pool) {
+
+		return generateView(activity, textColor, textSize, showLinkButtons);
+	}
+
+	// Measures the text ahead of time for views with these metrics. May be called on any
+	// thread. The result is used when a view with matching metrics is next generated.
+	public void precomputeText(@NonNull final PrecomputedTextCompat.Params params) {}
 }
@@ -22,6 +22,7 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
 import org.quantumbadger.redreader.activities.BaseActivity;
 import org.quantumbadger.redreader.common.General;
 
@@ -82,4 +83,11 @@ public class BodyElementNumberedListElement extends BodyElement {
 
 		return outerLayout;
 	}
+
+	@Override
+	public void precomputeText(@NonNull final PrecomputedTextCompat.Params params) {
+		for(final BodyElement element : mElements) {
+			element.precomputeText(params);
+		}
+	}
 }
@@ -23,6 +23,7 @@ import android.view.ViewGroup;
 import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
 import org.quantumbadger.redreader.activities.BaseActivity;
 import org.quantumbadger.redreader.common.General;
 
@@ -86,4 +87,11 @@ public class BodyElementQuote extends BodyElement {
 
 		return quoteLayout;
 	}
+
+	@Override
+	public void precomputeText(@NonNull final PrecomputedTextCompat.Params params) {
+		for(final BodyElement element : mElements) {
+			element.precomputeText(params);
+		}
+	}
 }
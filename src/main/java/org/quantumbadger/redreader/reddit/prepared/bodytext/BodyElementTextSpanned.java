@@ -21,6 +21,8 @@ import android.text.Spanned;
 import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import org.quantumbadger.redreader.activities.BaseActivity;
 import org.quantumbadger.redreader.common.PrefsUtility;
 import org.quantumbadger.redreader.views.LinkifiedTextView;
@@ -29,6 +31,8 @@ public class BodyElementTextSpanned extends BodyElement {
 
 	@NonNull private final Spanned mSpanned;
 
+	@Nullable private volatile PrecomputedTextCompat mPrecomputedText;
+
 	public BodyElementTextSpanned(
 			@NonNull final BlockType blockType,
 			@NonNull final Spanned spanned) {
@@ -44,6 +48,33 @@ public class BodyElementTextSpanned extends BodyElement {
 			final boolean showLinkButtons) {
 
 		final LinkifiedTextView tv = new LinkifiedTextView(activity);
+		bind(tv, textColor, textSize);
+		return tv;
+	}
+
+	@Override
+	public View bindView(
+			@NonNull final BaseActivity activity,
+			@Nullable final Integer textColor,
+			@Nullable final Float textSize,
+			final boolean showLinkButtons,
+			@NonNull final BodyElementViewPool pool) {
+
+		LinkifiedTextView tv = (LinkifiedTextView)pool.obtain(getType());
+
+		if(tv == null) {
+			tv = new LinkifiedTextView(activity);
+			pool.register(tv, getType());
+		}
+
+		bind(tv, textColor, textSize);
+		return tv;
+	}
+
+	private void bind(
+			@NonNull final LinkifiedTextView tv,
+			@Nullable final Integer textColor,
+			@Nullable final Float textSize) {
 
 		if(textColor != null) {
 			tv.setTextColor(textColor);
@@ -52,13 +83,30 @@ public class BodyElementTextSpanned extends BodyElement {
 			tv.setTextSize(textSize);
 		}
 
-		tv.setText(mSpanned, LinkifiedTextView.BufferType.SPANNABLE);
+		final PrecomputedTextCompat precomputedText = mPrecomputedText;
+
+		// The precomputed text can only be used if the metrics match exactly
+		if(precomputedText != null
+				&& precomputedText.getParams().equals(TextViewCompat.getTextMetricsParams(tv))) {
+			TextViewCompat.setPrecomputedText(tv, precomputedText);
+
+		} else {
+			tv.setText(mSpanned, LinkifiedTextView.BufferType.SPANNABLE);
+		}
 
 		if(PrefsUtility.pref_accessibility_separate_body_text_lines()) {
 
 			tv.setFocusable(true);
 		}
+	}
 
-		return tv;
+	@Override
+	public void precomputeText(@NonNull final PrecomputedTextCompat.Params params) {
+
+		final PrecomputedTextCompat existing = mPrecomputedText;
+
+		if(existing == null || !existing.getParams().equals(params)) {
+			mPrecomputedText = PrecomputedTextCompat.create(mSpanned, params);
+		}
 	}
 }
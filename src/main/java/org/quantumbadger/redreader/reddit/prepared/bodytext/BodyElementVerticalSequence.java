@@ -21,6 +21,7 @@ import android.view.View;
 import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
 import org.quantumbadger.redreader.activities.BaseActivity;
 import org.quantumbadger.redreader.common.General;
 
@@ -80,4 +81,74 @@ public class BodyElementVerticalSequence extends BodyElement {
 
 		return result;
 	}
+
+	@Override
+	public View bindView(
+			@NonNull final BaseActivity activity,
+			@Nullable final Integer textColor,
+			@Nullable final Float textSize,
+			final boolean showLinkButtons,
+			@NonNull final BodyElementViewPool pool) {
+
+		// The common case of a single paragraph doesn't need the layout
+		if(mElements.size() == 1) {
+			return mElements.get(0).bindView(
+					activity,
+					textColor,
+					textSize,
+					showLinkButtons,
+					pool);
+		}
+
+		LinearLayout result = (LinearLayout)pool.obtain(BlockType.VERTICAL_SEQUENCE);
+
+		if(result == null) {
+			result = new LinearLayout(activity);
+			result.setOrientation(LinearLayout.VERTICAL);
+			pool.register(result, BlockType.VERTICAL_SEQUENCE);
+		}
+
+		final float dpScale = activity.getResources().getDisplayMetrics().density;
+		final int paragraphSpacing = (int)(dpScale * 6);
+
+		@Nullable BlockType lastBlock = null;
+
+		for(final BodyElement element : mElements) {
+
+			final View view = element.bindView(
+					activity,
+					textColor,
+					textSize,
+					showLinkButtons,
+					pool);
+			result.addView(view);
+
+			final LinearLayout.LayoutParams layoutParams
+					= (LinearLayout.LayoutParams)view.getLayoutParams();
+
+			// Recycled views keep their previous margin
+			if(lastBlock != null
+					&& !(element.getType() == BlockType.LIST_ELEMENT
+							&& lastBlock == BlockType.LIST_ELEMENT)) {
+				layoutParams.topMargin = paragraphSpacing;
+			} else {
+				layoutParams.topMargin = 0;
+			}
+
+			view.setLayoutParams(layoutParams);
+
+			lastBlock = element.getType();
+		}
+
+		General.setLayoutMatchWidthWrapHeight(result);
+
+		return result;
+	}
+
+	@Override
+	public void precomputeText(@NonNull final PrecomputedTextCompat.Params params) {
+		for(final BodyElement element : mElements) {
+			element.precomputeText(params);
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.reddit.prepared.bodytext;
+
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import org.quantumbadger.redreader.activities.BaseActivity;
+import org.quantumbadger.redreader.common.General;
+import org.quantumbadger.redreader.views.LinkifiedTextView;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.WeakHashMap;
+
+/**
+ * Views created by BodyElement.bindView(), kept when a list row is bound to another item so
+ * that they can be reused. A pool must only be used with one activity, and with the same
+ * text colour and size each time.
+ */
+public final class BodyElementViewPool {
+
+	private static final int MAX_VIEWS_PER_TYPE = 32;
+
+	private final EnumMap<BlockType, ArrayList<View>> mFreeViews
+			= new EnumMap<>(BlockType.class);
+
+	// Views which were created for this pool, so that no others are reused by mistake
+	private final WeakHashMap<View, BlockType> mViewTypes = new WeakHashMap<>();
+
+	@Nullable private PrecomputedTextCompat.Params mTextMetricsParams;
+
+	@Nullable
+	View obtain(@NonNull final BlockType type) {
+
+		General.checkThisIsUIThread();
+
+		final ArrayList<View> views = mFreeViews.get(type);
+
+		if(views == null || views.isEmpty()) {
+			return null;
+		}
+
+		return views.remove(views.size() - 1);
+	}
+
+	void register(@NonNull final View view, @NonNull final BlockType type) {
+		mViewTypes.put(view, type);
+	}
+
+	// The metrics of the text views in this pool, for use with BodyElement.precomputeText()
+	@NonNull
+	public PrecomputedTextCompat.Params getTextMetricsParams(
+			@NonNull final BaseActivity activity,
+			final float textSize) {
+
+		General.checkThisIsUIThread();
+
+		if(mTextMetricsParams == null) {
+			final LinkifiedTextView template = new LinkifiedTextView(activity);
+			template.setTextSize(textSize);
+			mTextMetricsParams = TextViewCompat.getTextMetricsParams(template);
+		}
+
+		return mTextMetricsParams;
+	}
+
+	// Removes all the children of the group, keeping those which can be reused
+	public void recycleChildren(@NonNull final ViewGroup group) {
+
+		General.checkThisIsUIThread();
+
+		for(int i = group.getChildCount() - 1; i >= 0; i--) {
+
+			final View child = group.getChildAt(i);
+			group.removeViewAt(i);
+
+			recycle(child);
+		}
+	}
+
+	private void recycle(@NonNull final View view) {
+
+		final BlockType type = mViewTypes.get(view);
+
+		if(type == null) {
+			return;
+		}
+
+		if(view instanceof ViewGroup) {
+			recycleChildren((ViewGroup)view);
+		}
+
+		ArrayList<View> views = mFreeViews.get(type);
+
+		if(views == null) {
+			views = new ArrayList<>();
+			mFreeViews.put(type, views);
+		}
+
+		if(views.size() < MAX_VIEWS_PER_TYPE) {
+			views.add(view);
+		}
+	}
+}
@@ -20,7 +20,6 @@ package org.quantumbadger.redreader.reddit.prepared.html;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import org.quantumbadger.redreader.common.StringUtils;
 import org.quantumbadger.redreader.reddit.prepared.bodytext.BlockType;
 import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElement;
 
@@ -129,7 +128,8 @@ public abstract class HtmlRawElement {
 
 			final HtmlRawElement result;
 
-			switch(StringUtils.asciiLowercase(startToken.text)) {
+			// Known tag names are always lowercase
+			switch(startToken.text) {
 				case "code":
 					result = new HtmlRawElementTagCode(children);
 					break;
@@ -21,7 +21,7 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import org.apache.commons.text.StringEscapeUtils;
+import org.apache.commons.text.translate.EntityArrays;
 import org.quantumbadger.redreader.R;
 import org.quantumbadger.redreader.common.RRError;
 import org.quantumbadger.redreader.reddit.prepared.bodytext.BlockType;
@@ -30,6 +30,8 @@ import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElementRRError;
 import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElementVerticalSequence;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 public class HtmlReader {
 
@@ -71,40 +73,66 @@ public class HtmlReader {
 		}
 	}
 
-	@NonNull private final String mHtml;
-	private int mPos = 0;
+	// Tag names are returned as one of these where possible, so that they can be matched
+	// without lowercasing them
+	private static final String[] KNOWN_TAG_NAMES = {
+			"a", "blockquote", "br", "code", "del", "div", "em", "h1", "h2", "h3", "h4", "h5",
+			"h6", "hr", "img", "li", "ol", "p", "pre", "span", "strong", "sup", "table",
+			"tbody", "td", "th", "thead", "tr", "ul"};
 
-	private boolean mPreformattedTextPending = false;
+	// Named entities, without the leading '&' and trailing ';'
+	private static final HashMap<String, String> ENTITIES = new HashMap<>(512);
 
-	public HtmlReader(@NonNull final String html) {
-		mHtml = html;
+	// Longer than any name in ENTITIES, or any numeric entity
+	private static final int MAX_ENTITY_LENGTH = 12;
+
+	static {
+		addEntities(EntityArrays.BASIC_UNESCAPE);
+		addEntities(EntityArrays.ISO8859_1_UNESCAPE);
+		addEntities(EntityArrays.HTML40_EXTENDED_UNESCAPE);
 	}
 
-	private static String normaliseWhitespace(@NonNull final String html) {
+	private static void addEntities(@NonNull final Map<CharSequence, CharSequence> entities) {
 
-		final StringBuilder result = new StringBuilder(html.length());
+		for(final Map.Entry<CharSequence, CharSequence> entry : entities.entrySet()) {
+			final String name = entry.getKey().toString();
+			ENTITIES.put(name.substring(1, name.length() - 1), entry.getValue().toString());
+		}
+	}
 
-		boolean lastCharWasWhitespace = false;
+	@NonNull private final CharSequence mHtml;
+	private final int mEnd;
+	private final boolean mEscaped;
 
-		for(int i = 0; i < html.length(); i++) {
+	private int mPos;
 
-			final char c = html.charAt(i);
+	// The number of input characters taken up by the character last returned by peek()
+	private int mPeekWidth = 1;
 
-			if(c != '\n' && c != '\r') {
-				if(isWhitespace(c)) {
-					if(!lastCharWasWhitespace) {
-						result.append(" ");
-						lastCharWasWhitespace = true;
-					}
+	private final StringBuilder mText = new StringBuilder(256);
+	private final StringBuilder mEntityName = new StringBuilder(MAX_ENTITY_LENGTH);
 
-				} else {
-					lastCharWasWhitespace = false;
-					result.append(c);
-				}
-			}
-		}
+	private boolean mPreformattedTextPending = false;
 
-		return result.toString();
+	public HtmlReader(@NonNull final String html) {
+		this(html, 0, html.length(), false);
+	}
+
+	/**
+	 * Reads the HTML between start and end. If escaped is true, the markup is itself
+	 * HTML-escaped (as in the body_html fields returned by Reddit), and is unescaped as it
+	 * is read.
+	 */
+	public HtmlReader(
+			@NonNull final CharSequence html,
+			final int start,
+			final int end,
+			final boolean escaped) {
+
+		mHtml = html;
+		mPos = start;
+		mEnd = end;
+		mEscaped = escaped;
 	}
 
 	private static boolean isWhitespace(final char c) {
@@ -128,78 +156,330 @@ public class HtmlReader {
 		}
 	}
 
-	private String readName() throws MalformedHtmlException {
+	private static boolean isEntityNameChar(final char c) {
+		return (c >= 'a' && c <= 'z')
+				|| (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9')
+				|| c == '#';
+	}
+
+	private boolean matchesAt(final int pos, @NonNull final String str) {
 
-		final StringBuilder result = new StringBuilder(16);
+		if(pos + str.length() > mEnd) {
+			return false;
+		}
+
+		for(int i = 0; i < str.length(); i++) {
+			if(mHtml.charAt(pos + i) != str.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Compares the input between start and end with a lowercase name, ignoring case
+	private boolean nameEquals(final int start, final int end, @NonNull final String name) {
+
+		if(end - start != name.length()) {
+			return false;
+		}
+
+		for(int i = 0; i < name.length(); i++) {
+
+			char c = mHtml.charAt(start + i);
+
+			if(c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+
+			if(c != name.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Returns the character at the current position, undoing the outer level of escaping
+	// if the input is escaped. Use advance() to move past it.
+	private char peek() {
+
+		if(mPos >= mEnd) {
+			throw new IndexOutOfBoundsException("Position " + mPos + " is past the end");
+		}
+
+		final char c = mHtml.charAt(mPos);
+		mPeekWidth = 1;
+
+		if(c != '&' || !mEscaped) {
+			return c;
+		}
+
+		if(matchesAt(mPos, "&lt;")) {
+			mPeekWidth = 4;
+			return '<';
+
+		} else if(matchesAt(mPos, "&gt;")) {
+			mPeekWidth = 4;
+			return '>';
+
+		} else if(matchesAt(mPos, "&amp;")) {
+			mPeekWidth = 5;
+			return '&';
+
+		} else if(matchesAt(mPos, "&quot;")) {
+			mPeekWidth = 6;
+			return '"';
+
+		} else if(matchesAt(mPos, "&#39;")) {
+			mPeekWidth = 5;
+			return '\'';
+		}
+
+		return c;
+	}
+
+	private void advance() {
+		mPos += mPeekWidth;
+	}
+
+	private boolean hasMore() {
+		return mPos < mEnd;
+	}
+
+	// Returns the position of the start of the name
+	private int skipName() throws MalformedHtmlException {
+
+		final int start = mPos;
 
 		try {
-			while(isNameChar(mHtml.charAt(mPos))) {
-				result.append(mHtml.charAt(mPos));
-				mPos++;
+			while(isNameChar(peek())) {
+				advance();
 			}
 
 		} catch(final IndexOutOfBoundsException e) {
 			throw new MalformedHtmlException(
 					"Reached EOF while reading name",
-					mHtml,
+					getHtml(),
 					mPos,
 					e);
 		}
 
-		if(result.length() == 0) {
-			throw new MalformedHtmlException("Got zero-length name", mHtml, mPos);
+		if(mPos == start) {
+			throw new MalformedHtmlException("Got zero-length name", getHtml(), mPos);
+		}
+
+		return start;
+	}
+
+	@NonNull
+	private String readTagName() throws MalformedHtmlException {
+
+		final int start = skipName();
+
+		for(final String name : KNOWN_TAG_NAMES) {
+			if(nameEquals(start, mPos, name)) {
+				return name;
+			}
+		}
+
+		return mHtml.subSequence(start, mPos).toString();
+	}
+
+	@Nullable
+	private static String decodeEntity(@NonNull final CharSequence name) {
+
+		if(name.length() < 2 || name.charAt(0) != '#') {
+			return ENTITIES.get(name.toString());
+		}
+
+		final boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+
+		try {
+			final int codePoint = Integer.parseInt(
+					name.subSequence(hex ? 2 : 1, name.length()).toString(),
+					hex ? 16 : 10);
+
+			return new String(Character.toChars(codePoint));
+
+		} catch(final IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// Called just after reading an '&'. If an entity follows, moves past it and returns
+	// its value.
+	@Nullable
+	private String tryReadEntity() {
+
+		final int start = mPos;
+		mEntityName.setLength(0);
+
+		while(hasMore() && mEntityName.length() <= MAX_ENTITY_LENGTH) {
+
+			final char c = peek();
+
+			if(c == ';') {
+
+				final String value = decodeEntity(mEntityName);
+
+				if(value != null) {
+					advance();
+					return value;
+				}
+
+				break;
+
+			} else if(!isEntityNameChar(c)) {
+				break;
+			}
+
+			mEntityName.append(c);
+			advance();
 		}
 
-		return result.toString();
+		mPos = start;
+		return null;
 	}
 
-	private String readAndUnescapeUntil(final char endChar) {
+	// Appends c to mText, collapsing whitespace and dropping newlines if required
+	private void appendText(final char c, final boolean normaliseWhitespace) {
 
-		final StringBuilder result = new StringBuilder(64);
+		if(!normaliseWhitespace) {
+			mText.append(c);
 
-		while(mPos < mHtml.length() && mHtml.charAt(mPos) != endChar) {
-			result.append(mHtml.charAt(mPos));
-			mPos++;
+		} else if(isWhitespace(c)) {
+
+			final int length = mText.length();
+
+			if(c != '\n'
+					&& c != '\r'
+					&& (length == 0 || mText.charAt(length - 1) != ' ')) {
+				mText.append(' ');
+			}
+
+		} else {
+			mText.append(c);
 		}
+	}
+
+	/**
+	 * Reads up to endChar (or the end of the input), decoding entities as they are found.
+	 * If there are none, and nothing needs to change when normalising the whitespace, the
+	 * result is taken directly from the input.
+	 */
+	@NonNull
+	private String readText(final char endChar, final boolean normaliseWhitespace) {
+
+		final int start = mPos;
+
+		// Whether mText holds the text so far, rather than it being the input up to mPos
+		boolean copied = false;
+		char lastChar = 0;
+
+		while(hasMore()) {
+
+			final int charPos = mPos;
+			final char c = peek();
+
+			if(c == endChar) {
+				break;
+			}
+
+			advance();
+
+			if(!copied) {
+
+				boolean unchanged = mPeekWidth == 1 && c != '&';
+
+				if(unchanged && normaliseWhitespace && isWhitespace(c)) {
+					unchanged = c == ' ' && lastChar != ' ';
+				}
 
-		return StringEscapeUtils.unescapeHtml4(result.toString());
+				if(unchanged) {
+					lastChar = c;
+					continue;
+				}
+
+				mText.setLength(0);
+				mText.append(mHtml, start, charPos);
+				copied = true;
+			}
+
+			if(c == '&') {
+
+				final String entity = tryReadEntity();
+
+				if(entity != null) {
+					for(int i = 0; i < entity.length(); i++) {
+						appendText(entity.charAt(i), normaliseWhitespace);
+					}
+
+					continue;
+				}
+			}
+
+			appendText(c, normaliseWhitespace);
+		}
+
+		if(copied) {
+			return mText.toString();
+
+		} else {
+			return mHtml.subSequence(start, mPos).toString();
+		}
 	}
 
 	private boolean tryAccept(final char c) {
 
-		if(mPos < mHtml.length() && mHtml.charAt(mPos) == c) {
-			mPos++;
+		if(hasMore() && peek() == c) {
+			advance();
 			return true;
 		}
 
 		return false;
 	}
 
+	private boolean tryAccept(@NonNull final String str) {
+
+		final int start = mPos;
+
+		for(int i = 0; i < str.length(); i++) {
+			if(!tryAccept(str.charAt(i))) {
+				mPos = start;
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	private void accept(final char c) throws MalformedHtmlException {
 
 		try {
-			if(mHtml.charAt(mPos) != c) {
-				throw new MalformedHtmlException("Expecting " + c, mHtml, mPos);
+			if(peek() != c) {
+				throw new MalformedHtmlException("Expecting " + c, getHtml(), mPos);
 			}
 
 		} catch(final IndexOutOfBoundsException e) {
-			throw new MalformedHtmlException("Unexpected EOF", mHtml, mPos, e);
+			throw new MalformedHtmlException("Unexpected EOF", getHtml(), mPos, e);
 		}
 
-		mPos++;
+		advance();
 	}
 
 	private void skipWhitespace() {
 
-		while(mPos < mHtml.length() && isWhitespace(mHtml.charAt(mPos))) {
-			mPos++;
+		while(hasMore() && isWhitespace(peek())) {
+			advance();
 		}
 	}
 
 	private void skipNewlines() {
 
-		while(mPos < mHtml.length() && mHtml.charAt(mPos) == '\n') {
-			mPos++;
+		while(hasMore() && peek() == '\n') {
+			advance();
 		}
 	}
 
@@ -213,62 +493,59 @@ public class HtmlReader {
 
 				skipNewlines();
 
-				if(mPos >= mHtml.length()) {
+				if(!hasMore()) {
 					// End of data
 					return Token.EOF;
 				}
 
-				if(mHtml.charAt(mPos) == '<') {
+				if(peek() == '<') {
 
-					mPos++;
+					advance();
 					skipWhitespace();
 
 					final TokenType type;
 
-					if(mHtml.charAt(mPos) == '!') {
+					if(peek() == '!') {
 
 						// Comment
-						mPos++;
+						advance();
 						accept('-');
 						accept('-');
 
 						while(true) {
 
-							if(mHtml.charAt(mPos) == '-'
-									&& mHtml.charAt(mPos + 1) == '-'
-									&& mHtml.charAt(mPos + 2) == '>') {
-
-								mPos += 3;
+							if(tryAccept("-->")) {
 								continue mainLoop;
 
 							} else {
-								mPos++;
+								peek();
+								advance();
 							}
 						}
 
 					}
 
-					if(mHtml.charAt(mPos) == '/') {
+					if(peek() == '/') {
 						type = TokenType.TAG_END;
-						mPos++;
+						advance();
 						skipWhitespace();
 
 					} else {
 						type = TokenType.TAG_START;
 					}
 
-					final String tagName = readName();
+					final String tagName = readTagName();
 					@Nullable String href = null;
 					@Nullable String cssClass = null;
 					@Nullable String title = null;
 
-					if(tagName.equalsIgnoreCase("pre")) {
+					if("pre".equals(tagName)) {
 						mPreformattedTextPending = true;
 					}
 
 					skipWhitespace();
 
-					while(mHtml.charAt(mPos) != '>') {
+					while(peek() != '>') {
 
 						if(tryAccept('/')) {
 							skipWhitespace();
@@ -281,19 +558,20 @@ public class HtmlReader {
 									title);
 						}
 
-						final String propertyName = readName();
+						final int propertyNameStart = skipName();
+						final int propertyNameEnd = mPos;
 
 						if(tryAccept('=')) {
 							accept('"');
-							final String value = readAndUnescapeUntil('"');
+							final String value = readText('"', false);
 							accept('"');
 							skipWhitespace();
 
-							if(propertyName.equalsIgnoreCase("href")) {
+							if(nameEquals(propertyNameStart, propertyNameEnd, "href")) {
 								href = value;
-							} else if(propertyName.equalsIgnoreCase("class")) {
+							} else if(nameEquals(propertyNameStart, propertyNameEnd, "class")) {
 								cssClass = value;
-							} else if(propertyName.equalsIgnoreCase("title")) {
+							} else if(nameEquals(propertyNameStart, propertyNameEnd, "title")) {
 								title = value;
 							}
 						}
@@ -309,7 +587,7 @@ public class HtmlReader {
 
 						mPreformattedTextPending = false;
 
-						String preformattedText = readAndUnescapeUntil('<');
+						String preformattedText = readText('<', false);
 
 						if(preformattedText.endsWith("\n")) {
 							preformattedText = preformattedText.substring(
@@ -328,7 +606,7 @@ public class HtmlReader {
 					// Raw text
 					return new Token(
 							TokenType.TEXT,
-							normaliseWhitespace(readAndUnescapeUntil('<')),
+							readText('<', true),
 							null,
 							null,
 							null);
@@ -336,19 +614,36 @@ public class HtmlReader {
 			}
 
 		} catch(final IndexOutOfBoundsException e) {
-			throw new MalformedHtmlException("Unexpected EOF", mHtml, mPos, e);
+			throw new MalformedHtmlException("Unexpected EOF", getHtml(), mPos, e);
 		}
 	}
 
+	@NonNull
 	public static BodyElement parse(
 			@NonNull final String html,
 			@NonNull final AppCompatActivity activity) {
 
+		return parse(new HtmlReader(html), activity);
+	}
+
+	// For HTML which is itself escaped, as in the body_html fields returned by Reddit
+	@NonNull
+	public static BodyElement parseEscaped(
+			@NonNull final String html,
+			@NonNull final AppCompatActivity activity) {
+
+		return parse(new HtmlReader(html, 0, html.length(), true), activity);
+	}
+
+	@NonNull
+	private static BodyElement parse(
+			@NonNull final HtmlReader htmlReader,
+			@NonNull final AppCompatActivity activity) {
+
 		final Context applicationContext = activity.getApplicationContext();
 
 		try {
-			final HtmlReaderPeekable reader
-					= new HtmlReaderPeekable(new HtmlReader(html));
+			final HtmlReaderPeekable reader = new HtmlReaderPeekable(htmlReader);
 
 			HtmlRawElement rootElement;
 
@@ -395,7 +690,7 @@ public class HtmlReader {
 
 	@NonNull
 	public String getHtml() {
-		return mHtml;
+		return mHtml.toString();
 	}
 
 	public int getPos() {
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.reddit.things;
+
+import androidx.annotation.NonNull;
+
+// Packs fullnames such as "t3_abc123" into a long. The type number takes the top
+// four bits, and the base 36 ID the remaining 60.
+public final class RedditIdAndType {
+
+	public static final long NOT_PACKABLE = 0;
+
+	private static final int ID_BITS = 60;
+	private static final long MAX_ID = (1L << ID_BITS) - 1;
+
+	private RedditIdAndType() {}
+
+	private static int digitValue(final char c) {
+
+		if(c >= '0' && c <= '9') {
+			return c - '0';
+
+		} else if(c >= 'a' && c <= 'z') {
+			return c - 'a' + 10;
+
+		} else {
+			return -1;
+		}
+	}
+
+	// Returns NOT_PACKABLE if the string isn't a fullname which can be unpacked back
+	// to the same string. Doesn't allocate.
+	public static long pack(@NonNull final String idAndType) {
+
+		final int length = idAndType.length();
+
+		if(length < 4
+				|| idAndType.charAt(0) != 't'
+				|| idAndType.charAt(2) != '_') {
+			return NOT_PACKABLE;
+		}
+
+		final int type = idAndType.charAt(1) - '0';
+
+		if(type < 1 || type > 9) {
+			return NOT_PACKABLE;
+		}
+
+		// Leading zeroes would be lost
+		if(idAndType.charAt(3) == '0') {
+			return NOT_PACKABLE;
+		}
+
+		long id = 0;
+
+		for(int i = 3; i < length; i++) {
+
+			final int digit = digitValue(idAndType.charAt(i));
+
+			if(digit < 0 || id > (MAX_ID - digit) / 36) {
+				return NOT_PACKABLE;
+			}
+
+			id = id * 36 + digit;
+		}
+
+		return ((long)type << ID_BITS) | id;
+	}
+
+	@NonNull
+	public static String unpack(final long packed) {
+
+		if(packed == NOT_PACKABLE) {
+			throw new IllegalArgumentException("Not a packed ID");
+		}
+
+		return "t" + (packed >>> ID_BITS) + "_" + Long.toString(packed & MAX_ID, 36);
+	}
+}
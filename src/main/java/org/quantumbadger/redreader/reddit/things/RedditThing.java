@@ -18,8 +18,14 @@
 package org.quantumbadger.redreader.reddit.things;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.quantumbadger.redreader.jsonwrap.JsonObject;
+import org.quantumbadger.redreader.jsonwrap.JsonValue;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,6 +37,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 	}
 
 	private static final Map<String, Kind> kinds;
+	private static final Map<String, Class<? extends JsonObject.JsonDeserializable>> dataClasses;
 
 	static {
 		kinds = new HashMap<>();
@@ -41,11 +48,99 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 		kinds.put("t5", Kind.SUBREDDIT);
 		kinds.put("more", Kind.MORE_COMMENTS);
 		kinds.put("Listing", Kind.LISTING);
+
+		dataClasses = new HashMap<>();
+		dataClasses.put("t1", RedditComment.class);
+		dataClasses.put("t2", RedditUser.class);
+		dataClasses.put("t3", RedditPost.class);
+		dataClasses.put("t4", RedditMessage.class);
+		dataClasses.put("t5", RedditSubreddit.class);
+		dataClasses.put("more", RedditMoreComments.class);
+	}
+
+	public interface ListingChildHandler {
+
+		// Called with the parser on the start of the child, which must be consumed
+		void onChild(@NonNull JsonParser parser) throws
+				IOException,
+				InstantiationException,
+				IllegalAccessException,
+				NoSuchMethodException,
+				InvocationTargetException;
 	}
 
 	public String kind;
 	public JsonObject data;
 
+	// Only set by parse(), in which case data is null
+	@Nullable private JsonObject.JsonDeserializable mParsedData;
+
+	/**
+	 * Reads a thing from the parser, binding its data straight into the class for
+	 * its kind rather than building a JsonObject. The handler, if any, is given the
+	 * fields of the data object first. Things of an unknown kind, or where the data
+	 * comes before the kind, fall back to a JsonObject.
+	 */
+	@NonNull
+	public static RedditThing parse(
+			@NonNull final JsonParser parser,
+			@Nullable final JsonObject.JsonStreamFieldHandler dataFieldHandler) throws
+					IOException,
+					InstantiationException,
+					IllegalAccessException,
+					NoSuchMethodException,
+					InvocationTargetException {
+
+		if(parser.currentToken() == null) {
+			parser.nextToken();
+		}
+
+		expectToken(parser, JsonToken.START_OBJECT);
+		parser.nextToken();
+
+		final RedditThing result = new RedditThing();
+
+		while(parser.currentToken() != JsonToken.END_OBJECT) {
+
+			final String fieldName = nextFieldName(parser);
+
+			if("kind".equals(fieldName)) {
+				result.kind = JsonValue.parse(parser).asString();
+
+			} else if("data".equals(fieldName)) {
+
+				final Class<? extends JsonObject.JsonDeserializable> dataClass
+						= result.kind == null ? null : dataClasses.get(result.kind);
+
+				if(dataClass == null) {
+					result.data = JsonValue.parse(parser).asObject();
+
+				} else {
+					result.mParsedData
+							= JsonObject.parseObject(parser, dataClass, dataFieldHandler);
+				}
+
+			} else {
+				skipValue(parser);
+			}
+		}
+
+		parser.nextToken();
+
+		return result;
+	}
+
+	@NonNull
+	public static RedditThing parse(@NonNull final JsonParser parser) throws
+			IOException,
+			InstantiationException,
+			IllegalAccessException,
+			NoSuchMethodException,
+			InvocationTargetException {
+
+		return parse(parser, null);
+	}
+
 	@NonNull
 	public Kind getKind() {
 
@@ -63,7 +158,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			IllegalAccessException,
 			NoSuchMethodException,
 			InvocationTargetException {
-		return data.asObject(RedditMoreComments.class);
+		return getData(RedditMoreComments.class);
 	}
 
 	public RedditComment asComment() throws
@@ -71,7 +166,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			IllegalAccessException,
 			NoSuchMethodException,
 			InvocationTargetException {
-		return data.asObject(RedditComment.class);
+		return getData(RedditComment.class);
 	}
 
 	public RedditPost asPost() throws
@@ -79,7 +174,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			IllegalAccessException,
 			NoSuchMethodException,
 			InvocationTargetException {
-		return data.asObject(RedditPost.class);
+		return getData(RedditPost.class);
 	}
 
 	public RedditSubreddit asSubreddit() throws
@@ -87,7 +182,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			IllegalAccessException,
 			NoSuchMethodException,
 			InvocationTargetException {
-		return data.asObject(RedditSubreddit.class);
+		return getData(RedditSubreddit.class);
 	}
 
 	public RedditUser asUser() throws
@@ -95,7 +190,7 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			IllegalAccessException,
 			NoSuchMethodException,
 			InvocationTargetException {
-		return data.asObject(RedditUser.class);
+		return getData(RedditUser.class);
 	}
 
 	public RedditMessage asMessage() throws
@@ -103,6 +198,114 @@ public final class RedditThing implements JsonObject.JsonDeserializable {
 			InstantiationException,
 			InvocationTargetException,
 			NoSuchMethodException {
-		return data.asObject(RedditMessage.class);
+		return getData(RedditMessage.class);
+	}
+
+	/**
+	 * Reads a Listing thing from the parser, passing each element of data.children
+	 * to the handler as it is reached. Other fields are skipped. Returns false if
+	 * the listing had no children array.
+	 */
+	public static boolean parseListing(
+			@NonNull final JsonParser parser,
+			@NonNull final ListingChildHandler handler) throws
+					IOException,
+					InstantiationException,
+					IllegalAccessException,
+					NoSuchMethodException,
+					InvocationTargetException {
+
+		if(parser.currentToken() == null) {
+			parser.nextToken();
+		}
+
+		boolean foundChildren = false;
+
+		expectToken(parser, JsonToken.START_OBJECT);
+		parser.nextToken();
+
+		while(parser.currentToken() != JsonToken.END_OBJECT) {
+
+			final String thingField = nextFieldName(parser);
+
+			if(!"data".equals(thingField)) {
+				skipValue(parser);
+				continue;
+			}
+
+			expectToken(parser, JsonToken.START_OBJECT);
+			parser.nextToken();
+
+			while(parser.currentToken() != JsonToken.END_OBJECT) {
+
+				final String listingField = nextFieldName(parser);
+
+				if(!"children".equals(listingField)) {
+					skipValue(parser);
+					continue;
+				}
+
+				expectToken(parser, JsonToken.START_ARRAY);
+				parser.nextToken();
+
+				while(parser.currentToken() != JsonToken.END_ARRAY) {
+					handler.onChild(parser);
+				}
+
+				parser.nextToken();
+				foundChildren = true;
+			}
+
+			parser.nextToken();
+		}
+
+		parser.nextToken();
+
+		return foundChildren;
+	}
+
+	private static void expectToken(
+			@NonNull final JsonParser parser,
+			@NonNull final JsonToken expected) throws IOException {
+
+		if(parser.currentToken() != expected) {
+			throw new JsonParseException(
+					parser,
+					"Expecting " + expected + ", got " + parser.currentToken(),
+					parser.getCurrentLocation());
+		}
+	}
+
+	// Returns the field name, and leaves the parser positioned on its value
+	@NonNull
+	private static String nextFieldName(@NonNull final JsonParser parser) throws IOException {
+		expectToken(parser, JsonToken.FIELD_NAME);
+		final String name = parser.getCurrentName();
+		parser.nextToken();
+		return name;
+	}
+
+	private static void skipValue(@NonNull final JsonParser parser) throws IOException {
+		parser.skipChildren();
+		parser.nextToken();
+	}
+
+	private <E extends JsonObject.JsonDeserializable> E getData(final Class<E> clazz) throws
+			InstantiationException,
+			IllegalAccessException,
+			NoSuchMethodException,
+			InvocationTargetException {
+
+		if(mParsedData != null) {
+
+			if(!clazz.isInstance(mParsedData)) {
+				throw new RuntimeException("Thing of type " + kind
+						+ " is not a " + clazz.getSimpleName());
+			}
+
+			return clazz.cast(mParsedData);
+		}
+
+		return data.asObject(clazz);
 	}
 }
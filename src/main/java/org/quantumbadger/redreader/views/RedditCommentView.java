@@ -26,11 +26,15 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
 import org.quantumbadger.redreader.R;
 import org.quantumbadger.redreader.account.RedditAccountManager;
 import org.quantumbadger.redreader.activities.BaseActivity;
+import org.quantumbadger.redreader.common.AndroidCommon;
+import org.quantumbadger.redreader.common.Constants;
 import org.quantumbadger.redreader.common.General;
 import org.quantumbadger.redreader.common.PrefsUtility;
+import org.quantumbadger.redreader.common.Priority;
 import org.quantumbadger.redreader.common.RRThemeAttributes;
 import org.quantumbadger.redreader.fragments.CommentListingFragment;
 import org.quantumbadger.redreader.reddit.RedditCommentListItem;
@@ -38,11 +42,14 @@ import org.quantumbadger.redreader.reddit.api.RedditAPICommentAction;
 import org.quantumbadger.redreader.reddit.prepared.RedditChangeDataManager;
 import org.quantumbadger.redreader.reddit.prepared.RedditParsedComment;
 import org.quantumbadger.redreader.reddit.prepared.RedditRenderableComment;
+import org.quantumbadger.redreader.reddit.prepared.bodytext.BodyElementViewPool;
 
 
 public class RedditCommentView extends FlingableItemView
 		implements RedditChangeDataManager.Listener {
 
+	public static final float BODY_TEXT_SIZE = 13.0f;
+
 	private RedditCommentListItem mComment;
 
 	private final BaseActivity mActivity;
@@ -64,6 +71,10 @@ public class RedditCommentView extends FlingableItemView
 	@Nullable
 	private final CommentListingFragment mFragment;
 
+	// The comment whose body this view is waiting for, and the callback it is waiting with
+	@Nullable private RedditParsedComment mPendingBodyComment;
+	@Nullable private Runnable mPendingBodyCallback;
+
 	@Nullable private ActionDescriptionPair mLeftFlingAction;
 	@Nullable private ActionDescriptionPair mRightFlingAction;
 
@@ -387,12 +398,90 @@ public class RedditCommentView extends FlingableItemView
 				.getRawComment().author.equalsIgnoreCase(
 						"autowikibot");
 
-		mBodyHolder.removeAllViews();
-		final View commentBody = comment.asComment().getBody(
-				activity,
-				mTheme.rrCommentBodyCol,
-				13.0f * mBodyFontScale,
-				mShowLinkButtons && !hideLinkButtons);
+		final BodyElementViewPool bodyViewPool
+				= mFragment != null ? mFragment.getBodyViewPool() : null;
+
+		if(bodyViewPool != null) {
+			bodyViewPool.recycleChildren(mBodyHolder);
+		} else {
+			mBodyHolder.removeAllViews();
+		}
+
+		final RedditParsedComment parsedComment = comment.asComment().getParsedComment();
+		final View commentBody;
+
+		final PrecomputedTextCompat.Params bodyTextParams
+				= mFragment != null ? mFragment.getBodyTextMetricsParams() : null;
+
+		if(mPendingBodyComment != null && mPendingBodyComment != parsedComment) {
+			clearPendingBodyCallback();
+		}
+
+		if(parsedComment.isBodyPrepared() && bodyViewPool != null) {
+			commentBody = parsedComment.getBody().bindView(
+					activity,
+					mTheme.rrCommentBodyCol,
+					BODY_TEXT_SIZE * mBodyFontScale,
+					mShowLinkButtons && !hideLinkButtons,
+					bodyViewPool);
+
+			// Too late for this bind, but ready for the next time the row is shown
+			if(bodyTextParams != null && !parsedComment.isTextPrecomputed(bodyTextParams)) {
+				parsedComment.prepareBodyInBackground(
+						new Priority(Constants.Priority.COMMENT_BODY_PRECACHE),
+						bodyTextParams,
+						null);
+			}
+
+		} else if(parsedComment.isBodyPrepared()) {
+			commentBody = comment.asComment().getBody(
+					activity,
+					mTheme.rrCommentBodyCol,
+					BODY_TEXT_SIZE * mBodyFontScale,
+					mShowLinkButtons && !hideLinkButtons);
+
+		} else {
+			// The unformatted text is shown until the body is ready
+			final TextView placeholder = new TextView(activity);
+			placeholder.setText(parsedComment.getRawComment().body);
+			placeholder.setTextColor(mTheme.rrCommentBodyCol);
+			placeholder.setTextSize(BODY_TEXT_SIZE * mBodyFontScale);
+			commentBody = placeholder;
+
+			// Only one callback per view, however many times the row is bound meanwhile
+			if(mPendingBodyCallback == null) {
+
+				final Runnable onPrepared = new Runnable() {
+					@Override
+					public void run() {
+
+						final Runnable callback = this;
+
+						AndroidCommon.runOnUiThread(() -> {
+
+							if(mPendingBodyCallback != callback) {
+								return;
+							}
+
+							mPendingBodyComment = null;
+							mPendingBodyCallback = null;
+
+							if(mComment == comment) {
+								reset(activity, comment, true);
+							}
+						});
+					}
+				};
+
+				mPendingBodyComment = parsedComment;
+				mPendingBodyCallback = onPrepared;
+
+				parsedComment.prepareBodyInBackground(
+						new Priority(Constants.Priority.COMMENT_BODY_VISIBLE),
+						bodyTextParams,
+						onPrepared);
+			}
+		}
 
 		mBodyHolder.addView(commentBody);
 		General.setLayoutMatchWidthWrapHeight(commentBody);
@@ -445,6 +534,16 @@ public class RedditCommentView extends FlingableItemView
 		}
 	}
 
+	private void clearPendingBodyCallback() {
+
+		if(mPendingBodyComment != null && mPendingBodyCallback != null) {
+			mPendingBodyComment.removeOnBodyPrepared(mPendingBodyCallback);
+		}
+
+		mPendingBodyComment = null;
+		mPendingBodyCallback = null;
+	}
+
 	public RedditCommentListItem getComment() {
 		return mComment;
 	}
@@ -101,6 +101,8 @@ public final class RedditPostView extends FlingableItemView
 
 	private int mUsageId = 0;
 
+	@Nullable private CacheRequest mInlinePreviewRequest;
+
 	private final Handler thumbnailHandler;
 
 	private final BaseActivity mActivity;
@@ -457,10 +459,24 @@ public final class RedditPostView extends FlingableItemView
 		mThumbnailSizePrefPixels = (int)(dpScale * PrefsUtility.images_thumbnail_size_dp());
 	}
 
+	@Nullable
+	public RedditPreparedPost getPost() {
+		return mPost;
+	}
+
 	@UiThread
 	public void reset(@NonNull final RedditPreparedPost newPost) {
 
-		if(newPost != mPost) {
+		// The preview may have been cancelled while this view was off screen
+		final boolean inlinePreviewCancelled = mInlinePreviewRequest != null
+				&& mInlinePreviewRequest.isCancelled();
+
+		if(newPost != mPost || inlinePreviewCancelled) {
+
+			if(mInlinePreviewRequest != null) {
+				mInlinePreviewRequest.cancel();
+				mInlinePreviewRequest = null;
+			}
 
 			mThumbnailView.setImageBitmap(null);
 			mImagePreviewImageView.setImageBitmap(null);
@@ -641,14 +657,14 @@ public final class RedditPostView extends FlingableItemView
 		mImagePreviewLoadingSpinner.setVisibility(VISIBLE);
 		setBottomMargin(true);
 
-		CacheManager.getInstance(mActivity).makeRequest(new CacheRequest(
+		mInlinePreviewRequest = new CacheRequest(
 				General.uriFromString(preview.url),
 				RedditAccountManager.getAnon(),
 				null,
-				new Priority(Constants.Priority.INLINE_IMAGE_PREVIEW),
+				new Priority(Constants.Priority.INLINE_IMAGE_PREVIEW, post.getListId()),
 				DownloadStrategyIfNotCached.INSTANCE,
 				Constants.FileType.INLINE_IMAGE_PREVIEW,
-				CacheRequest.DOWNLOAD_QUEUE_IMMEDIATE,
+				CacheRequest.DOWNLOAD_QUEUE_IMAGE_PRECACHE,
 				mActivity,
 				new CacheRequestCallbacks() {
 					@Override
@@ -723,6 +739,10 @@ public final class RedditPostView extends FlingableItemView
 							@Nullable final String readableMessage,
 							@NonNull final Optional<FailedRequestBody> body) {
 
+						if(type == CacheRequest.REQUEST_FAILURE_CANCELLED) {
+							return;
+						}
+
 						Log.e(TAG, "Failed to download image preview", t);
 
 						if(usageId != mUsageId) {
@@ -754,8 +774,10 @@ public final class RedditPostView extends FlingableItemView
 							General.setLayoutMatchWidthWrapHeight(errorView);
 						});
 					}
-				}
-		));
+				});
+
+		CacheManager.getInstance(mActivity).makeRequest(mInlinePreviewRequest);
+		post.scheduleRequest(mInlinePreviewRequest);
 	}
 
 	private void showPrefPrompt() {
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.views;
+
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+import org.quantumbadger.redreader.cache.CacheRequest;
+import org.quantumbadger.redreader.common.Constants;
+import org.quantumbadger.redreader.common.Priority;
+import org.quantumbadger.redreader.reddit.prepared.RedditPreparedPost;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+// Adjusts the downloads belonging to rows of a post list as it scrolls. Requests keep their
+// original priority while their row is visible (or nearly so), are demoted while it is off
+// screen, and are cancelled once it is far away.
+public final class ViewportRequestScheduler extends RecyclerView.OnScrollListener {
+
+	// Rows this close to the visible window are treated as visible
+	private static final int VISIBLE_MARGIN = 5;
+
+	// Rows further than this from the visible window have their requests cancelled
+	private static final int CANCEL_DISTANCE = 50;
+
+	private static final class Entry {
+
+		private final int mListIndex;
+		@NonNull private final CacheRequest mRequest;
+		@NonNull private final Priority mBasePriority;
+
+		private Entry(final int listIndex, @NonNull final CacheRequest request) {
+			mListIndex = listIndex;
+			mRequest = request;
+			mBasePriority = request.getPriority();
+		}
+	}
+
+	private final ArrayList<Entry> mEntries = new ArrayList<>();
+
+	// Unknown until the list is first laid out
+	private boolean mHasVisibleRange = false;
+	private int mFirstVisible;
+	private int mLastVisible;
+
+	public synchronized void add(final int listIndex, @NonNull final CacheRequest request) {
+
+		if(request.isFinished()) {
+			return;
+		}
+
+		final Entry entry = new Entry(listIndex, request);
+
+		if(update(entry)) {
+			mEntries.add(entry);
+		}
+	}
+
+	@Override
+	public void onScrolled(
+			@NonNull final RecyclerView recyclerView,
+			final int dx,
+			final int dy) {
+
+		int first = Integer.MAX_VALUE;
+		int last = Integer.MIN_VALUE;
+
+		for(int i = 0; i < recyclerView.getChildCount(); i++) {
+
+			final View child = recyclerView.getChildAt(i);
+
+			if(!(child instanceof RedditPostView)) {
+				continue;
+			}
+
+			final RedditPreparedPost post = ((RedditPostView)child).getPost();
+
+			if(post != null) {
+				first = Math.min(first, post.getListId());
+				last = Math.max(last, post.getListId());
+			}
+		}
+
+		if(first <= last) {
+			setVisibleRange(first, last);
+		}
+	}
+
+	public synchronized void setVisibleRange(final int first, final int last) {
+
+		if(mHasVisibleRange && first == mFirstVisible && last == mLastVisible) {
+			return;
+		}
+
+		mHasVisibleRange = true;
+		mFirstVisible = first;
+		mLastVisible = last;
+
+		final Iterator<Entry> iterator = mEntries.iterator();
+
+		while(iterator.hasNext()) {
+			if(!update(iterator.next())) {
+				iterator.remove();
+			}
+		}
+	}
+
+	// Returns false if the request has finished or been cancelled, and need not be tracked
+	// any more
+	private boolean update(@NonNull final Entry entry) {
+
+		if(!mHasVisibleRange) {
+			return true;
+		}
+
+		if(entry.mRequest.isFinished()) {
+			return false;
+		}
+
+		final int distance = Math.max(
+				0,
+				Math.max(mFirstVisible - entry.mListIndex, entry.mListIndex - mLastVisible));
+
+		final Priority priority = getPriority(entry.mBasePriority, distance);
+
+		if(priority == null) {
+			entry.mRequest.cancel();
+			return false;
+		}
+
+		entry.mRequest.setPriority(priority);
+		return true;
+	}
+
+	@Nullable
+	private static Priority getPriority(
+			@NonNull final Priority basePriority,
+			final int distance) {
+
+		if(distance <= VISIBLE_MARGIN) {
+			return basePriority;
+
+		} else if(distance <= CANCEL_DISTANCE) {
+			return new Priority(Constants.Priority.OFFSCREEN, distance);
+
+		} else {
+			return null;
+		}
+	}
+}
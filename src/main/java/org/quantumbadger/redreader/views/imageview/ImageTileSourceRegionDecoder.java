@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.views.imageview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import org.quantumbadger.redreader.common.General;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes each tile from the compressed image as it is needed, so that the full resolution
+ * image never has to fit in memory. A low resolution copy of the whole image is decoded
+ * up front, and tiles at that sample size or coarser are cut from it.
+ */
+public class ImageTileSourceRegionDecoder implements ImageTileSource {
+
+	private static final String TAG = "ImageTileSourceRegion";
+
+	private static final int TILE_SIZE = 512;
+
+	// Largest size of the preview, in pixels (8 MB at ARGB_8888)
+	private static final int PREVIEW_MAX_PIXELS = 2 * 1024 * 1024;
+
+	private final BitmapRegionDecoder mDecoder;
+
+	private final int mWidth;
+	private final int mHeight;
+
+	private final Bitmap mPreview;
+	private final int mPreviewSampleSize;
+
+	private final Object mLock = new Object();
+	private boolean mDisposed = false;
+
+	private ImageTileSourceRegionDecoder(@NonNull final BitmapRegionDecoder decoder) {
+
+		mDecoder = decoder;
+		mWidth = decoder.getWidth();
+		mHeight = decoder.getHeight();
+
+		mPreviewSampleSize = choosePreviewSampleSize(mWidth, mHeight);
+		mPreview = decodeRegion(new Rect(0, 0, mWidth, mHeight), mPreviewSampleSize);
+	}
+
+	// Returns null if the image is in a format which can't be decoded by region
+	@Nullable
+	public static ImageTileSourceRegionDecoder create(@NonNull final InputStream is) {
+
+		final BitmapRegionDecoder decoder;
+
+		try {
+			decoder = BitmapRegionDecoder.newInstance(is, false);
+
+		} catch(final IOException e) {
+			Log.i(TAG, "Region decoding not supported for image", e);
+			return null;
+		}
+
+		if(decoder == null) {
+			return null;
+		}
+
+		try {
+			return new ImageTileSourceRegionDecoder(decoder);
+
+		} catch(final RuntimeException e) {
+			decoder.recycle();
+			throw e;
+		}
+	}
+
+	private static int choosePreviewSampleSize(final int width, final int height) {
+
+		int result = 1;
+
+		while((long)General.divideCeil(width, result) * General.divideCeil(height, result)
+				> PREVIEW_MAX_PIXELS) {
+			result *= 2;
+		}
+
+		return result;
+	}
+
+	@NonNull
+	private Bitmap decodeRegion(@NonNull final Rect region, final int sampleSize) {
+
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+
+		final Bitmap result = mDecoder.decodeRegion(region, options);
+
+		if(result == null) {
+			throw new RuntimeException("Failed to decode region " + region);
+		}
+
+		return result;
+	}
+
+	@Override
+	public int getWidth() {
+		return mWidth;
+	}
+
+	@Override
+	public int getHeight() {
+		return mHeight;
+	}
+
+	@Override
+	public int getTileSize() {
+		return TILE_SIZE;
+	}
+
+	@Override
+	public int getHTileCount() {
+		return General.divideCeil(getWidth(), TILE_SIZE);
+	}
+
+	@Override
+	public int getVTileCount() {
+		return General.divideCeil(getHeight(), TILE_SIZE);
+	}
+
+	@Override
+	public Bitmap getTile(final int sampleSize, final int tileX, final int tileY) {
+
+		final int tileStartX = tileX * TILE_SIZE;
+		final int tileStartY = tileY * TILE_SIZE;
+		final int tileEndX = Math.min(mWidth, (tileX + 1) * TILE_SIZE);
+		final int tileEndY = Math.min(mHeight, (tileY + 1) * TILE_SIZE);
+
+		synchronized(mLock) {
+
+			if(mDisposed) {
+				return null;
+			}
+
+			if(sampleSize < mPreviewSampleSize) {
+				return decodeRegion(
+						new Rect(tileStartX, tileStartY, tileEndX, tileEndY),
+						sampleSize);
+			}
+
+			return getTileFromPreview(sampleSize, tileStartX, tileStartY, tileEndX, tileEndY);
+		}
+	}
+
+	@NonNull
+	private Bitmap getTileFromPreview(
+			final int sampleSize,
+			final int tileStartX,
+			final int tileStartY,
+			final int tileEndX,
+			final int tileEndY) {
+
+		final int previewStartX = tileStartX / mPreviewSampleSize;
+		final int previewStartY = tileStartY / mPreviewSampleSize;
+		final int previewEndX = Math.min(
+				mPreview.getWidth(),
+				General.divideCeil(tileEndX, mPreviewSampleSize));
+		final int previewEndY = Math.min(
+				mPreview.getHeight(),
+				General.divideCeil(tileEndY, mPreviewSampleSize));
+
+		final Bitmap result;
+
+		if(sampleSize == mPreviewSampleSize) {
+			result = Bitmap.createBitmap(
+					mPreview,
+					previewStartX,
+					previewStartY,
+					previewEndX - previewStartX,
+					previewEndY - previewStartY);
+
+		} else {
+			final float scale = (float)mPreviewSampleSize / sampleSize;
+
+			final Matrix scaleMatrix = new Matrix();
+			scaleMatrix.setScale(scale, scale);
+
+			result = Bitmap.createBitmap(
+					mPreview,
+					previewStartX,
+					previewStartY,
+					previewEndX - previewStartX,
+					previewEndY - previewStartY,
+					scaleMatrix,
+					true);
+		}
+
+		// The tile loader recycles tiles which are no longer needed
+		if(result == mPreview) {
+			return mPreview.copy(mPreview.getConfig(), false);
+		}
+
+		return result;
+	}
+
+	@Override
+	public void dispose() {
+
+		synchronized(mLock) {
+
+			if(mDisposed) {
+				return;
+			}
+
+			mDisposed = true;
+			mDecoder.recycle();
+			mPreview.recycle();
+		}
+	}
+}
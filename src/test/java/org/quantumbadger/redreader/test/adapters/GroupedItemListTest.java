@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.adapters;
+
+import android.view.ViewGroup;
+import androidx.recyclerview.widget.RecyclerView;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.adapters.GroupedItemList;
+import org.quantumbadger.redreader.adapters.GroupedRecyclerViewAdapter;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class GroupedItemListTest {
+
+	private static final class TestItem extends GroupedRecyclerViewAdapter.Item {
+
+		private boolean mHidden = false;
+
+		// What the list should currently be showing
+		private boolean mShown = true;
+
+		@Override
+		public Class getViewType() {
+			return TestItem.class;
+		}
+
+		@Override
+		public RecyclerView.ViewHolder onCreateViewHolder(final ViewGroup viewGroup) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onBindViewHolder(final RecyclerView.ViewHolder viewHolder) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isHidden() {
+			return mHidden;
+		}
+	}
+
+	// Replays the notifications onto a copy of the visible list. Inserted positions
+	// hold null until they are checked against the list.
+	private static final class MirrorObserver implements GroupedItemList.Listener {
+
+		private final ArrayList<GroupedRecyclerViewAdapter.Item> mMirror = new ArrayList<>();
+
+		private int mNotifications = 0;
+
+		@Override
+		public void onItemRangeInserted(final int positionStart, final int itemCount) {
+
+			mNotifications++;
+
+			for(int i = 0; i < itemCount; i++) {
+				mMirror.add(positionStart, null);
+			}
+		}
+
+		@Override
+		public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+
+			mNotifications++;
+
+			for(int i = 0; i < itemCount; i++) {
+				mMirror.remove(positionStart);
+			}
+		}
+	}
+
+	private final MirrorObserver mObserver = new MirrorObserver();
+	private final GroupedItemList mList = new GroupedItemList(3, mObserver);
+
+	@SuppressWarnings("unchecked")
+	private final ArrayList<TestItem>[] mModel = new ArrayList[] {
+			new ArrayList<TestItem>(),
+			new ArrayList<TestItem>(),
+			new ArrayList<TestItem>()};
+
+	private void checkConsistent() {
+
+		final ArrayList<TestItem> expected = new ArrayList<>();
+
+		for(final ArrayList<TestItem> group : mModel) {
+			for(final TestItem item : group) {
+				if(item.mShown) {
+					expected.add(item);
+				}
+			}
+		}
+
+		Assert.assertEquals(expected.size(), mList.getItemCount());
+		Assert.assertEquals(expected.size(), mObserver.mMirror.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+
+			Assert.assertSame(expected.get(i), mList.getItem(i));
+
+			if(mObserver.mMirror.get(i) == null) {
+				mObserver.mMirror.set(i, expected.get(i));
+			} else {
+				Assert.assertSame(expected.get(i), mObserver.mMirror.get(i));
+			}
+		}
+
+		int position = 0;
+
+		for(int groupId = 0; groupId < mModel.length; groupId++) {
+			for(final TestItem item : mModel[groupId]) {
+				if(item.mShown) {
+					Assert.assertEquals(position, mList.getItemPosition(groupId, item));
+					position++;
+				}
+			}
+		}
+	}
+
+	private void append(final int groupId, final TestItem item) {
+		mModel[groupId].add(item);
+		mList.appendToGroup(groupId, item);
+	}
+
+	private void updateHiddenStatus() {
+
+		for(final ArrayList<TestItem> group : mModel) {
+			for(final TestItem item : group) {
+				item.mShown = !item.mHidden;
+			}
+		}
+
+		mList.updateHiddenStatus();
+	}
+
+	private void updateHiddenStatus(final int groupId, final int start, final int count) {
+
+		for(int i = start; i < start + count; i++) {
+			final TestItem item = mModel[groupId].get(i);
+			item.mShown = !item.mHidden;
+		}
+
+		mList.updateHiddenStatus(groupId, mModel[groupId].get(start), count);
+	}
+
+	@Test
+	public void testRandomOperations() {
+
+		final Random random = new Random(1234);
+
+		for(int step = 0; step < 2000; step++) {
+
+			final int groupId = random.nextInt(mModel.length);
+			final ArrayList<TestItem> group = mModel[groupId];
+
+			switch(random.nextInt(6)) {
+
+				case 0:
+				case 1:
+					append(groupId, new TestItem());
+					break;
+
+				case 2: {
+					final ArrayList<GroupedRecyclerViewAdapter.Item> items = new ArrayList<>();
+					final int count = random.nextInt(20);
+
+					for(int i = 0; i < count; i++) {
+						final TestItem item = new TestItem();
+						items.add(item);
+						group.add(item);
+					}
+
+					mList.appendToGroup(groupId, items);
+					break;
+				}
+
+				case 3:
+					if(!group.isEmpty()) {
+						final TestItem item = group.remove(random.nextInt(group.size()));
+						mList.removeFromGroup(groupId, item);
+					}
+					break;
+
+				case 4:
+					if(random.nextInt(20) == 0) {
+						group.clear();
+						mList.removeAllFromGroup(groupId);
+					}
+					break;
+
+				case 5:
+					for(final ArrayList<TestItem> g : mModel) {
+						for(final TestItem item : g) {
+							if(random.nextInt(4) == 0) {
+								item.mHidden = !item.mHidden;
+							}
+						}
+					}
+
+					updateHiddenStatus();
+					break;
+			}
+
+			checkConsistent();
+		}
+	}
+
+	@Test
+	public void testHiddenRangesCoalesced() {
+
+		final ArrayList<TestItem> items = new ArrayList<>();
+
+		for(int i = 0; i < 300; i++) {
+			final TestItem item = new TestItem();
+			items.add(item);
+			append(1, item);
+		}
+
+		checkConsistent();
+
+		// Two separate blocks, with hidden items interleaved in the second
+		for(int i = 10; i < 110; i++) {
+			items.get(i).mHidden = true;
+		}
+
+		for(int i = 150; i < 250; i += 2) {
+			items.get(i).mHidden = true;
+		}
+
+		updateHiddenStatus();
+		checkConsistent();
+
+		for(int i = 151; i < 250; i += 2) {
+			items.get(i).mHidden = true;
+		}
+
+		mObserver.mNotifications = 0;
+		updateHiddenStatus();
+		checkConsistent();
+
+		// The already-hidden items in between don't split the range
+		Assert.assertEquals(1, mObserver.mNotifications);
+
+		for(final TestItem item : items) {
+			item.mHidden = false;
+		}
+
+		mObserver.mNotifications = 0;
+		updateHiddenStatus();
+		checkConsistent();
+		Assert.assertEquals(2, mObserver.mNotifications);
+	}
+
+	@Test
+	public void testSubtreeUpdate() {
+
+		for(int i = 0; i < 20; i++) {
+			append(0, new TestItem());
+		}
+
+		for(int i = 0; i < 100; i++) {
+			append(1, new TestItem());
+		}
+
+		checkConsistent();
+
+		// Changes outside the range are left for a later update
+		for(int i = 40; i < 60; i++) {
+			mModel[1].get(i).mHidden = true;
+		}
+
+		mModel[1].get(10).mHidden = true;
+
+		mObserver.mNotifications = 0;
+		updateHiddenStatus(1, 40, 20);
+		checkConsistent();
+		Assert.assertEquals(1, mObserver.mNotifications);
+
+		mModel[1].get(10).mShown = false;
+		mList.updateHiddenStatus();
+		checkConsistent();
+
+		for(int i = 40; i < 60; i++) {
+			mModel[1].get(i).mHidden = false;
+		}
+
+		mObserver.mNotifications = 0;
+		updateHiddenStatus(1, 40, 20);
+		checkConsistent();
+		Assert.assertEquals(1, mObserver.mNotifications);
+	}
+
+	@Test
+	public void testRemoveAll() {
+
+		for(int i = 0; i < 50; i++) {
+			append(0, new TestItem());
+			append(2, new TestItem());
+		}
+
+		mObserver.mNotifications = 0;
+
+		mModel[0].clear();
+		mList.removeAllFromGroup(0);
+
+		checkConsistent();
+		Assert.assertEquals(1, mObserver.mNotifications);
+	}
+}
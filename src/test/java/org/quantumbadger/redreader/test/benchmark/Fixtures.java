@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.benchmark;
+
+import org.quantumbadger.redreader.common.General;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class Fixtures {
+
+	public static final String POST_LISTING = "post_listing.json";
+	public static final String COMMENT_LISTING = "comment_listing.json";
+
+	private Fixtures() {}
+
+	public static byte[] load(final String name) throws IOException {
+
+		try(InputStream is = Fixtures.class.getClassLoader()
+				.getResourceAsStream("fixtures/" + name)) {
+
+			if(is == null) {
+				throw new IOException("Fixture not found: " + name);
+			}
+
+			return General.readWholeStream(is);
+		}
+	}
+}
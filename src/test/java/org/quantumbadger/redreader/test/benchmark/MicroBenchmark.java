@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.benchmark;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * A small JMH-style harness for comparing implementations from unit tests: each
+ * case is warmed up, then timed over several measurement iterations, and the
+ * best iteration is reported in nanoseconds per operation. Where the JVM can
+ * count per-thread allocations, bytes allocated per operation are reported too.
+ *
+ * Benchmarks are slow, and their timings are only meaningful on an otherwise idle
+ * machine, so they are skipped unless enabled:
+ *
+ *   ./gradlew test -Dredreader.benchmark=true
+ */
+public final class MicroBenchmark {
+
+	public static final String ENABLED_PROPERTY = "redreader.benchmark";
+
+	// Call at the start of each benchmark test, so that it's skipped unless enabled
+	public static void assumeEnabled() {
+		Assume.assumeTrue(
+				"Benchmarks are disabled, see MicroBenchmark",
+				Boolean.getBoolean(ENABLED_PROPERTY));
+	}
+
+	public interface Operation {
+		// Returns a value derived from the work done, so that it can't be optimised away
+		Object run() throws Exception;
+	}
+
+	private final String mName;
+	private final int mWarmupIterations;
+	private final int mMeasurementIterations;
+	private final int mOperationsPerIteration;
+
+	private final StringBuilder mReport = new StringBuilder();
+
+	@SuppressWarnings("unused") private volatile Object mSink;
+
+	private long mLastIterationBytes;
+
+	public MicroBenchmark(
+			final String name,
+			final int warmupIterations,
+			final int measurementIterations,
+			final int operationsPerIteration) {
+
+		mName = name;
+		mWarmupIterations = warmupIterations;
+		mMeasurementIterations = measurementIterations;
+		mOperationsPerIteration = operationsPerIteration;
+	}
+
+	public double measure(final String caseName, final Operation operation) throws Exception {
+
+		for(int i = 0; i < mWarmupIterations; i++) {
+			runIteration(operation);
+		}
+
+		long best = Long.MAX_VALUE;
+		long leastBytes = Long.MAX_VALUE;
+
+		for(int i = 0; i < mMeasurementIterations; i++) {
+			best = Math.min(best, runIteration(operation));
+			leastBytes = Math.min(leastBytes, mLastIterationBytes);
+		}
+
+		final double nsPerOp = (double)best / mOperationsPerIteration;
+
+		mReport.append(String.format(
+				Locale.US,
+				"%s / %s: %.1f ns/op",
+				mName,
+				caseName,
+				nsPerOp));
+
+		if(leastBytes >= 0) {
+			mReport.append(String.format(
+					Locale.US,
+					", %d bytes/op",
+					leastBytes / mOperationsPerIteration));
+		}
+
+		mReport.append(String.format("%n"));
+
+		return nsPerOp;
+	}
+
+	private long runIteration(final Operation operation) throws Exception {
+
+		final long startBytes = allocatedBytes();
+		final long start = System.nanoTime();
+
+		for(int i = 0; i < mOperationsPerIteration; i++) {
+			mSink = operation.run();
+		}
+
+		final long result = System.nanoTime() - start;
+		final long endBytes = allocatedBytes();
+
+		mLastIterationBytes = (startBytes < 0 || endBytes < 0) ? -1 : endBytes - startBytes;
+
+		return result;
+	}
+
+	// Returns -1 if the JVM doesn't support it
+	private static long allocatedBytes() {
+
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+
+		return -1;
+	}
+
+	public void printReport() {
+		System.out.print(mReport);
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.cache;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.cache.CacheCompressionDictionaries;
+import org.quantumbadger.redreader.common.Constants;
+import org.quantumbadger.redreader.common.General;
+import org.quantumbadger.redreader.common.datastream.SeekableZstdFileInputStream;
+import org.quantumbadger.redreader.test.benchmark.Fixtures;
+import org.quantumbadger.redreader.test.benchmark.MicroBenchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+public class CacheCompressionDictionariesTest {
+
+	// Unit tests run from the module directory
+	private final CacheCompressionDictionaries mDictionaries
+			= new CacheCompressionDictionaries(filename -> new FileInputStream(
+					new File("assets", filename)));
+
+	private File compress(final byte[] data, final int fileType) throws IOException {
+
+		final File file = File.createTempFile("rr_dict_test", ".zst");
+		file.deleteOnExit();
+
+		try(ZstdOutputStream os = new ZstdOutputStream(
+				new FileOutputStream(file),
+				CacheCompressionDictionaries.COMPRESSION_LEVEL)) {
+
+			if(fileType != Constants.FileType.NOCACHE) {
+				os.setDict(mDictionaries.getForCompression(fileType));
+			}
+
+			os.write(data);
+		}
+
+		return file;
+	}
+
+	@Test
+	public void testPostListingDictionary() throws Exception {
+
+		final byte[] data = Fixtures.load(Fixtures.POST_LISTING);
+
+		Assert.assertNotNull(mDictionaries.getForCompression(Constants.FileType.POST_LIST));
+
+		final File plain = compress(data, Constants.FileType.NOCACHE);
+		final File withDictionary = compress(data, Constants.FileType.POST_LIST);
+
+		Assert.assertTrue(withDictionary.length() < plain.length());
+
+		try(InputStream is = new SeekableZstdFileInputStream(
+				withDictionary,
+				mDictionaries::getForDecompression)) {
+
+			Assert.assertArrayEquals(data, General.readWholeStream(is));
+		}
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+
+		MicroBenchmark.assumeEnabled();
+
+		final String fixture = Fixtures.POST_LISTING;
+		final byte[] data = Fixtures.load(fixture);
+
+		final File plain = compress(data, Constants.FileType.NOCACHE);
+		final File withDictionary = compress(data, Constants.FileType.POST_LIST);
+
+		System.out.println(String.format(
+				Locale.US,
+				"%s: %d bytes, %d without dictionary (%.1fx), %d with dictionary (%.1fx)",
+				fixture,
+				data.length,
+				plain.length(),
+				(double)data.length / plain.length(),
+				withDictionary.length(),
+				(double)data.length / withDictionary.length()));
+
+		final MicroBenchmark benchmark = new MicroBenchmark("Cache decompression", 3, 5, 20);
+
+		benchmark.measure(fixture + ", without dictionary", () -> {
+			try(InputStream is = new SeekableZstdFileInputStream(plain)) {
+				return General.readWholeStream(is);
+			}
+		});
+
+		benchmark.measure(fixture + ", with dictionary", () -> {
+			try(InputStream is = new SeekableZstdFileInputStream(
+					withDictionary,
+					mDictionaries::getForDecompression)) {
+				return General.readWholeStream(is);
+			}
+		});
+
+		benchmark.printReport();
+	}
+
+	@Test
+	public void testCommentListingUsesPlainZstd() {
+		Assert.assertNull(mDictionaries.getForCompression(Constants.FileType.COMMENT_LIST));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownDictionary() throws Exception {
+
+		final File plain = compress(
+				Fixtures.load(Fixtures.POST_LISTING),
+				Constants.FileType.NOCACHE);
+
+		new SeekableZstdFileInputStream(plain, mDictionaries::getForDecompression).close();
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.cache.RedditRateLimiter;
+
+public class RedditRateLimiterTest {
+
+	@Test
+	public void testBurstAfterIdle() {
+
+		final RedditRateLimiter limiter = new RedditRateLimiter(5, 0);
+
+		for(int i = 0; i < 5; i++) {
+			Assert.assertEquals(0, limiter.tryAcquire(0));
+		}
+
+		Assert.assertEquals(RedditRateLimiter.DEFAULT_INTERVAL_MS, limiter.tryAcquire(0));
+		Assert.assertEquals(0, limiter.tryAcquire(RedditRateLimiter.DEFAULT_INTERVAL_MS));
+
+		// The bucket refills while idle, up to its capacity
+		final long later = 60_000;
+
+		for(int i = 0; i < 5; i++) {
+			Assert.assertEquals(0, limiter.tryAcquire(later));
+		}
+
+		Assert.assertTrue(limiter.tryAcquire(later) > 0);
+	}
+
+	@Test
+	public void testFollowsHeaders() {
+
+		final RedditRateLimiter limiter = new RedditRateLimiter(5, 0);
+
+		// Only two requests left in this period
+		limiter.onRateLimitStatus(2, 30, 0);
+
+		Assert.assertEquals(0, limiter.tryAcquire(0));
+		Assert.assertEquals(0, limiter.tryAcquire(0));
+		Assert.assertTrue(limiter.tryAcquire(0) > 0);
+
+		// Ten left over the next 30 seconds
+		limiter.onRateLimitStatus(10, 30, 0);
+		Assert.assertEquals(3000, limiter.tryAcquire(0));
+
+		// Plenty remaining: limited to Reddit's maximum rate
+		limiter.onRateLimitStatus(1000, 60, 0);
+		Assert.assertEquals(RedditRateLimiter.MIN_INTERVAL_MS, limiter.tryAcquire(0));
+	}
+
+	@Test
+	public void testBlockedUntilReset() {
+
+		final RedditRateLimiter limiter = new RedditRateLimiter(5, 0);
+
+		limiter.onRateLimitHeaders("0.0", "42", 1000);
+
+		Assert.assertEquals(42_000, limiter.tryAcquire(1000));
+		Assert.assertEquals(1000, limiter.tryAcquire(42_000));
+		Assert.assertEquals(0, limiter.tryAcquire(43_000));
+		Assert.assertTrue(limiter.tryAcquire(43_000) > 0);
+	}
+}
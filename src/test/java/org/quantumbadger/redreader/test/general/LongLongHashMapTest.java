@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.general;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.common.collections.LongLongHashMap;
+import org.quantumbadger.redreader.reddit.things.RedditIdAndType;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public class LongLongHashMapTest {
+
+	@Test
+	public void testRandomOperations() {
+
+		final Random random = new Random(1234);
+
+		final LongLongHashMap map = new LongLongHashMap();
+		final HashMap<Long, Long> expected = new HashMap<>();
+
+		for(int step = 0; step < 100_000; step++) {
+
+			// A small key range, so that removals and probe collisions are common
+			final long key = random.nextInt(2000) + 1;
+
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key) != null, map.remove(key));
+
+			} else {
+				final long value = random.nextLong();
+				expected.put(key, value);
+				map.put(key, value);
+			}
+
+			if(step % 1000 == 0) {
+
+				Assert.assertEquals(expected.size(), map.size());
+
+				for(long i = 1; i <= 2000; i++) {
+					final Long value = expected.get(i);
+					Assert.assertEquals(value != null, map.containsKey(i));
+					Assert.assertEquals(value == null ? -1 : value, map.get(i, -1));
+				}
+
+				final LongLongHashMap copy = new LongLongHashMap(map);
+				final HashMap<Long, Long> visited = new HashMap<>();
+				copy.forEach(visited::put);
+				Assert.assertEquals(expected, visited);
+			}
+		}
+	}
+
+	@Test
+	public void testPackIdAndType() {
+
+		for(final String idAndType : new String[] {
+				"t1_a", "t3_abc123", "t5_2qh1i", "t9_zzzzzzzzzzz", "t2_1"}) {
+
+			final long packed = RedditIdAndType.pack(idAndType);
+			Assert.assertTrue(idAndType, packed != RedditIdAndType.NOT_PACKABLE);
+			Assert.assertEquals(idAndType, RedditIdAndType.unpack(packed));
+		}
+
+		Assert.assertTrue(RedditIdAndType.pack("t1_a") != RedditIdAndType.pack("t3_a"));
+
+		for(final String idAndType : new String[] {
+				"", "t1_", "t0_abc", "tx_abc", "t1abc", "t1_ABC", "t1_0ab", "t1_a-b",
+				"t1_zzzzzzzzzzzz"}) {
+
+			Assert.assertFalse(idAndType, RedditIdAndType.pack(idAndType)
+					!= RedditIdAndType.NOT_PACKABLE);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.general;
+
+import androidx.annotation.NonNull;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.common.PrioritisedCachedThreadPool;
+import org.quantumbadger.redreader.common.Priority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PrioritisedCachedThreadPoolTest {
+
+	private static final class TestTask extends PrioritisedCachedThreadPool.Task {
+
+		private final int mId;
+		@NonNull private volatile Priority mPriority;
+		@NonNull private final ArrayList<Integer> mOrder;
+		@NonNull private final CountDownLatch mDone;
+
+		private TestTask(
+				final int id,
+				@NonNull final Priority priority,
+				@NonNull final ArrayList<Integer> order,
+				@NonNull final CountDownLatch done) {
+
+			mId = id;
+			mPriority = priority;
+			mOrder = order;
+			mDone = done;
+		}
+
+		@NonNull
+		@Override
+		public Priority getPriority() {
+			return mPriority;
+		}
+
+		@Override
+		public void run() {
+
+			synchronized(mOrder) {
+				mOrder.add(mId);
+			}
+
+			mDone.countDown();
+		}
+	}
+
+	// Occupies the pool's only thread until released, so that tasks queue up
+	private static final class BlockingTask extends PrioritisedCachedThreadPool.Task {
+
+		private final CountDownLatch mStarted = new CountDownLatch(1);
+		private final CountDownLatch mRelease = new CountDownLatch(1);
+
+		@NonNull
+		@Override
+		public Priority getPriority() {
+			return new Priority(0);
+		}
+
+		@Override
+		public void run() {
+
+			mStarted.countDown();
+
+			try {
+				mRelease.await();
+			} catch(final InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	// Expected order is a stable sort by priority, as with the previous linear scan
+	private static ArrayList<Integer> expectedOrder(final ArrayList<TestTask> tasks) {
+
+		final ArrayList<TestTask> sorted = new ArrayList<>(tasks);
+
+		Collections.sort(sorted, (a, b) -> {
+
+			if(a.mPriority.isHigherPriorityThan(b.mPriority)) {
+				return -1;
+			} else if(b.mPriority.isHigherPriorityThan(a.mPriority)) {
+				return 1;
+			} else {
+				return 0;
+			}
+		});
+
+		final ArrayList<Integer> result = new ArrayList<>();
+
+		for(final TestTask task : sorted) {
+			result.add(task.mId);
+		}
+
+		return result;
+	}
+
+	private static void runTest(final boolean reprioritise) throws InterruptedException {
+
+		final PrioritisedCachedThreadPool pool = new PrioritisedCachedThreadPool(1, "Test");
+		final Random random = new Random(1234);
+
+		final BlockingTask blocker = new BlockingTask();
+		pool.add(blocker);
+		Assert.assertTrue(blocker.mStarted.await(10, TimeUnit.SECONDS));
+
+		final ArrayList<Integer> order = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1000);
+		final ArrayList<TestTask> tasks = new ArrayList<>();
+
+		for(int i = 0; i < 1000; i++) {
+
+			final TestTask task = new TestTask(
+					i,
+					new Priority(random.nextInt(4), random.nextInt(3)),
+					order,
+					done);
+
+			tasks.add(task);
+			pool.add(task);
+		}
+
+		if(reprioritise) {
+			for(int i = 0; i < 300; i++) {
+
+				final TestTask task = tasks.get(random.nextInt(tasks.size()));
+				task.mPriority = new Priority(random.nextInt(4), random.nextInt(3));
+
+				Assert.assertTrue(pool.updatePriority(task));
+			}
+		}
+
+		final ArrayList<Integer> expected = expectedOrder(tasks);
+
+		blocker.mRelease.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		synchronized(order) {
+			Assert.assertEquals(expected, order);
+		}
+
+		Assert.assertFalse(pool.updatePriority(tasks.get(0)));
+	}
+
+	@Test
+	public void testOrdering() throws InterruptedException {
+		runTest(false);
+	}
+
+	@Test
+	public void testUpdatePriority() throws InterruptedException {
+		runTest(true);
+	}
+}
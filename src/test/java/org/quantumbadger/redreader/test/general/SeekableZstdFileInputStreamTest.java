@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.general;
+
+import com.github.luben.zstd.Zstd;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.common.General;
+import org.quantumbadger.redreader.common.datastream.SeekableZstdFileInputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SeekableZstdFileInputStreamTest {
+
+	private static File writeCompressed(final byte[] data) throws IOException {
+
+		final File file = File.createTempFile("rr_zstd_test", ".zst");
+		file.deleteOnExit();
+
+		try(FileOutputStream os = new FileOutputStream(file)) {
+			os.write(Zstd.compress(data));
+		}
+
+		return file;
+	}
+
+	@Test
+	public void testSeek() throws IOException {
+
+		final byte[] data = new byte[300_000];
+		final Random random = new Random(1234);
+
+		// Compressible, but not trivially so
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte)random.nextInt(16);
+		}
+
+		final File file = writeCompressed(data);
+
+		try(SeekableZstdFileInputStream stream = new SeekableZstdFileInputStream(file)) {
+
+			final byte[] buf = new byte[1000];
+
+			for(int i = 0; i < 50; i++) {
+
+				final int position = random.nextInt(data.length - buf.length);
+				stream.seek(position);
+				Assert.assertEquals(position, stream.getPosition());
+
+				int read = 0;
+
+				while(read < buf.length) {
+					read += stream.read(buf, read, buf.length - read);
+				}
+
+				Assert.assertArrayEquals(
+						Arrays.copyOfRange(data, position, position + buf.length),
+						buf);
+
+				Assert.assertEquals(position + buf.length, stream.getPosition());
+			}
+
+			stream.seek(10);
+			stream.mark(0);
+			Assert.assertEquals(data[10], (byte)stream.read());
+			stream.reset();
+
+			Assert.assertArrayEquals(
+					Arrays.copyOfRange(data, 10, data.length),
+					General.readWholeStream(stream));
+
+			Assert.assertEquals(-1, stream.read());
+		}
+	}
+}
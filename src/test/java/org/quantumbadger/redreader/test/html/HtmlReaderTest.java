@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.html;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.jsonwrap.JsonArray;
+import org.quantumbadger.redreader.jsonwrap.JsonObject;
+import org.quantumbadger.redreader.jsonwrap.JsonValue;
+import org.quantumbadger.redreader.reddit.prepared.html.HtmlReader;
+import org.quantumbadger.redreader.reddit.prepared.html.MalformedHtmlException;
+import org.quantumbadger.redreader.test.benchmark.Fixtures;
+import org.quantumbadger.redreader.test.benchmark.MicroBenchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+public class HtmlReaderTest {
+
+	private static final String COMMENT_HTML = "comment_html.json";
+
+	private static void collectBodies(final JsonValue listing, final ArrayList<String> result) {
+
+		for(final JsonValue child : listing.getArrayAtPath("data", "children").get()) {
+
+			if(!"t1".equals(child.asObject().getString("kind"))) {
+				continue;
+			}
+
+			final JsonObject data = child.asObject().getObject("data");
+			result.add(data.getString("body_html"));
+
+			final JsonValue replies = data.get("replies");
+
+			if(replies != null && replies.asObject() != null) {
+				collectBodies(replies, result);
+			}
+		}
+	}
+
+	// The body_html fields of the comment listing fixture, and the markup samples, both
+	// still escaped as they are returned by Reddit
+	private static ArrayList<String> loadCorpus() throws Exception {
+
+		final ArrayList<String> result = new ArrayList<>();
+
+		final JsonValue comments = JsonValue.parse(new ByteArrayInputStream(
+				Fixtures.load(Fixtures.COMMENT_LISTING)));
+
+		collectBodies(comments.asArray().get(1), result);
+
+		final JsonArray samples = JsonValue.parse(new ByteArrayInputStream(
+				Fixtures.load(COMMENT_HTML))).asArray();
+
+		for(final JsonValue sample : samples) {
+			result.add(sample.asString());
+		}
+
+		return result;
+	}
+
+	private static ArrayList<HtmlReader.Token> readAll(final HtmlReader reader)
+			throws MalformedHtmlException {
+
+		final ArrayList<HtmlReader.Token> result = new ArrayList<>();
+
+		HtmlReader.Token token;
+
+		do {
+			token = reader.readNext();
+			result.add(token);
+		} while(token.type != HtmlReader.TokenType.EOF);
+
+		return result;
+	}
+
+	private static ArrayList<HtmlReader.Token> readAllLegacy(final LegacyHtmlReader reader)
+			throws MalformedHtmlException {
+
+		final ArrayList<HtmlReader.Token> result = new ArrayList<>();
+
+		HtmlReader.Token token;
+
+		do {
+			token = reader.readNext();
+			result.add(token);
+		} while(token.type != HtmlReader.TokenType.EOF);
+
+		return result;
+	}
+
+	private static ArrayList<HtmlReader.Token> readEscaped(final String html)
+			throws MalformedHtmlException {
+
+		return readAll(new HtmlReader(html, 0, html.length(), true));
+	}
+
+	private static void assertTokensEqual(
+			final ArrayList<HtmlReader.Token> expected,
+			final ArrayList<HtmlReader.Token> actual) {
+
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+
+			final HtmlReader.Token expectedToken = expected.get(i);
+			final HtmlReader.Token actualToken = actual.get(i);
+
+			Assert.assertEquals(expectedToken.type, actualToken.type);
+			Assert.assertEquals(expectedToken.text, actualToken.text);
+			Assert.assertEquals(expectedToken.href, actualToken.href);
+			Assert.assertEquals(expectedToken.cssClass, actualToken.cssClass);
+			Assert.assertEquals(expectedToken.title, actualToken.title);
+		}
+	}
+
+	@Test
+	public void testMatchesLegacyTokenizer() throws Exception {
+
+		final ArrayList<String> corpus = loadCorpus();
+		Assert.assertTrue(corpus.size() > 100);
+
+		for(final String html : corpus) {
+
+			final String unescaped = StringEscapeUtils.unescapeHtml4(html);
+
+			final ArrayList<HtmlReader.Token> expected
+					= readAllLegacy(new LegacyHtmlReader(unescaped));
+
+			assertTokensEqual(expected, readEscaped(html));
+			assertTokensEqual(expected, readAll(new HtmlReader(unescaped)));
+		}
+	}
+
+	@Test
+	public void testEntities() throws Exception {
+
+		final ArrayList<HtmlReader.Token> tokens = readAll(new HtmlReader(
+				"<p>&lt;b&gt; &amp;amp; &#39;&#x41;&#128512; &eacute; &bogus; &amp &#;</p>"));
+
+		Assert.assertEquals(
+				"<b> &amp; 'A\uD83D\uDE00 \u00e9 &bogus; &amp &#;",
+				tokens.get(1).text);
+	}
+
+	@Test
+	public void testWindow() throws Exception {
+
+		final String html = "ignored&lt;p&gt;a &amp;amp;  b&lt;/p&gt;ignored";
+
+		final ArrayList<HtmlReader.Token> tokens = readAll(new HtmlReader(
+				html,
+				html.indexOf('&'),
+				html.lastIndexOf(';') + 1,
+				true));
+
+		Assert.assertEquals(4, tokens.size());
+		Assert.assertEquals("a & b", tokens.get(1).text);
+		Assert.assertEquals(HtmlReader.TokenType.TAG_END, tokens.get(2).type);
+		Assert.assertEquals(HtmlReader.TokenType.EOF, tokens.get(3).type);
+	}
+
+	@Test
+	public void testKnownTagNames() throws Exception {
+
+		final ArrayList<HtmlReader.Token> tokens
+				= readAll(new HtmlReader("<DIV Class=\"md\"><Blink>x</Blink></DIV>"));
+
+		Assert.assertSame("div", tokens.get(0).text);
+		Assert.assertEquals("md", tokens.get(0).cssClass);
+		Assert.assertEquals("Blink", tokens.get(1).text);
+		Assert.assertSame("div", tokens.get(4).text);
+	}
+
+	@Test(expected = MalformedHtmlException.class)
+	public void testUnexpectedEnd() throws Exception {
+		readEscaped("&lt;p class=&quot;md");
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+
+		MicroBenchmark.assumeEnabled();
+
+		final ArrayList<String> corpus = loadCorpus();
+
+		final MicroBenchmark benchmark = new MicroBenchmark("HTML tokenizer", 3, 5, 20);
+
+		benchmark.measure("unescapeHtml4, then legacy tokenizer", () -> {
+
+			int tokens = 0;
+
+			for(final String html : corpus) {
+				tokens += readAllLegacy(
+						new LegacyHtmlReader(StringEscapeUtils.unescapeHtml4(html))).size();
+			}
+
+			return tokens;
+		});
+
+		benchmark.measure("Single pass over escaped HTML", () -> {
+
+			int tokens = 0;
+
+			for(final String html : corpus) {
+				tokens += readEscaped(html).size();
+			}
+
+			return tokens;
+		});
+
+		benchmark.printReport();
+	}
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.jsonwrap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.jsonwrap.JsonArray;
+import org.quantumbadger.redreader.jsonwrap.JsonObject;
+import org.quantumbadger.redreader.jsonwrap.JsonValue;
+import org.quantumbadger.redreader.reddit.things.RedditComment;
+import org.quantumbadger.redreader.reddit.things.RedditPost;
+import org.quantumbadger.redreader.reddit.things.RedditThing;
+import org.quantumbadger.redreader.test.benchmark.Fixtures;
+import org.quantumbadger.redreader.test.benchmark.MicroBenchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Objects;
+
+public class JsonObjectBindingTest {
+
+	// The per-field reflective implementation which JsonObject used previously
+	private static void populateObjectLegacy(
+			final JsonObject json,
+			final Object o) throws Exception {
+
+		for(final Field objectField : o.getClass().getFields()) {
+
+			if((objectField.getModifiers() & Modifier.TRANSIENT) != 0) {
+				continue;
+			}
+
+			JsonValue val = json.get(objectField.getName());
+
+			if(val == null && objectField.getName().startsWith("_json_")) {
+				val = json.get(objectField.getName().substring("_json_".length()));
+			}
+
+			if(val == null) {
+				continue;
+			}
+
+			objectField.setAccessible(true);
+
+			final Class<?> fieldType = objectField.getType();
+
+			if(fieldType == Long.class || fieldType == Long.TYPE) {
+				objectField.set(o, val.asLong());
+
+			} else if(fieldType == Double.class || fieldType == Double.TYPE) {
+				objectField.set(o, val.asDouble());
+
+			} else if(fieldType == Integer.class || fieldType == Integer.TYPE) {
+				objectField.set(o, val.asLong() == null ? null : val.asLong().intValue());
+
+			} else if(fieldType == Float.class || fieldType == Float.TYPE) {
+				objectField.set(o, val.asDouble() == null ? null : val.asDouble().floatValue());
+
+			} else if(fieldType == Boolean.class || fieldType == Boolean.TYPE) {
+				objectField.set(o, val.asBoolean());
+
+			} else if(fieldType == String.class) {
+				objectField.set(o, val.asString());
+
+			} else if(fieldType == JsonArray.class) {
+				objectField.set(o, val.asArray());
+
+			} else if(fieldType == JsonObject.class) {
+				objectField.set(o, val.asObject());
+
+			} else if(fieldType == JsonValue.class) {
+				objectField.set(o, val);
+
+			} else {
+				throw new RuntimeException("Unhandled type " + fieldType);
+			}
+		}
+	}
+
+	private static <E> E bindLegacy(final JsonObject json, final Class<E> clazz)
+			throws Exception {
+
+		final E result = clazz.getConstructor().newInstance();
+		populateObjectLegacy(json, result);
+		return result;
+	}
+
+	private static void assertFieldsEqual(final Object expected, final Object actual)
+			throws IllegalAccessException {
+
+		Assert.assertSame(expected.getClass(), actual.getClass());
+
+		for(final Field field : expected.getClass().getFields()) {
+
+			if(Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+
+			Assert.assertTrue(
+					field.getName(),
+					Objects.equals(field.get(expected), field.get(actual)));
+		}
+	}
+
+	private static ArrayList<JsonObject> loadPostData() throws Exception {
+
+		final JsonValue listing = JsonValue.parse(new ByteArrayInputStream(
+				Fixtures.load(Fixtures.POST_LISTING)));
+
+		final ArrayList<JsonObject> result = new ArrayList<>();
+
+		for(final JsonValue child : listing.getArrayAtPath("data", "children").get()) {
+			result.add(child.asObject().getObject("data"));
+		}
+
+		return result;
+	}
+
+	private static ArrayList<JsonObject> loadCommentData() throws Exception {
+
+		final JsonValue listing = JsonValue.parse(new ByteArrayInputStream(
+				Fixtures.load(Fixtures.COMMENT_LISTING)));
+
+		final ArrayList<JsonObject> result = new ArrayList<>();
+
+		for(final JsonValue child : listing.getArrayAtPath(1, "data", "children").get()) {
+			if("t1".equals(child.asObject().getString("kind"))) {
+				result.add(child.asObject().getObject("data"));
+			}
+		}
+
+		return result;
+	}
+
+	@Test
+	public void testPostsMatchLegacyBinding() throws Exception {
+
+		final ArrayList<JsonObject> posts = loadPostData();
+		Assert.assertFalse(posts.isEmpty());
+
+		for(final JsonObject post : posts) {
+			assertFieldsEqual(
+					bindLegacy(post, RedditPost.class),
+					post.asObject(RedditPost.class));
+		}
+	}
+
+	@Test
+	public void testCommentsMatchLegacyBinding() throws Exception {
+
+		final ArrayList<JsonObject> comments = loadCommentData();
+		Assert.assertFalse(comments.isEmpty());
+
+		for(final JsonObject comment : comments) {
+			assertFieldsEqual(
+					bindLegacy(comment, RedditComment.class),
+					comment.asObject(RedditComment.class));
+		}
+	}
+
+	@Test
+	public void testThing() throws Exception {
+
+		final JsonValue value = JsonValue.parse(new ByteArrayInputStream(
+				Fixtures.load(Fixtures.POST_LISTING)));
+
+		final RedditThing thing = value.getObjectAtPath("data", "children", 0).get()
+				.asObject(RedditThing.class);
+
+		Assert.assertEquals(RedditThing.Kind.POST, thing.getKind());
+		Assert.assertNotNull(thing.asPost().id);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullPrimitive() throws Exception {
+
+		final JsonValue value = JsonValue.parse(new ByteArrayInputStream(
+				"{\"ups\": null}".getBytes("UTF-8")));
+
+		value.asObject(RedditComment.class);
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+
+		MicroBenchmark.assumeEnabled();
+
+		final ArrayList<JsonObject> posts = loadPostData();
+		final ArrayList<JsonObject> comments = loadCommentData();
+
+		final MicroBenchmark benchmark = new MicroBenchmark("JsonObject binding", 3, 5, 20);
+
+		benchmark.measure("RedditPost, reflection per field", () -> {
+			for(final JsonObject post : posts) {
+				bindLegacy(post, RedditPost.class);
+			}
+			return posts;
+		});
+
+		benchmark.measure("RedditPost, cached binder", () -> {
+			for(final JsonObject post : posts) {
+				post.asObject(RedditPost.class);
+			}
+			return posts;
+		});
+
+		benchmark.measure("RedditComment, reflection per field", () -> {
+			for(final JsonObject comment : comments) {
+				bindLegacy(comment, RedditComment.class);
+			}
+			return comments;
+		});
+
+		benchmark.measure("RedditComment, cached binder", () -> {
+			for(final JsonObject comment : comments) {
+				comment.asObject(RedditComment.class);
+			}
+			return comments;
+		});
+
+		benchmark.printReport();
+	}
+}
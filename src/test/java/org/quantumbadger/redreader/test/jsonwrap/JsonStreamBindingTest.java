@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * This file is part of RedReader.
+ *
+ * RedReader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RedReader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RedReader.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package org.quantumbadger.redreader.test.jsonwrap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.Assert;
+import org.junit.Test;
+import org.quantumbadger.redreader.jsonwrap.JsonObject;
+import org.quantumbadger.redreader.jsonwrap.JsonValue;
+import org.quantumbadger.redreader.reddit.things.RedditComment;
+import org.quantumbadger.redreader.reddit.things.RedditPost;
+import org.quantumbadger.redreader.reddit.things.RedditThing;
+import org.quantumbadger.redreader.test.benchmark.Fixtures;
+import org.quantumbadger.redreader.test.benchmark.MicroBenchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Objects;
+
+public class JsonStreamBindingTest {
+
+	private static JsonParser createParser(final byte[] data) throws Exception {
+		return JsonValue.createParser(new ByteArrayInputStream(data));
+	}
+
+	// JsonValue fields are compared by content, as the two paths create separate trees
+	private static void assertFieldsEqual(final Object expected, final Object actual)
+			throws IllegalAccessException {
+
+		Assert.assertSame(expected.getClass(), actual.getClass());
+
+		for(final Field field : expected.getClass().getFields()) {
+
+			if(Modifier.isStatic(field.getModifiers()) || field.getName().equals("replies")) {
+				continue;
+			}
+
+			final Object expectedValue = field.get(expected);
+			final Object actualValue = field.get(actual);
+
+			if(expectedValue instanceof JsonValue) {
+				Assert.assertEquals(field.getName(), expectedValue.toString(), String.valueOf(
+						actualValue));
+
+			} else {
+				Assert.assertTrue(field.getName(), Objects.equals(expectedValue, actualValue));
+			}
+		}
+	}
+
+	private static ArrayList<RedditPost> parsePostsTree(final byte[] data) throws Exception {
+
+		final JsonValue listing = JsonValue.parse(new ByteArrayInputStream(data));
+
+		final ArrayList<RedditPost> result = new ArrayList<>();
+
+		for(final JsonValue child : listing.getArrayAtPath("data", "children").get()) {
+			result.add(child.asObject(RedditThing.class).asPost());
+		}
+
+		return result;
+	}
+
+	private static ArrayList<RedditPost> parsePostsStream(final byte[] data) throws Exception {
+
+		final ArrayList<RedditPost> result = new ArrayList<>();
+
+		try(JsonParser parser = createParser(data)) {
+			RedditThing.parseListing(
+					parser,
+					child -> result.add(RedditThing.parse(child).asPost()));
+		}
+
+		return result;
+	}
+
+	private static void collectCommentsTree(
+			final JsonValue listing,
+			final ArrayList<RedditComment> result) throws Exception {
+
+		for(final JsonValue child : listing.getArrayAtPath("data", "children").get()) {
+
+			final RedditThing thing = child.asObject(RedditThing.class);
+
+			if(thing.getKind() == RedditThing.Kind.COMMENT) {
+
+				final RedditComment comment = thing.asComment();
+				result.add(comment);
+
+				if(comment.replies.asObject() != null) {
+					collectCommentsTree(comment.replies, result);
+				}
+			}
+		}
+	}
+
+	private static ArrayList<RedditComment> parseCommentsTree(final byte[] data)
+			throws Exception {
+
+		final JsonValue root = JsonValue.parse(new ByteArrayInputStream(data));
+
+		final ArrayList<RedditComment> result = new ArrayList<>();
+		collectCommentsTree(root.asArray().get(1), result);
+		return result;
+	}
+
+	// Comments are collected in the same pre-order as the tree version
+	private static void collectCommentsStream(
+			final JsonParser parser,
+			final ArrayList<RedditComment> result) throws
+					IOException,
+					InstantiationException,
+					IllegalAccessException,
+					NoSuchMethodException,
+					InvocationTargetException {
+
+		RedditThing.parseListing(parser, child -> {
+
+			final ArrayList<RedditComment> replies = new ArrayList<>();
+
+			final RedditThing thing = RedditThing.parse(child, (name, valueParser) -> {
+
+				if(!"replies".equals(name)
+						|| valueParser.currentToken() != JsonToken.START_OBJECT) {
+					return false;
+				}
+
+				collectCommentsStream(valueParser, replies);
+				return true;
+			});
+
+			if(thing.getKind() == RedditThing.Kind.COMMENT) {
+				result.add(thing.asComment());
+				result.addAll(replies);
+			}
+		});
+	}
+
+	private static ArrayList<RedditComment> parseCommentsStream(final byte[] data)
+			throws Exception {
+
+		final ArrayList<RedditComment> result = new ArrayList<>();
+
+		try(JsonParser parser = createParser(data)) {
+
+			parser.nextToken();
+			parser.nextToken();
+
+			// Skip the post
+			parser.skipChildren();
+			parser.nextToken();
+
+			collectCommentsStream(parser, result);
+		}
+
+		return result;
+	}
+
+	@Test
+	public void testPostsMatchTree() throws Exception {
+
+		final byte[] data = Fixtures.load(Fixtures.POST_LISTING);
+
+		final ArrayList<RedditPost> expected = parsePostsTree(data);
+		final ArrayList<RedditPost> actual = parsePostsStream(data);
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+			assertFieldsEqual(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testCommentsMatchTree() throws Exception {
+
+		final byte[] data = Fixtures.load(Fixtures.COMMENT_LISTING);
+
+		final ArrayList<RedditComment> expected = parseCommentsTree(data);
+		final ArrayList<RedditComment> actual = parseCommentsStream(data);
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+			assertFieldsEqual(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testDataBeforeKind() throws Exception {
+
+		final byte[] data = ("{\"data\": {\"id\": \"abc\", \"ups\": 3}, \"kind\": \"t1\"}")
+				.getBytes("UTF-8");
+
+		try(JsonParser parser = createParser(data)) {
+
+			final RedditComment comment = RedditThing.parse(parser).asComment();
+
+			Assert.assertEquals("abc", comment.id);
+			Assert.assertEquals(3, comment.ups);
+		}
+	}
+
+	@Test
+	public void testUnknownFieldsSkipped() throws Exception {
+
+		final byte[] data = ("{\"unknown\": {\"a\": [1, 2, {\"b\": null}]}, \"id\": \"abc\","
+				+ " \"ups\": \"12\", \"edited\": 1234, \"likes\": null}").getBytes("UTF-8");
+
+		try(JsonParser parser = createParser(data)) {
+
+			final RedditComment comment = JsonObject.parseObject(parser, RedditComment.class);
+
+			Assert.assertNotNull(comment);
+			Assert.assertEquals("abc", comment.id);
+			Assert.assertEquals(12, comment.ups);
+			Assert.assertEquals(Long.valueOf(1234), comment.edited.asLong());
+			Assert.assertNull(comment.likes);
+			Assert.assertNull(parser.currentToken());
+		}
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+
+		MicroBenchmark.assumeEnabled();
+
+		final byte[] posts = Fixtures.load(Fixtures.POST_LISTING);
+		final byte[] comments = Fixtures.load(Fixtures.COMMENT_LISTING);
+
+		final MicroBenchmark benchmark = new MicroBenchmark("Listing parse", 3, 5, 10);
+
+		benchmark.measure("POST_LIST file, JsonValue tree", () -> parsePostsTree(posts));
+		benchmark.measure("POST_LIST file, direct", () -> parsePostsStream(posts));
+
+		benchmark.measure("COMMENT_LIST file, JsonValue tree", () -> parseCommentsTree(comments));
+		benchmark.measure("COMMENT_LIST file, direct", () -> parseCommentsStream(comments));
+
+		benchmark.printReport();
+	}
+}